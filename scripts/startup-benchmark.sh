@@ -0,0 +1,63 @@
+#!/bin/bash
+#
+# Cold start times of the distributions of CFHTEphemerides
+#   ./gradlew fatJar appCdsArchive -PcdsRecordings=<recordings> && scripts/startup-benchmark.sh <recordings> [runs]
+#
+# <recordings> holds the exchanges of a real run recorded with -record, e.g.
+#   java -jar CFHTEphemerides-latest.jar -record recordings '2019 AA' '(87890)' 'P21abcd'
+# Each run requests these designations from a local ReplayServer (-refresh, empty cache): the start
+# of the JVM, the HTTP client, the requests, the parsing and the writing of the files are measured,
+# not the latency of the real services.
+
+VERSION=`jq -r .neo.project.version neo/project.json`
+RECORDINGS=${1:?"Usage: $0 <recordings directory> [runs]"}
+RUNS=${2:-15}
+PORT=${PORT:-8642}
+DESIGNATIONS=${DESIGNATIONS:-"2019 AA|(87890)|P21abcd"}
+OUT=`mktemp -d`
+
+FAT=build/libs/CFHTEphemerides-$VERSION.jar
+SLIM=build/libs/CFHTEphemerides-$VERSION-slim.jar
+IMAGE=build/image
+
+SERVER_JAR=$FAT
+[ -f $SERVER_JAR ] || SERVER_JAR=$SLIM
+java -cp $SERVER_JAR neo.cfht.http.ReplayServer -recordings "$RECORDINGS" -port $PORT -anyDesignation > $OUT/replay.log 2>&1 &
+SERVER=$!
+trap "kill $SERVER; rm -rf $OUT" EXIT
+until grep -q "Replaying on" $OUT/replay.log; do
+  kill -0 $SERVER 2> /dev/null || { cat $OUT/replay.log; exit 1; }
+  sleep 0.2
+done
+
+IFS='|' read -r -a NAMES <<< "$DESIGNATIONS"
+URL=http://localhost:$PORT
+
+measure() {
+  local label=$1
+  shift
+  local times=()
+  for i in `seq $RUNS`; do
+    rm -rf $OUT/run
+    local start=`date +%s%N`
+    "$@" -bypassVersionCheck -refresh -noPrewarm -deadline 30s -p $OUT/run -cacheDirectory $OUT/run/cache \
+      -jplBaseUrl $URL -mpcBaseUrl $URL -mpcCgiBaseUrl $URL "${NAMES[@]}" > $OUT/run.log 2>&1
+    local status=$?
+    local end=`date +%s%N`
+    if [ $status -ne 0 ] || grep -q "NoClassDefFoundError\|ClassNotFoundException" $OUT/run.log; then
+      echo "$label: run failed (exit $status)" >&2
+      cat $OUT/run.log >&2
+      return 1
+    fi
+    times+=($(( (end-start)/1000000 )))
+  done
+  printf "%s\n" "${times[@]}" | sort -n | awk -v label="$label" \
+    '{t[NR]=$1} END {printf "%-32s median %5d ms   min %5d ms   max %5d ms\n", label, t[int((NR+1)/2)], t[1], t[NR]}'
+}
+
+[ -f $FAT ] && measure "fat jar" java -jar $FAT
+[ -f $SLIM ] && measure "slim jar" java -jar $SLIM
+if [ -d $IMAGE ]; then
+  measure "runtime image" $IMAGE/bin/java -jar $IMAGE/lib/app/CFHTEphemerides.jar
+  [ -f $IMAGE/lib/app/CFHTEphemerides.jsa ] && measure "runtime image + AppCDS" $IMAGE/bin/cfht-ephemerides
+fi
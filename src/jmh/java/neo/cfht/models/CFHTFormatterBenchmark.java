@@ -0,0 +1,51 @@
+package neo.cfht.models;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Formatting of the RA and Dec of the positions of a response
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CFHTFormatterBenchmark {
+
+	private double[] ra;
+	private double[] dec;
+
+	@Setup
+	public void setup() {
+		EphemerisTable ephemerides = Fixtures.ephemerides();
+		this.ra = ephemerides.getRaColumn();
+		this.dec = ephemerides.getDecColumn();
+	}
+
+	@Benchmark
+	public void raForCFHT(Blackhole blackhole) {
+		for (double value : this.ra) {
+			blackhole.consume(CFHTFormatter.raForCFHT(value));
+		}
+	}
+
+	@Benchmark
+	public void deForCFHT(Blackhole blackhole) {
+		for (double value : this.dec) {
+			blackhole.consume(CFHTFormatter.deForCFHT(value));
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package neo.cfht.models;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+import neo.cfht.requesters.ScoutEphemerisReader;
+
+/**
+ * Realistic MPC and Scout response bodies for the benchmarks (or recorded ones, with
+ * -Dbench.mpcBody=... and -Dbench.scoutBody=...)
+ */
+public class Fixtures {
+
+	public static final int POSITIONS_COUNT = 100;
+	public static final int ORBITS_COUNT = 1000;
+
+	private static final LocalDateTime START = LocalDateTime.of(2019, 8, 14, 5, 30);
+	private static final int INTERVAL_MINUTES = 5;
+	private static final DateTimeFormatter MPC_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy MM dd HHmm");
+	private static final DateTimeFormatter SCOUT_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	private Fixtures() {
+	}
+
+	/**
+	 * @return RA (degrees) of a position: crossing 0h to exercise the wrapping
+	 */
+	private static double ra(int position) {
+		return (359.5 + 0.0123*position) % 360.;
+	}
+	/**
+	 * @return Dec (degrees) of a position: crossing the equator to exercise the signs
+	 */
+	private static double dec(int position) {
+		return -0.6 + 0.0137*position;
+	}
+
+	public static String mpcKnownBody() {
+		String recorded = readRecorded("bench.mpcBody");
+		if (recorded != null) {
+			return recorded;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><title>Minor Planet Ephemeris Service: Query Results</title></head>\n<body>\n");
+		sb.append("<h1>Minor Planet Ephemeris Service: Query Results</h1>\n");
+		sb.append("<p>Below are the results of your request from the Minor Planet Center's Minor Planet Ephemeris Service.\n");
+		sb.append("<p><hr><p><b>(87890)</b><p><pre>\n");
+		sb.append("Date       UT      R.A. (J2000) Decl.    Delta     r     El.    Ph.   V      Sky Motion        Object    Sun   Moon\n");
+		sb.append("            h m s                                                            \"/min    P.A.    Azi. Alt.  Alt.  Phase Dist. Alt.\n");
+		for (int position=0; position<POSITIONS_COUNT; position++) {
+			double ra = ra(position)/15.;
+			double dec = Math.abs(dec(position));
+			int raSeconds = (int) Math.round(ra*36000.);
+			int decSeconds = (int) Math.round(dec*3600.);
+			sb.append(String.format(Locale.US, "%s   %02d %02d %02d.%d %s%02d %02d %02d   1.234   0.987  150.2   28.5  19.8    0.52   123.4   %03d  %02d   -18  0.55   123  +23\n",
+					MPC_TIME_FORMATTER.format(START.plusMinutes((long) position*INTERVAL_MINUTES)),
+					raSeconds/36000 % 24, raSeconds/600 % 60, raSeconds/10 % 60, raSeconds % 10,
+					dec(position) < 0 ? "-" : "+", decSeconds/3600, decSeconds/60 % 60, decSeconds % 60,
+					(90 + position) % 360, 20 + position % 60));
+		}
+		sb.append("</pre>\n<p><hr>\n</body>\n</html>\n");
+		return sb.toString();
+	}
+
+	public static String scoutBody() {
+		String recorded = readRecorded("bench.scoutBody");
+		if (recorded != null) {
+			return recorded;
+		}
+		Random random = new Random(568);
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"signature\":{\"source\":\"NASA/JPL Scout API\",\"version\":\"1.3\"},");
+		sb.append("\"orbits\":{\"count\":").append(ORBITS_COUNT).append(",\"fields\":[\"idx\",\"epoch\",\"ec\",\"qr\",\"tp\",")
+			.append("\"om\",\"w\",\"inc\",\"H\",\"dca\",\"dcb\",\"dcc\",\"rms\",\"chi2\",\"tisserand\"],\"data\":[");
+		for (int orbit=0; orbit<ORBITS_COUNT; orbit++) {
+			sb.append(orbit == 0 ? "[" : ",[").append(orbit).append(",\"2458709.5\"");
+			for (int field=0; field<13; field++) {
+				sb.append(String.format(Locale.US, ",\"%.6f\"", random.nextDouble()*(field + 1)));
+			}
+			sb.append(']');
+		}
+		sb.append("]},\"eph\":[");
+		for (int position=0; position<POSITIONS_COUNT; position++) {
+			sb.append(position == 0 ? "{" : ",{");
+			sb.append("\"time\":\"").append(SCOUT_TIME_FORMATTER.format(START.plusMinutes((long) position*INTERVAL_MINUTES)))
+				.append("\",\"sigma-pos\":\"").append(String.format(Locale.US, "%.1f", 12.5 + 0.1*position))
+				.append("\",\"sun-flag\":null,\"moon-flag\":null,\"el\":\"45\",\"median\":{")
+				.append(String.format(Locale.US, "\"ra\":\"%.4f\",\"dec\":\"%.4f\",\"dra\":\"1.2\",\"ddec\":\"-0.4\",\"vmag\":\"21.3\",\"rate\":\"1.3\",\"pa\":\"108\",\"elong\":\"150\"",
+						ra(position), dec(position)))
+				.append("},\"sigma-limits\":{\"lower\":{\"ra\":\"318.9\",\"dec\":\"-12.6\"},\"upper\":{\"ra\":\"319.0\",\"dec\":\"-12.5\"}}")
+				.append(",\"limits\":{\"min\":{\"ra\":\"318.8\",\"dec\":\"-12.7\"},\"max\":{\"ra\":\"319.1\",\"dec\":\"-12.4\"}}}");
+		}
+		sb.append("],\"tdes\":\"P21abcd\",\"eph-start\":\"2019-08-14 05:30\",\"eph-stop\":\"2019-08-14 13:45\"}");
+		return sb.toString();
+	}
+
+	/**
+	 * @return The ephemerides of the Scout response, as rendered to the output files
+	 */
+	public static EphemerisTable ephemerides() {
+		try {
+			return ScoutEphemerisReader.read(new StringReader(scoutBody()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String readRecorded(String property) {
+		String path = System.getProperty(property);
+		if (path == null) {
+			return null;
+		}
+		try {
+			return Files.readString(Path.of(path), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package neo.cfht.output;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import neo.cfht.models.EphemerisTable;
+import neo.cfht.models.Fixtures;
+import neo.exceptions.NeoSerializationException;
+
+/**
+ * Rendering of the XML and JSON output documents
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderingBenchmark {
+
+	private EphemerisTable ephemerides;
+	private CfhtXmlTemplate cfhtXmlTemplate;
+
+	@Setup
+	public void setup() throws NeoSerializationException {
+		this.ephemerides = Fixtures.ephemerides();
+		this.cfhtXmlTemplate = CfhtXmlTemplate.load();
+	}
+
+	@Benchmark
+	public ByteBuffer[] xmlBuffers() {
+		return this.cfhtXmlTemplate.toBuffers(this.ephemerides);
+	}
+
+	@Benchmark
+	public String xmlInline() {
+		return this.cfhtXmlTemplate.render(this.ephemerides);
+	}
+
+	@Benchmark
+	public String json() {
+		return CfhtJsonWriter.toString(this.ephemerides);
+	}
+}
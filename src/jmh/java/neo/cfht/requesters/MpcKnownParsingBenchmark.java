@@ -0,0 +1,61 @@
+package neo.cfht.requesters;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import neo.cfht.http.LineSplitter;
+import neo.cfht.models.EphemerisTable;
+import neo.cfht.models.Fixtures;
+import neo.cfht.models.MpcLineParser;
+
+/**
+ * Parsing of an MPC ephemeris page, as done by {@link MpcKnownRequester}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MpcKnownParsingBenchmark {
+
+	private ByteBuffer body;
+	private final MpcLineParser mpcLineParser = new MpcLineParser();
+	private final StringBuilder cfhtLine = new StringBuilder(64);
+	private EphemerisTable ephemerides;
+
+	@Setup
+	public void setup() {
+		this.body = ByteBuffer.wrap(Fixtures.mpcKnownBody().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void parseLine(CharSequence line) {
+		if (MpcKnownRequester.DATE_MATCH.matcher(line).matches()) {
+			this.mpcLineParser.parse(line);
+			this.cfhtLine.setLength(0);
+			this.ephemerides.add(this.mpcLineParser.getMJD(), this.mpcLineParser.getRaDegrees(),
+					this.mpcLineParser.getDecDegrees(), this.mpcLineParser.appendCFHTLine(this.cfhtLine));
+		}
+	}
+
+	@Benchmark
+	public EphemerisTable parse() {
+		this.ephemerides = new EphemerisTable();
+		LineSplitter lineSplitter = new LineSplitter(this::parseLine);
+		lineSplitter.feed(this.body);
+		lineSplitter.finish();
+		return this.ephemerides;
+	}
+}
@@ -0,0 +1,43 @@
+package neo.cfht.requesters;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import neo.cfht.models.EphemerisTable;
+import neo.cfht.models.Fixtures;
+
+/**
+ * Parsing of a Scout response, as done by {@link JplNeoRequester}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScoutEphemerisReaderBenchmark {
+
+	private String body;
+
+	@Setup
+	public void setup() {
+		this.body = Fixtures.scoutBody();
+	}
+
+	@Benchmark
+	public EphemerisTable read() throws IOException {
+		return ScoutEphemerisReader.read(new StringReader(this.body));
+	}
+}
@@ -1,16 +1,38 @@
 package neo.cfht.app;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import neo.cfht.http.HttpService;
+import neo.cfht.http.ResponseCache;
+import neo.cfht.models.DesignationType;
+import neo.cfht.models.NeocpListing;
+import neo.cfht.models.NightWindow;
 import neo.cfht.models.SmallBodyRequest;
+import neo.cfht.output.OutputManifest;
+import neo.cfht.requesters.FallbackRequester;
 import neo.cfht.requesters.IRequester;
+import neo.cfht.requesters.MpcKnownBatchRequester;
 import neo.exceptions.NeoIOException;
 import neo.exceptions.NeoProcessingException;
 
@@ -18,39 +40,277 @@ public class CFHTEphemerides {
 	/** Logging */
 	private final static Logger logger = LoggerFactory.getLogger(CFHTEphemerides.class);
 
+	/** Time given to the output file being written when the deadline is reached */
+	private static final long WRITER_GRACE_SECONDS = 10;
+	/** The NEOCP positions are those of the listing: the observing windows are widened by that */
+	private static final Duration OBSERVABLE_MARGIN = Duration.ofMinutes(30);
+	/** A listing requested more recently (e.g. by the watch mode) is not requested again */
+	private static final Duration LISTING_MAX_AGE = Duration.ofMinutes(1);
+	/** Longest wait for the listing (and at most a tenth of -deadline): the windows only save requests */
+	private static final Duration LISTING_MAX_WAIT = Duration.ofSeconds(15);
+
 	private CFHTEphemeridesConfiguration cec;
 
 	public CFHTEphemerides(CFHTEphemeridesConfiguration cec) {
 		this.cec = cec;
 	}
 
+	public CFHTEphemeridesConfiguration getCFHTEphemeridesConfiguration() {
+		return this.cec;
+	}
+
+	/**
+	 * Each requester is written as soon as it is answered, on the writer thread, while the other
+	 * requests are still running.
+	 *
+	 * The requests are sent asynchronously: the number of requests in flight is bounded by the
+	 * per-host permits of the HTTP service, not by threads. The worker threads only run the stages
+	 * which may block (cache reads, parsing of the Scout stream).
+	 *
+	 * The whole run is bounded by -deadline: at the deadline, the exchanges still running are
+	 * cancelled and nothing is written any more (a late file is useless at the telescope). The
+	 * report lists the files written and the objects which failed or timed out.
+	 *
+	 * The positions are requested during the night at the observatory only, and those of the NEOCP
+	 * objects during the part of the night where they are high enough: the objects which never are
+	 * are not requested at all.
+	 *
+	 * The version check runs meanwhile: the files are only written once it is known that this is
+	 * the latest version (the run exits otherwise).
+	 */
 	private void run() throws NeoProcessingException {
+		process(this.cec.getDesignations());
+		if (this.cec.isOutdated()) {
+			this.cec.exitOutdated();
+		}
+	}
+
+	/**
+	 * Request and write the ephemerides of a batch of designations within the deadline. Nothing is
+	 * written if this is not the latest version (see {@link CFHTEphemeridesConfiguration#isOutdated()})
+	 *
+	 * @return The report of the batch (also logged, and written to -report if set)
+	 */
+	public RunReport process(List<String> designations) throws NeoProcessingException {
+		Instant start = Instant.now();
+		Instant deadline = start.plus(this.cec.getDeadline());
+		HttpService httpService = this.cec.getHttpService();
+		httpService.setDeadline(deadline);
+		int touchedCount = this.cec.getOutputManifest().getTouchedCount();
+		int unchangedCount = this.cec.getOutputManifest().getUnchangedCount();
+		Map<String, NightWindow> observingWindows = getObservingWindows(designations, deadline);
 		List<IRequester> requesters = new ArrayList<>();
+		List<String> notObservable = new ArrayList<>();
 		logger.debug("Creating requesters");
-		for (String designation : this.cec.getDesignations()) {
-			requesters.addAll(IRequester.getRequesters(new SmallBodyRequest(designation, this.cec)));
+		for (String designation : designations) {
+			SmallBodyRequest smallBodyRequest = new SmallBodyRequest(designation, this.cec);
+			if (observingWindows.containsKey(designation)) {
+				NightWindow observingWindow = observingWindows.get(designation);
+				if (observingWindow == null) {
+					logger.info("[{}] above airmass {} all night: not requested", designation,
+							this.cec.getMaxAirmass());
+					notObservable.add(designation);
+					continue;
+				}
+				logger.debug("[{}] observable {}", designation, observingWindow);
+				smallBodyRequest.setObservingWindow(observingWindow);
+			}
+			requesters.addAll(IRequester.getRequesters(smallBodyRequest));
 		}
+		List<MpcKnownBatchRequester> batchRequesters = MpcKnownBatchRequester.getBatchRequesters(requesters,
+				this.cec.getMpcBatchSize());
+		CompletableFuture<Boolean> upToDate = this.cec.getUpToDate();
+		Map<IRequester, List<String>> writtenFiles = new ConcurrentHashMap<>();
+		Set<IRequester> timedOut = new HashSet<>();
+		AtomicBoolean deadlineReached = new AtomicBoolean();
+		ExecutorService executorService = Executors.newFixedThreadPool(this.cec.getThreadsCounts());
+		ExecutorService writerService = Executors.newSingleThreadExecutor();
 		try {
-			ExecutorService executorService = Executors.newFixedThreadPool(this.cec.getThreadsCounts());
+			// Requesters of known objects wait for the batched MPC responses, the other ones don't
+			CompletableFuture<Void> batchesAnswered = CompletableFuture.completedFuture(null);
+			if (!batchRequesters.isEmpty()) {
+				logger.debug("Submitting {} batched MPC requests", batchRequesters.size());
+				batchesAnswered = CompletableFuture.allOf(batchRequesters.stream()
+						.map(MpcKnownBatchRequester::fetch)
+						.toArray(CompletableFuture[]::new));
+			}
 			logger.debug("Submitting {} jobs", requesters.size());
+			Map<IRequester, CompletableFuture<Void>> pipelines = new LinkedHashMap<>();
 			for (IRequester requester : requesters) {
-				executorService.submit(requester);
+				CompletableFuture<IRequester> answered;
+				if (batchRequesters.isEmpty() || MpcKnownBatchRequester.getMpcKnownRequesters(requester).isEmpty()) {
+					answered = requester.fetch(executorService);
+				} else {
+					answered = batchesAnswered.thenCompose(batchesDone -> requester.fetch(executorService));
+				}
+				// Written once the version is known to be the latest one
+				pipelines.put(requester, answered.thenAcceptBothAsync(upToDate, (answeredRequester, isUpToDate) -> {
+					if (isUpToDate) {
+						write(answeredRequester, deadlineReached, writtenFiles);
+					}
+				}, writerService));
+			}
+			// Nothing will be written: the requests in flight are aborted as soon as it is known
+			upToDate.thenAccept(isUpToDate -> {
+				if (!isUpToDate) {
+					httpService.cancelAll();
+				}
+			});
+			logger.info("Will wait no more than {}s for all requests to be answered",
+					this.cec.getDeadline().toSeconds());
+			try {
+				CompletableFuture.allOf(pipelines.values().toArray(new CompletableFuture[0]))
+					.get(Math.max(0, Duration.between(Instant.now(), deadline).toMillis()), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				deadlineReached.set(true);
+				pipelines.forEach((requester, pipeline) -> {
+					if (!pipeline.isDone()) {
+						timedOut.add(requester);
+						logger.error("No answer in time for [{}] ({})", requester.getSmallBodyRequest().getDesignation(),
+								getSource(requester));
+					}
+				});
+				httpService.cancelAll();
+			} catch (ExecutionException e) {
+				if (!this.cec.isOutdated()) {
+					logger.error("Exception caught while executing requests: {}", e.getMessage(), e);
+				}
 			}
-			executorService.shutdown();
-			logger.info("Will wait no more than 5 minutes for all requests to be answered", requesters.size());
-			executorService.awaitTermination(5, TimeUnit.MINUTES);
 		} catch (InterruptedException e) {
 			logger.error("Exception caught while executing threads: {}", e.getMessage(), e);
 			throw new NeoProcessingException(e);
+		} finally {
+			// Interrupts the Scout responses still being read
+			executorService.shutdownNow();
+			writerService.shutdown();
+		}
+		try {
+			// Let the file being written when the deadline was reached be completed
+			if (!writerService.awaitTermination(WRITER_GRACE_SECONDS, TimeUnit.SECONDS)) {
+				logger.error("Output files still being written after {}s", WRITER_GRACE_SECONDS);
+				writerService.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NeoProcessingException(e);
 		}
+		OutputManifest outputManifest = this.cec.getOutputManifest();
+		try {
+			outputManifest.save();
+		} catch (IOException e) {
+			logger.error("Cannot write the manifest of [{}]: {}", outputManifest.getDirectory(), e.getMessage());
+		}
+		return report(requesters, notObservable, writtenFiles, timedOut, Duration.between(start, Instant.now()),
+				outputManifest.getTouchedCount() - touchedCount, outputManifest.getUnchangedCount() - unchangedCount);
+	}
+
+	/**
+	 * @return The observing window of each NEOCP object of the listing, null if it is never below
+	 * -maxAirmass tonight (empty without night window or listing: the whole night is requested).
+	 * The listing is waited for {@link #getListingWait(Instant)} at most
+	 */
+	private Map<String, NightWindow> getObservingWindows(List<String> designations, Instant deadline)
+			throws NeoProcessingException {
+		Map<String, NightWindow> observingWindows = new HashMap<>();
+		NightWindow nightWindow = this.cec.getNightWindow();
+		if ( (nightWindow == null) || (this.cec.getResponseCache().getMode() == ResponseCache.Mode.CACHE_ONLY)
+				|| designations.stream().noneMatch(designation ->
+						DesignationType.classify(designation) == DesignationType.NEOCP) ) {
+			return observingWindows;
+		}
+		NeocpListing listing;
+		try {
+			listing = this.cec.getNeocpListingRequester().fetch(LISTING_MAX_AGE)
+					.get(getListingWait(deadline).toMillis(), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException | TimeoutException e) {
+			logger.warn("Cannot request the NEOCP listings (the whole night is requested): {}", e.toString());
+			return observingWindows;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NeoProcessingException(e);
+		}
+		for (String designation : designations) {
+			NeocpListing.Entry entry = listing.get(designation);
+			if ( (entry == null) || Double.isNaN(entry.getRa()) || Double.isNaN(entry.getDec()) ) {
+				continue;
+			}
+			NightWindow observingWindow = nightWindow.restrict(this.cec.getSite(), entry.getRa(), entry.getDec(),
+					this.cec.getMinAltitude(), OBSERVABLE_MARGIN);
+			observingWindows.put(designation,
+					observingWindow == null ? null : observingWindow.align(this.cec.getRequestIntervalMinutes()));
+		}
+		return observingWindows;
+	}
+
+	/**
+	 * @return The time left before the deadline, at most a tenth of -deadline and at most
+	 * {@link #LISTING_MAX_WAIT}
+	 */
+	private Duration getListingWait(Instant deadline) {
+		Duration wait = Duration.between(Instant.now(), deadline);
+		Duration tenth = this.cec.getDeadline().dividedBy(10);
+		wait = wait.compareTo(tenth) < 0 ? wait : tenth;
+		wait = wait.compareTo(LISTING_MAX_WAIT) < 0 ? wait : LISTING_MAX_WAIT;
+		return wait.isNegative() ? Duration.ZERO : wait;
+	}
+
+	private RunReport report(List<IRequester> requesters, List<String> notObservable,
+			Map<IRequester, List<String>> writtenFiles, Set<IRequester> timedOut, Duration elapsed,
+			int touchedCount, int unchangedCount) {
+		RunReport runReport = new RunReport(this.cec.getDeadline());
+		runReport.setElapsed(elapsed);
+		runReport.setFileCounts(touchedCount, unchangedCount);
+		runReport.setEndpointCounters(this.cec.getHttpService().getEndpointCounters());
 		for (IRequester requester : requesters) {
-			if (requester.isRequestSuccessful()) {
-				try {
-					requester.write();
-				} catch (NeoIOException e) {
-					logger.error("Issue while writing output file(s): {}", e.getMessage(), 
-							e);
-				}
+			String designation = requester.getSmallBodyRequest().getDesignation();
+			List<String> files = writtenFiles.get(requester);
+			if (files != null) {
+				runReport.add(designation, getSource(requester), RunReport.Outcome.WRITTEN, files);
+			} else {
+				runReport.add(designation, getSource(requester),
+						timedOut.contains(requester) ? RunReport.Outcome.TIMED_OUT : RunReport.Outcome.FAILED,
+						List.of());
+			}
+		}
+		for (String designation : notObservable) {
+			runReport.add(designation, "-", RunReport.Outcome.NOT_OBSERVABLE, List.of());
+		}
+		runReport.log();
+		if (this.cec.getReportPath() != null) {
+			try {
+				runReport.write(this.cec.getReportPath());
+			} catch (IOException e) {
+				logger.error("Cannot write the report [{}]: {}", this.cec.getReportPath(), e.getMessage());
+			}
+		}
+		return runReport;
+	}
+
+	/**
+	 * @return The suffix of the source which answered, or of all the candidates if none did
+	 */
+	private static String getSource(IRequester requester) {
+		if ( (requester instanceof FallbackRequester) && !requester.isRequestSuccessful() ) {
+			return ((FallbackRequester) requester).getCandidates().stream()
+					.map(IRequester::getSuffix)
+					.collect(Collectors.joining("|"));
+		}
+		return requester.getSuffix();
+	}
+
+	private static void write(IRequester requester, AtomicBoolean deadlineReached,
+			Map<IRequester, List<String>> writtenFiles) {
+		if (requester.isRequestSuccessful()) {
+			if (deadlineReached.get()) {
+				logger.warn("[{}] answered after the deadline: not written",
+						requester.getSmallBodyRequest().getDesignation());
+				return;
+			}
+			try {
+				writtenFiles.put(requester, requester.write());
+			} catch (NeoIOException e) {
+				logger.error("Issue while writing output file(s): {}", e.getMessage(), 
+						e);
 			}
 		}
 	}
@@ -59,6 +319,14 @@ public class CFHTEphemerides {
 		try {
 			CFHTEphemeridesConfiguration cec = CFHTEphemeridesConfiguration.parse(args);
 			CFHTEphemerides ce = new CFHTEphemerides(cec);
+			if (cec.isServe()) {
+				EphemeridesServer.create(ce, cec.getServePort()).start();
+				return;
+			}
+			if (cec.isWatch()) {
+				new NeocpWatcher(ce).run();
+				return;
+			}
 			ce.run();
 		} catch (Exception e) {
 			logger.error("Aborting because of exception: {}", e.getMessage(), e);
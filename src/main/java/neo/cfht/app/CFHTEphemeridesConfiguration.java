@@ -1,25 +1,42 @@
 package neo.cfht.app;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import neo.cfht.http.ExchangeRecorder;
+import neo.cfht.http.HttpService;
+import neo.cfht.http.ResponseCache;
+import neo.cfht.models.EphemerisTable;
+import neo.cfht.models.NightWindow;
+import neo.cfht.models.Observatory;
+import neo.cfht.models.PointingOffset;
+import neo.cfht.output.CfhtXmlTemplate;
+import neo.cfht.output.OutputManifest;
+import neo.cfht.requesters.JplNeoRequester;
+import neo.cfht.requesters.MpcKnownRequester;
+import neo.cfht.requesters.MpcNeoRequester;
+import neo.cfht.requesters.NeocpListingRequester;
 import neo.exceptions.NeoIOException;
 import neo.exceptions.NeoInitializationException;
 import neo.exceptions.NeoSerializationException;
 import neo.logging.NeoLogging;
 import neo.logging.Resources;
 import neo.timing.NeoZoneId;
-import neo.utils.UtilsInternet;
 import neo.utils.UtilsOs;
-import neo.utils.UtilsResources;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -31,6 +48,7 @@ import picocli.CommandLine.Parameters;
 			+ "'tonight' is is the current UT day if it is before 5am HST, the next day if after.\n"
 			+ "\n"
 			+ "Note: Ephemerides are requested from JPL Scout (resp. MPC) for the NEOCP objects (resp. known objects).\n"
+			+ "  NEOCP objects unknown to Scout are requested from the MPC NEOCP (use -allSources to request all services).\n"
 			+ "\n"
 			+ "IF THERE IS ANY ISSUE, please send the files prefixed with 'send-this-to-serge-in-case-of-trouble-'\n"
 			+ "\n"
@@ -39,6 +57,8 @@ import picocli.CommandLine.Parameters;
 public class CFHTEphemeridesConfiguration {
 	/** Logging */
 	private final static Logger logger = LoggerFactory.getLogger(CFHTEphemeridesConfiguration.class);
+	/** Maximum number of positions of an MPC ephemeris */
+	private static final int MPC_MAX_POSITIONS = 100;
 
 	@Option( names = { "-d", "-debug", "--debug" }, 
 			description = "Verbose debug mode", 
@@ -59,22 +79,262 @@ public class CFHTEphemeridesConfiguration {
 			description = "Display the version and exit",
 			required = false)
 	private boolean displayVersion;
-	String latestVersion;
+	volatile String latestVersion;
+	private CompletableFuture<Boolean> upToDate;
 	
 	@Option( names = {"-bypassVersionCheck", "--bypassVersionCheck"}, 
 			description = "Bypass the version check",
 			required = false)
 	private boolean bypassVersionCheck;
 	
+	@Option( names = {"-versionCheckTtl", "--versionCheckTtl"},
+			description = "Time in minutes the latest version found is cached (default: ${DEFAULT-VALUE}).\n" +
+					"         The check doesn't delay the requests: the files are written once it is done",
+			defaultValue = "360",
+			required = false)
+	private int versionCheckTtlMinutes;
+	
+	@Option( names = {"-noPrewarm", "--noPrewarm"},
+			description = "Don't open the connections to the services before the first requests",
+			required = false)
+	private boolean noPrewarm;
+	
 	@Option( names = {"-threads", "--threads"},
-			description = "Set the maximum number of threads (default: ${DEFAULT-VALUE})",
-			defaultValue = "2", /* if larger, Scout fails :-( */
+			description = "Set the number of worker threads reading cached responses and parsing Scout responses (default: ${DEFAULT-VALUE})\n" +
+					"         Requests are sent asynchronously: the number of requests in flight to each host is limited by -hostConcurrency",
+			defaultValue = "4",
 			required = false)
 	private int threadsCounts;
 	public int getThreadsCounts() {
 		return this.threadsCounts;
 	}
 	
+	@Option( names = {"-connectTimeout", "--connectTimeout"},
+			description = "Maximum time in seconds to establish a connection (default: ${DEFAULT-VALUE})",
+			defaultValue = "10",
+			required = false)
+	private int connectTimeoutSeconds;
+	
+	@Option( names = {"-readTimeout", "--readTimeout"},
+			description = "Maximum time in seconds to wait for a response (default: ${DEFAULT-VALUE})",
+			defaultValue = "60",
+			required = false)
+	private int readTimeoutSeconds;
+	
+	@Option( names = {"-keepAlive", "--keepAlive"},
+			description = "Time in seconds an idle connection is kept open for reuse (default: ${DEFAULT-VALUE})",
+			defaultValue = "300",
+			required = false)
+	private int keepAliveSeconds;
+	
+	@Option( names = {"-hostConcurrency", "--hostConcurrency"},
+			description = "Maximum number of concurrent requests to a host, e.g. ssd-api.jpl.nasa.gov=2 (repeatable).\n" +
+					"         The actual number adapts to the host health: it grows while responses are fine and\n" +
+					"         is halved on HTTP 429/503 or slow responses.\n" +
+					"         Defaults: ssd-api.jpl.nasa.gov=2, cgi.minorplanetcenter.net=8, www.minorplanetcenter.net=8",
+			required = false)
+	private Map<String, Integer> hostConcurrency;
+	
+	@Option( names = {"-slowResponse", "--slowResponse"},
+			description = "Time in seconds above which a response is considered slow and reduces the concurrency\n" + 
+					"         to the host (default: ${DEFAULT-VALUE})",
+			defaultValue = "20",
+			required = false)
+	private int slowResponseSeconds;
+	
+	@Option( names = {"-retries", "--retries"},
+			description = "Maximum number of retries of a request failing transiently (connection error, timeout,\n" +
+					"         HTTP 429/502/503/504), for the hosts not set with -hostRetries (default: ${DEFAULT-VALUE})",
+			defaultValue = "2",
+			required = false)
+	private int retries;
+	
+	@Option( names = {"-hostRetries", "--hostRetries"},
+			description = "Maximum number of retries for a host, e.g. ssd-api.jpl.nasa.gov=3 (repeatable).\n" +
+					"         Defaults: ssd-api.jpl.nasa.gov=3",
+			required = false)
+	private Map<String, Integer> hostRetries;
+	
+	@Option( names = {"-retryBaseDelay", "--retryBaseDelay"},
+			description = "Delay before the first retry, doubled at each retry, with jitter, e.g. 500ms (default: ${DEFAULT-VALUE}).\n" +
+					"         A longer 'Retry-After' of the host is honoured",
+			defaultValue = "500ms",
+			converter = DurationConverter.class,
+			required = false)
+	private Duration retryBaseDelay;
+	
+	@Option( names = {"-retryMaxDelay", "--retryMaxDelay"},
+			description = "Maximum delay between two retries (default: ${DEFAULT-VALUE})",
+			defaultValue = "10s",
+			converter = DurationConverter.class,
+			required = false)
+	private Duration retryMaxDelay;
+	
+	@Option( names = {"-circuitFailures", "--circuitFailures"},
+			description = "Number of consecutive failures after which the requests to a host fail at once\n" +
+					"         (circuit open) instead of waiting for their timeout (default: ${DEFAULT-VALUE})",
+			defaultValue = "5",
+			required = false)
+	private int circuitFailures;
+	
+	@Option( names = {"-circuitOpen", "--circuitOpen"},
+			description = "Time during which the requests to a host fail at once once its circuit is open, before\n" +
+					"         a request probes the host again (default: ${DEFAULT-VALUE})",
+			defaultValue = "30s",
+			converter = DurationConverter.class,
+			required = false)
+	private Duration circuitOpen;
+	
+	@Option( names = {"-deadline", "--deadline"},
+			description = "Time allowed to the whole run, e.g. 90s or 2m (default: ${DEFAULT-VALUE}).\n" +
+					"         The timeout of each request is cut to the time left; at the deadline, the requests\n" +
+					"         still running are cancelled and their objects reported as timed out",
+			defaultValue = "5m",
+			converter = DurationConverter.class,
+			required = false)
+	private Duration deadline;
+	public Duration getDeadline() {
+		return this.deadline;
+	}
+	
+	@Option( names = {"-report", "--report"},
+			description = "File where the report of the run (files written, objects failed or timed out) is written\n" +
+					"         (default: the report is only logged)",
+			required = false)
+	private Path reportPath;
+	public Path getReportPath() {
+		return this.reportPath;
+	}
+	
+	@Option( names = {"-jplBaseUrl", "--jplBaseUrl"},
+			description = "Base URL of JPL Scout (default: ${DEFAULT-VALUE})",
+			defaultValue = "https://ssd-api.jpl.nasa.gov",
+			required = false)
+	private String jplBaseUrl;
+	public String getJplBaseUrl() {
+		return this.jplBaseUrl;
+	}
+	
+	@Option( names = {"-mpcBaseUrl", "--mpcBaseUrl"},
+			description = "Base URL of the MPC ephemeris service for known objects (default: ${DEFAULT-VALUE})",
+			defaultValue = "https://www.minorplanetcenter.net",
+			required = false)
+	private String mpcBaseUrl;
+	public String getMpcBaseUrl() {
+		return this.mpcBaseUrl;
+	}
+	
+	@Option( names = {"-mpcCgiBaseUrl", "--mpcCgiBaseUrl"},
+			description = "Base URL of the MPC NEOCP ephemeris service (default: ${DEFAULT-VALUE})",
+			defaultValue = "https://cgi.minorplanetcenter.net",
+			required = false)
+	private String mpcCgiBaseUrl;
+	public String getMpcCgiBaseUrl() {
+		return this.mpcCgiBaseUrl;
+	}
+	
+	@Option( names = {"-record", "--record"},
+			description = "Record all the HTTP exchanges in that directory (to be replayed by neo.cfht.http.ReplayServer)",
+			required = false)
+	private Path recordDirectory;
+	
+	private HttpService httpService;
+	public HttpService getHttpService() {
+		return this.httpService;
+	}
+	
+	@Option( names = {"-allSources", "--allSources"},
+			description = "Request every object from JPL Scout, MPC NEOCP and MPC known objects services\n" +
+					"         instead of only the services matching the type of its designation",
+			required = false)
+	private boolean allSources;
+	public boolean isAllSources() {
+		return this.allSources;
+	}
+	
+	@Option( names = {"-cacheDirectory", "--cacheDirectory"},
+			description = "Directory where the responses of the services are cached (default: <path>/.cache)",
+			required = false)
+	private Path cacheDirectory;
+	
+	@Option( names = {"-neoCacheTtl", "--neoCacheTtl"},
+			description = "[MPC|JPL] Time in minutes a cached response for a NEOCP candidate is used (default: ${DEFAULT-VALUE})",
+			defaultValue = "10",
+			required = false)
+	private int neoCacheTtlMinutes;
+	
+	@Option( names = {"-serve", "--serve"},
+			description = "Keep running and answer designation batches on a local HTTP port (see -servePort)\n" +
+					"         instead of requesting the designations of the command line",
+			required = false)
+	private boolean serve;
+	public boolean isServe() {
+		return this.serve;
+	}
+	
+	@Option( names = {"-servePort", "--servePort"},
+			description = "Local port of -serve (default: ${DEFAULT-VALUE})",
+			defaultValue = "8643",
+			required = false)
+	private int servePort;
+	public int getServePort() {
+		return this.servePort;
+	}
+	
+	@Option( names = {"-watch", "--watch"},
+			description = "Keep running and poll the NEOCP listings of the MPC and Scout every -watchInterval:\n" +
+					"         only the objects new to the NEOCP or whose orbit changed are requested and written again.\n" +
+					"         The designations of the command line are watched, all the NEOCP objects if none is given",
+			required = false)
+	private boolean watch;
+	public boolean isWatch() {
+		return this.watch;
+	}
+	
+	@Option( names = {"-watchInterval", "--watchInterval"},
+			description = "Time between two polls of -watch (default: ${DEFAULT-VALUE})",
+			defaultValue = "5m",
+			converter = DurationConverter.class,
+			required = false)
+	private Duration watchInterval;
+	public Duration getWatchInterval() {
+		return this.watchInterval;
+	}
+	
+	@Option( names = {"-knownCacheTtl", "--knownCacheTtl"},
+			description = "[MPC only] Time in minutes a cached response for a known object is used (default: ${DEFAULT-VALUE})",
+			defaultValue = "360",
+			required = false)
+	private int knownCacheTtlMinutes;
+	
+	@Option( names = {"-notFoundCacheTtl", "--notFoundCacheTtl"},
+			description = "[MPC|JPL] Time in minutes a cached response telling that the object is unknown (or an\n" +
+					"         error) is used (default: ${DEFAULT-VALUE})",
+			defaultValue = "2",
+			required = false)
+	private int notFoundCacheTtlMinutes;
+	
+	@Option( names = {"-cacheMaxMB", "--cacheMaxMB"},
+			description = "Maximum size of the cache in MB; the oldest responses are evicted first (default: ${DEFAULT-VALUE})",
+			defaultValue = "200",
+			required = false)
+	private int cacheMaxMB;
+	
+	@Option( names = {"-cacheOnly", "--cacheOnly"},
+			description = "Only use the cached responses (whatever their age), never request the services",
+			required = false)
+	private boolean cacheOnly;
+	
+	@Option( names = {"-refresh", "--refresh"},
+			description = "Ignore the cached responses and request the services again",
+			required = false)
+	private boolean refresh;
+	
+	private ResponseCache responseCache;
+	public ResponseCache getResponseCache() {
+		return this.responseCache;
+	}
+	
 	@Option( names = {"-date", "--date"},
 			description = "[MPC|JPL] Use a different date than '${DEFAULT-VALUE}'",
 			defaultValue = "tonight (UT)",
@@ -83,6 +343,8 @@ public class CFHTEphemeridesConfiguration {
 	public String getDate() {
 		return this.date;
 	}
+	/** True if the date is computed ('tonight') rather than given with -date */
+	private boolean tonight;
 	
 	@Option( names = {"-i", "-interval", "--interval"},
 			description = "[MPC|JPL] Interval in minutes between each position (default: ${DEFAULT-VALUE} minutes)",
@@ -94,11 +356,11 @@ public class CFHTEphemeridesConfiguration {
 	}
 	
 	@Option( names = {"-c", "-count", "--count"},
-			description = "[MPC only] Number of positions to be requested from MPC.\n" + 
-					"     Note: Only visible (in terms of local horizon) ephemerides are displayed. \n" + 
-					"       But(!), the number of ephemerides being requested from MPC doesn't \n" + 
-					"       take this into account.\n" + 
-					"       Increase that number if you don't get any ephemeris. Maximum 100, default: ${DEFAULT-VALUE}",
+			description = "[MPC only] Number of positions to be requested from MPC with -noNightWindow (or an observatory\n" + 
+					"     whose site is unknown); otherwise the positions of the night are requested.\n" + 
+					"     Maximum 100 (of the coarse grid with -coarseInterval), default: ${DEFAULT-VALUE}.\n" +
+					"     The MPC also returns at most 100 positions of the night: with an -interval shorter than\n" +
+					"     the night / 100, use -coarseInterval",
 			defaultValue = "30",
 			required = false)
 	private int positionsCount;
@@ -106,26 +368,114 @@ public class CFHTEphemeridesConfiguration {
 		return this.positionsCount;
 	}
 	
+	@Option( names = {"-coarseInterval", "--coarseInterval"},
+			description = "[MPC|JPL] Request the positions every <coarseInterval> minutes only and interpolate them\n" +
+					"         locally every -interval minutes (default: ${DEFAULT-VALUE}, no interpolation).\n" +
+					"         The responses are smaller and -count is no longer limited by the 100 positions of the MPC",
+			defaultValue = "0",
+			required = false)
+	private int coarseIntervalMinutes;
+	public boolean isInterpolating() {
+		return this.coarseIntervalMinutes > 0;
+	}
+	
+	@Option( names = {"-interpolationTolerance", "--interpolationTolerance"},
+			description = "Interpolation error in arcsec (estimated from the requested positions) above which a\n" +
+					"         warning is logged (default: ${DEFAULT-VALUE})",
+			defaultValue = "1.0",
+			required = false)
+	private double interpolationToleranceArcsec;
+	public double getInterpolationToleranceArcsec() {
+		return this.interpolationToleranceArcsec;
+	}
+	
+	/**
+	 * @return The interval of the positions requested from the services (-coarseInterval if
+	 * interpolating, else -interval)
+	 */
+	public int getRequestIntervalMinutes() {
+		return isInterpolating() ? this.coarseIntervalMinutes : this.intervalMinutes;
+	}
+	/**
+	 * @return The number of positions requested from the MPC: the positions of the night window
+	 * (at most {@value #MPC_MAX_POSITIONS}, see {@link #getNightWindow()}) if any, else enough positions of the coarse grid to cover the -count positions
+	 * of the fine grid if interpolating, else -count
+	 */
+	public int getRequestPositionsCount() {
+		NightWindow nightWindow = getNightWindow();
+		if (nightWindow != null) {
+			return Math.min(MPC_MAX_POSITIONS, nightWindow.getPositionsCount(getRequestIntervalMinutes()));
+		}
+		return getCountPositionsCount();
+	}
+	private int getCountPositionsCount() {
+		if (!isInterpolating() || (this.positionsCount == 0)) {
+			return this.positionsCount;
+		}
+		long spanMinutes = (long) (this.positionsCount - 1) * this.intervalMinutes;
+		return (int) ((spanMinutes + this.coarseIntervalMinutes - 1) / this.coarseIntervalMinutes) + 1;
+	}
+	
+	@Option( names = {"-mpcBatchSize", "--mpcBatchSize"},
+			description = "[MPC only] Maximum number of known objects requested at once from MPC (default: ${DEFAULT-VALUE}).\n" +
+					"         Objects missing from a batched response are requested one by one. 1 disables batching",
+			defaultValue = "50",
+			required = false)
+	private int mpcBatchSize;
+	public int getMpcBatchSize() {
+		return this.mpcBatchSize;
+	}
+	
 	@Option( names = {"-e", "-east", "--east"},
-			description = "[JPL only] Defines the offset in degrees (default: ${DEFAULT-VALUE}) to add to RA to translate the observation point.\n" +
-					"         RA values are replaced by RA + raSign * <eastOffset>/cosine(DEC)",
+			description = "[MPC|JPL] Defines the offset in degrees (default: ${DEFAULT-VALUE}) to add to RA to translate the observation point.\n" +
+					"         RA values are replaced by RA + raSign * <eastOffset>/cosine(DEC) in the -C000 files",
 			defaultValue = "0.",
 			required = false)
 	private double eastOffset;
 	
 	@Option( names = {"-n", "-north", "--north"},
-			description = "[JPL only] Defines the offset in degrees (default: ${DEFAULT-VALUE}) to add to DEC to translate the observation point\n" + 
-					"         DEC values are replaced by DEC + <northOffset>",
+			description = "[MPC|JPL] Defines the offset in degrees (default: ${DEFAULT-VALUE}) to add to DEC to translate the observation point\n" + 
+					"         DEC values are replaced by DEC + <northOffset> in the -C000 files",
 			defaultValue = "0.",
 			required = false)
 	private double northOffset;
 	
 	@Option( names = {"-s", "-swapSign", "--swapSign"},
-			description = "[JPL only] Swaps the sign of the RA offset \n" + 
+			description = "[MPC|JPL] Swaps the sign of the RA offsets (-east, -offset, -ditherGrid) \n" + 
 					"         Default: ${DEFAULT-VALUE}, raSign = +1,\n" +
 					"         If -swapsign is set, raSign = -1",
 			required = false)
 	private boolean swapSign;
+	
+	@Option( names = {"-offset", "--offset"},
+			description = "[MPC|JPL] Additional pointing <east>,<north> in degrees around the -east/-north one, e.g. 0.01,-0.005\n" +
+					"         (repeatable): written to the -C001, -C002... files, computed from the same ephemerides",
+			converter = PointingOffsetConverter.class,
+			required = false)
+	private List<PointingOffset> offsets;
+	
+	@Option( names = {"-ditherGrid", "--ditherGrid"},
+			description = "[MPC|JPL] Size of a square dither pattern around the -east/-north pointing, e.g. 3 for 9 pointings\n" +
+					"         (default: ${DEFAULT-VALUE}, no dither). The pointings other than the center are written after\n" +
+					"         the -offset ones, row by row from the south-west corner",
+			defaultValue = "1",
+			required = false)
+	private int ditherGrid;
+	
+	@Option( names = {"-ditherStep", "--ditherStep"},
+			description = "[MPC|JPL] Distance in degrees between two pointings of -ditherGrid (default: ${DEFAULT-VALUE})",
+			defaultValue = "0.",
+			required = false)
+	private double ditherStep;
+	
+	private List<PointingOffset> pointingOffsets;
+	/**
+	 * @return The offsets of the pointings: the one of the -C000 files (-east/-north) then the
+	 * -offset and -ditherGrid ones around it
+	 */
+	public List<PointingOffset> getPointingOffsets() {
+		return this.pointingOffsets;
+	}
 
 	@Option( names = {"-p", "-path", "--path"},
 			description = "[MPC|JPL] Output directory (default: ${DEFAULT-VALUE})",
@@ -144,6 +494,84 @@ public class CFHTEphemeridesConfiguration {
 	public String getObservatory() {
 		return this.observatory;
 	}
+	/** Null if the site of the observatory is unknown */
+	private Observatory site;
+	public Observatory getSite() {
+		return this.site;
+	}
+	
+	@Option( names = {"-noNightWindow", "--noNightWindow"},
+			description = "[MPC|JPL] Request the positions from the start of the date (-count positions from the MPC,\n" +
+					"         04:00 to 18:00 UT from JPL) rather than during the night at the observatory only",
+			required = false)
+	private boolean noNightWindow;
+	
+	@Option( names = {"-twilight", "--twilight"},
+			description = "[MPC|JPL] Altitude of the Sun in degrees at the start and the end of the night\n" +
+					"         (default: ${DEFAULT-VALUE}, nautical twilight)",
+			defaultValue = "-12",
+			required = false)
+	private double twilight;
+	
+	@Option( names = {"-maxAirmass", "--maxAirmass"},
+			description = "[MPC|JPL] NEOCP objects are only requested for the part of the night where their airmass\n" +
+					"         (from their position on the NEOCP) is below that value, and not at all if it never is\n" +
+					"         (default: ${DEFAULT-VALUE})",
+			defaultValue = "2.5",
+			required = false)
+	private double maxAirmass;
+	public double getMaxAirmass() {
+		return this.maxAirmass;
+	}
+	/**
+	 * @return The altitude (degrees) of the -maxAirmass
+	 */
+	public double getMinAltitude() {
+		return 90. - Math.toDegrees(Math.acos(1./this.maxAirmass));
+	}
+	
+	private NightWindow nightWindow;
+	/** Date of the night window */
+	private String nightWindowDate;
+	/**
+	 * @return The night of the date at the observatory, aligned on the requested positions (null
+	 * with -noNightWindow, if the site is unknown, or if there is no night). A warning is logged if
+	 * the night needs more positions than the MPC returns: the end of the night is then missing
+	 * from the MPC ephemerides (not from Scout)
+	 */
+	public synchronized NightWindow getNightWindow() {
+		if (this.noNightWindow || (this.site == null)) {
+			return null;
+		}
+		if (!this.date.equals(this.nightWindowDate)) {
+			this.nightWindowDate = this.date;
+			this.nightWindow = null;
+			try {
+				NightWindow night = NightWindow.of(this.site, LocalDate.parse(this.date), this.twilight);
+				if (night == null) {
+					logger.warn("No night on {} at {}: positions requested from the start of the date",
+							this.date, this.site);
+				} else {
+					this.nightWindow = night.align(getRequestIntervalMinutes());
+					logger.info("Night of {} at {}: {} ({} minutes)", this.date, this.site, this.nightWindow,
+							this.nightWindow.getDuration().toMinutes());
+					int positionsCount = this.nightWindow.getPositionsCount(getRequestIntervalMinutes());
+					if (positionsCount > MPC_MAX_POSITIONS) {
+						long minutes = this.nightWindow.getDuration().toMinutes();
+						logger.warn("The night of {} needs {} positions every {} minutes but the MPC returns at most {}: "
+								+ "its last {} minutes are missing from the MPC ephemerides. Use -coarseInterval {} (or more)",
+								this.date, positionsCount, getRequestIntervalMinutes(), MPC_MAX_POSITIONS,
+								(long) (positionsCount - MPC_MAX_POSITIONS) * getRequestIntervalMinutes(),
+								(minutes + MPC_MAX_POSITIONS - 2) / (MPC_MAX_POSITIONS - 1));
+					}
+				}
+			} catch (DateTimeParseException e) {
+				logger.warn("Cannot compute the night of [{}] (not YYYY-MM-DD): positions requested from the start of the date",
+						this.date);
+			}
+		}
+		return this.nightWindow;
+	}
 	
 	@Option( names = { "-norbits", "--norbits" }, 
 			description = "[JPL only] Number of sampled orbits. Default: ${DEFAULT-VALUE}",
@@ -164,15 +592,36 @@ public class CFHTEphemeridesConfiguration {
 		return this.designations;
 	}
 	
-	private String cfhtTemplateFormat;
-	public String getCfhtXML(List<String> ephemerides) {
-		return String.format(this.cfhtTemplateFormat, 
-				String.join("\n", ephemerides));
+	private NeocpListingRequester neocpListingRequester;
+	/**
+	 * @return The requester of the NEOCP listings, shared by the watch mode and the observing windows
+	 */
+	public NeocpListingRequester getNeocpListingRequester() {
+		return this.neocpListingRequester;
+	}
+	
+	private OutputManifest outputManifest;
+	/**
+	 * @return The hashes of the files of the output directory (unchanged files are not written again)
+	 */
+	public OutputManifest getOutputManifest() {
+		return this.outputManifest;
+	}
+	
+	private CfhtXmlTemplate cfhtXmlTemplate;
+	public CfhtXmlTemplate getCfhtXmlTemplate() {
+		return this.cfhtXmlTemplate;
+	}
+	public String getCfhtXML(EphemerisTable ephemerides) {
+		return this.cfhtXmlTemplate.render(ephemerides);
 	}
 	
 	private CFHTEphemeridesConfiguration() {
 		logger.trace("No compiler warning");
 		this.designations = new ArrayList<>();
+		this.hostConcurrency = new HashMap<>();
+		this.hostRetries = new HashMap<>();
+		this.offsets = new ArrayList<>();
 	}
 
 	public static String PREFIX_TROUBLE = "send-this-to-serge-in-case-of-trouble";
@@ -189,22 +638,6 @@ public class CFHTEphemeridesConfiguration {
 			System.exit(0);
 			return null;
 		}
-		if (!cec.bypassVersionCheck) {
-			if (!cec.checkVersion()) {
-				System.err.println("!".repeat(80));
-				System.err.println("!");
-				System.err.println("! You are not using the latest version (" + cec.latestVersion + ") of this software (you're using " + VERSION +")");
-				System.err.println("!");
-				System.err.println("! You can");
-				System.err.println("! - Either: Download the latest version at https://neo.ifa.hawaii.edu/users/cfht/CFHTEphemerides-latest.jar");
-				System.err.println("! - Or: Append the -bypassVersionCheck option to the command line if you cannot or don't want to update it (Be aware that there is no guarantee that the software will work properly though)");
-				System.err.println("!");
-				System.err.println("!".repeat(80));
-				System.exit(2);
-			} else {
-				logger.warn("Not using the last version of this software");
-			}
-		}
 		System.err.println("!".repeat(80));
 		System.err.println("!");
 		System.err.println("! IF THERE IS ANY ISSUE");
@@ -226,16 +659,141 @@ public class CFHTEphemeridesConfiguration {
 		return cec;
 	}
 
-	private boolean checkVersion() throws NeoInitializationException {
-		try {
-			this.latestVersion = new String(UtilsInternet.download(
-					new URL("https://neo.ifa.hawaii.edu/users/cfht/VERSION"))).trim();
-			if (this.debug) {
-				logger.debug("Current version: [{}], software version: [{}]", this.latestVersion, VERSION);
+	/**
+	 * Set the date to 'tonight' (the current UT day if it is before 5am HST, the next day if after)
+	 * unless a date was given with -date. Called for each batch by the server, which runs for
+	 * several nights.
+	 */
+	public void updateTonight() {
+		if (!this.tonight) {
+			logger.info("Ephemerides requested for {} (UT)", this.date);
+			return;
+		}
+		logger.info("Ephemerides requested for tonight (UT)");
+		String utcDate = ZonedDateTime.now(NeoZoneId.UTC).toString().replaceAll("T.*", "");
+		ZonedDateTime hstZDT = ZonedDateTime.now(NeoZoneId.HST);
+		String hstDate = hstZDT.toString().replaceAll("T.*", "");
+		if (hstDate.equals(utcDate) && (hstZDT.getHour()>=5) ) {
+			logger.debug("After 5am HST: Requesting data for tomorrow HST");
+			utcDate = ZonedDateTime.now(NeoZoneId.UTC).plusDays(1).toString().replaceAll("T.*", "");
+		} else {
+			logger.debug("Before 5am HST: Requesting data for today HST");
+		}
+		this.date = utcDate;
+		logger.info("... that is: {} (UT)", this.date);
+	}
+
+	/**
+	 * @return A future completed with true unless the latest published version is known and different
+	 * (always true with -bypassVersionCheck)
+	 */
+	public synchronized CompletableFuture<Boolean> getUpToDate() {
+		return this.upToDate;
+	}
+	/**
+	 * @return True if the latest published version is known and different: the files are not
+	 * written
+	 */
+	public synchronized boolean isOutdated() {
+		return Boolean.FALSE.equals(this.upToDate.getNow(null));
+	}
+	public String getLatestVersion() {
+		return this.latestVersion;
+	}
+
+	/**
+	 * Check the latest version again if the previous check is done (the version found is cached
+	 * for -versionCheckTtl). Called for each batch by the server and the watch mode, which run for
+	 * days.
+	 */
+	public synchronized void updateVersionCheck() {
+		if (this.upToDate.isDone()) {
+			startVersionCheck();
+		}
+	}
+
+	/**
+	 * Tell the user to update and exit
+	 */
+	public void exitOutdated() {
+		System.err.println("!".repeat(80));
+		System.err.println("!");
+		System.err.println("! You are not using the latest version (" + this.latestVersion + ") of this software (you're using " + VERSION +")");
+		System.err.println("!");
+		System.err.println("! You can");
+		System.err.println("! - Either: Download the latest version at https://neo.ifa.hawaii.edu/users/cfht/CFHTEphemerides-latest.jar");
+		System.err.println("! - Or: Append the -bypassVersionCheck option to the command line if you cannot or don't want to update it (Be aware that there is no guarantee that the software will work properly though)");
+		System.err.println("!");
+		System.err.println("!".repeat(80));
+		System.exit(2);
+	}
+
+	/**
+	 * Start the version check without waiting for it: the requests are sent meanwhile, their results
+	 * are written once the version is known to be the latest one
+	 */
+	private synchronized void startVersionCheck() {
+		if (this.bypassVersionCheck) {
+			this.upToDate = CompletableFuture.completedFuture(true);
+			return;
+		}
+		this.upToDate = VersionCheck.latestVersion(this.httpService,
+				this.responseCache.getDirectory().resolve(VersionCheck.CACHE_FILE_NAME),
+				Duration.ofMinutes(this.versionCheckTtlMinutes))
+				.thenApply(latestVersion -> {
+					this.latestVersion = latestVersion;
+					logger.debug("Latest version: [{}], software version: [{}]", latestVersion, VERSION);
+					// Unknown: don't prevent the run
+					return (latestVersion == null) || latestVersion.equals(VERSION);
+				});
+	}
+
+	/**
+	 * Open the connections to the hosts of the services (DNS lookup, TCP and TLS handshakes) while
+	 * the configuration is completed, so that the first requests find them ready
+	 */
+	private void prewarm() {
+		if (this.noPrewarm || this.cacheOnly) {
+			return;
+		}
+		List<URI> uris = new ArrayList<>();
+		for (String baseUrl : List.of(this.jplBaseUrl, this.mpcBaseUrl, this.mpcCgiBaseUrl)) {
+			try {
+				uris.add(URI.create(baseUrl + "/"));
+			} catch (IllegalArgumentException e) {
+				logger.warn("Invalid base URL [{}]: {}", baseUrl, e.getMessage());
 			}
-			return VERSION.equals(this.latestVersion);
-		} catch (NeoIOException | MalformedURLException e) {
-			throw new NeoInitializationException(e);
+		}
+		this.httpService.prewarm(uris);
+	}
+
+	private void initializePointingOffsets() throws NeoInitializationException {
+		if ( (this.ditherGrid < 1) || (this.ditherGrid % 2 == 0)
+				|| ( (this.ditherGrid > 1) && (this.ditherStep <= 0.) ) ) {
+			throw new NeoInitializationException("-ditherGrid must be odd and -ditherStep strictly positive: "
+					+ this.ditherGrid + ", " + this.ditherStep);
+		}
+		double raSign = this.swapSign ? -1. : 1.;
+		PointingOffset base = new PointingOffset(raSign*this.eastOffset, this.northOffset);
+		this.pointingOffsets = new ArrayList<>();
+		this.pointingOffsets.add(base);
+		for (PointingOffset offset : this.offsets) {
+			this.pointingOffsets.add(base.plus(new PointingOffset(raSign*offset.getEast(), offset.getNorth())));
+		}
+		int half = this.ditherGrid / 2;
+		for (int north=-half; north<=half; north++) {
+			for (int east=-half; east<=half; east++) {
+				if ( (east != 0) || (north != 0) ) {
+					this.pointingOffsets.add(base.plus(new PointingOffset(raSign*east*this.ditherStep,
+							north*this.ditherStep)));
+				}
+			}
+		}
+		if (this.pointingOffsets.size() > 1000) {
+			throw new NeoInitializationException("Too many pointings (C000 to C999): " + this.pointingOffsets.size());
+		}
+		if (this.pointingOffsets.size() > 1) {
+			logger.info("{} pointings per object", this.pointingOffsets.size());
 		}
 	}
 
@@ -246,38 +804,92 @@ public class CFHTEphemeridesConfiguration {
 			logger.error("Cannot create output directory [{}]", this.outputDirectory);
 			throw new NeoInitializationException(e);
 		}
+		this.outputManifest = OutputManifest.load(this.outputDirectory);
 		// Filter out empty designations
 		logger.debug("Checking if any designation is empty");
 		this.designations = this.designations.stream()
 				.filter(designation -> !designation.trim().isEmpty())
 				.collect(Collectors.toList());
-		if (this.designations.isEmpty()) {
+		if (this.designations.isEmpty() && !this.serve && !this.watch) {
 			throw new NeoInitializationException("At least one designation is needed. Try using option -h for help");
 		}
 		logger.debug("Checking -count value");
-		if ( (this.positionsCount<0) || (this.positionsCount>100) ) {
-			throw new NeoInitializationException("-count value outside the [0:100] range: " + this.positionsCount);
-		}
-		logger.info("Ephemerides requested for {} (UT)", this.date);
-		if ("tonight (UT)".equals(this.date)) {
-			this.date = ZonedDateTime.now(NeoZoneId.UTC).toString().replaceAll("T.*", "");
-			ZonedDateTime hstZDT = ZonedDateTime.now(NeoZoneId.HST);
-			String hstDate = hstZDT.toString().replaceAll("T.*", "");
-			if (hstDate.equals(this.date) && (hstZDT.getHour()>=5) ) {
-				logger.debug("After 5am HST: Requesting data for tomorrow HST");
-				this.date = ZonedDateTime.now(NeoZoneId.UTC).plusDays(1).toString().replaceAll("T.*", "");
-			} else {
-				logger.debug("Before 5am HST: Requesting data for today HST");
+		if ( (this.positionsCount<0) || (getCountPositionsCount()>MPC_MAX_POSITIONS) ) {
+			throw new NeoInitializationException("-count value outside the [0:100] range"
+					+ (isInterpolating() ? " (of the coarse grid): " : ": ") + this.positionsCount);
+		}
+		if (isInterpolating() && (this.coarseIntervalMinutes <= this.intervalMinutes)) {
+			throw new NeoInitializationException("-coarseInterval must be larger than -interval: "
+					+ this.coarseIntervalMinutes);
+		}
+		initializePointingOffsets();
+		if ( (this.maxAirmass < 1.) || (this.twilight < -90.) || (this.twilight > 0.) ) {
+			throw new NeoInitializationException("-maxAirmass must be at least 1 and -twilight within [-90:0]: "
+					+ this.maxAirmass + ", " + this.twilight);
+		}
+		this.site = Observatory.forCode(this.observatory);
+		if ( (this.site == null) && !this.noNightWindow ) {
+			logger.warn("Site of the observatory {} unknown: positions requested from the start of the date",
+					this.observatory);
+		}
+		this.tonight = "tonight (UT)".equals(this.date);
+		updateTonight();
+		if ( (this.connectTimeoutSeconds<=0) || (this.readTimeoutSeconds<=0) || (this.keepAliveSeconds<0) ) {
+			throw new NeoInitializationException("Timeouts must be strictly positive and -keepAlive positive");
+		}
+		if ( (this.retries<0) || this.hostRetries.values().stream().anyMatch(hostRetries -> hostRetries<0)
+				|| (this.circuitFailures<1) ) {
+			throw new NeoInitializationException("-retries and -hostRetries must be positive and -circuitFailures at least 1");
+		}
+		if (this.deadline.isNegative() || this.deadline.isZero()) {
+			throw new NeoInitializationException("-deadline must be strictly positive: " + this.deadline);
+		}
+		if (this.hostConcurrency.values().stream().anyMatch(concurrency -> concurrency<1)) {
+			throw new NeoInitializationException("-hostConcurrency values must be at least 1: " + this.hostConcurrency);
+		}
+		this.httpService = new HttpService(Duration.ofSeconds(this.connectTimeoutSeconds),
+				Duration.ofSeconds(this.readTimeoutSeconds), Duration.ofSeconds(this.keepAliveSeconds),
+				this.hostConcurrency, Duration.ofSeconds(this.slowResponseSeconds));
+		this.httpService.setRetries(this.retries, this.hostRetries, this.retryBaseDelay, this.retryMaxDelay);
+		this.httpService.setCircuitBreakers(this.circuitFailures, this.circuitOpen);
+		prewarm();
+		this.neocpListingRequester = new NeocpListingRequester(this);
+		if (this.recordDirectory != null) {
+			try {
+				this.httpService.setExchangeRecorder(new ExchangeRecorder(this.recordDirectory));
+			} catch (IOException e) {
+				logger.error("Cannot create record directory [{}]", this.recordDirectory);
+				throw new NeoInitializationException(e);
 			}
-			logger.info("... that is: {} (UT)", this.date);
 		}
+		if (this.cacheOnly && this.refresh) {
+			throw new NeoInitializationException("-cacheOnly and -refresh are mutually exclusive");
+		}
+		if (this.watch && (this.serve || this.cacheOnly)) {
+			throw new NeoInitializationException("-watch cannot be used with -serve or -cacheOnly");
+		}
+		if (this.watch && (this.watchInterval.isNegative() || this.watchInterval.isZero())) {
+			throw new NeoInitializationException("-watchInterval must be strictly positive: " + this.watchInterval);
+		}
+		try {
+			this.responseCache = new ResponseCache(
+					this.cacheDirectory == null ? this.outputDirectory.resolve(".cache") : this.cacheDirectory,
+					Map.of(JplNeoRequester.SUFFIX, Duration.ofMinutes(this.neoCacheTtlMinutes),
+							MpcNeoRequester.SUFFIX, Duration.ofMinutes(this.neoCacheTtlMinutes),
+							MpcKnownRequester.SUFFIX, Duration.ofMinutes(this.knownCacheTtlMinutes)),
+					Duration.ofMinutes(this.neoCacheTtlMinutes),
+					Duration.ofMinutes(this.notFoundCacheTtlMinutes),
+					1024L * 1024L * this.cacheMaxMB,
+					this.cacheOnly ? ResponseCache.Mode.CACHE_ONLY
+							: (this.refresh ? ResponseCache.Mode.REFRESH : ResponseCache.Mode.DEFAULT));
+		} catch (IOException e) {
+			logger.error("Cannot create cache directory: {}", e.getMessage());
+			throw new NeoInitializationException(e);
+		}
+		startVersionCheck();
 		// Load the header / footer templates
 		try {
-			StringBuilder sb = new StringBuilder();
-			sb.append(UtilsResources.getResourceAsString("/xml/cfht_template_header.xml"));
-			sb.append("%s\n");
-			sb.append(UtilsResources.getResourceAsString("/xml/cfht_template_footer.xml"));
-			this.cfhtTemplateFormat = sb.toString(); 
+			this.cfhtXmlTemplate = CfhtXmlTemplate.load();
 		} catch (NeoSerializationException e) {
 			throw new NeoInitializationException(e);
 		}
@@ -0,0 +1,45 @@
+package neo.cfht.app;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import picocli.CommandLine.ITypeConverter;
+import picocli.CommandLine.TypeConversionException;
+
+/**
+ * Convert a command line duration ('90s', '2m', '90' seconds or 'PT90S')
+ */
+public class DurationConverter implements ITypeConverter<Duration> {
+
+	private static final Pattern DURATION = Pattern.compile("(\\d+)\\s*(ms|s|m|h)?");
+
+	@Override
+	public Duration convert(String value) {
+		String trimmed = value.trim();
+		if (trimmed.toUpperCase().startsWith("PT")) {
+			try {
+				return Duration.parse(trimmed);
+			} catch (DateTimeParseException e) {
+				throw new TypeConversionException("Invalid duration: " + value);
+			}
+		}
+		Matcher matcher = DURATION.matcher(trimmed);
+		if (!matcher.matches()) {
+			throw new TypeConversionException("Invalid duration (expected e.g. 90s, 2m, 500ms): " + value);
+		}
+		long amount = Long.parseLong(matcher.group(1));
+		String unit = matcher.group(2) == null ? "s" : matcher.group(2);
+		switch (unit) {
+		case "ms":
+			return Duration.ofMillis(amount);
+		case "m":
+			return Duration.ofMinutes(amount);
+		case "h":
+			return Duration.ofHours(amount);
+		default:
+			return Duration.ofSeconds(amount);
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package neo.cfht.app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import neo.exceptions.NeoProcessingException;
+import neo.resources.PsNeoResources;
+
+/**
+ * Local HTTP API of the -serve mode (POST/GET /ephemerides, GET /health), keeping the JVM,
+ * the configuration and the connections from one batch of designations to the next
+ */
+public class EphemeridesServer {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(EphemeridesServer.class);
+
+	public static final String PATH_EPHEMERIDES = "/ephemerides";
+	public static final String PATH_HEALTH = "/health";
+
+	private final CFHTEphemerides cfhtEphemerides;
+	private final int port;
+	private HttpServer httpServer;
+	private ExecutorService executorService;
+	private ExecutorService batchExecutorService;
+
+	private EphemeridesServer(CFHTEphemerides cfhtEphemerides, int port) {
+		this.cfhtEphemerides = cfhtEphemerides;
+		this.port = port;
+	}
+
+	/**
+	 * @param port Local port (0 for any free port)
+	 */
+	public static EphemeridesServer create(CFHTEphemerides cfhtEphemerides, int port) {
+		return new EphemeridesServer(cfhtEphemerides, port);
+	}
+
+	public String getBaseUrl() {
+		return "http://localhost:" + this.httpServer.getAddress().getPort();
+	}
+
+	public EphemeridesServer start() throws IOException {
+		// One batch at a time: the deadline of the HTTP service is the one of the current batch
+		this.batchExecutorService = Executors.newSingleThreadExecutor();
+		// Accepts the exchanges and answers /health while a batch runs
+		this.executorService = Executors.newCachedThreadPool();
+		this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port), 0);
+		this.httpServer.setExecutor(this.executorService);
+		this.httpServer.createContext(PATH_EPHEMERIDES,
+				exchange -> this.batchExecutorService.execute(() -> handleEphemerides(exchange)));
+		this.httpServer.createContext(PATH_HEALTH, this::handleHealth);
+		this.httpServer.start();
+		logger.info("Serving on {}{}", getBaseUrl(), PATH_EPHEMERIDES);
+		return this;
+	}
+
+	public void stop() {
+		this.httpServer.stop(0);
+		this.executorService.shutdownNow();
+		this.batchExecutorService.shutdownNow();
+	}
+
+	private void handleHealth(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			CFHTEphemeridesConfiguration cec = this.cfhtEphemerides.getCFHTEphemeridesConfiguration();
+			if (cec.isOutdated()) {
+				send(exchange, 503, "text/plain", "OUTDATED " + CFHTEphemeridesConfiguration.VERSION
+						+ " (latest: " + cec.getLatestVersion() + ")\n");
+				return;
+			}
+			send(exchange, 200, "text/plain", "OK " + CFHTEphemeridesConfiguration.VERSION + "\n");
+		}
+	}
+
+	private void handleEphemerides(HttpExchange exchange) {
+		try (exchange) {
+			String method = exchange.getRequestMethod();
+			if (!"GET".equals(method) && !"POST".equals(method)) {
+				send(exchange, 405, "text/plain", "GET or POST only\n");
+				return;
+			}
+			URI requestURI = exchange.getRequestURI();
+			List<String> designations = getParameters(requestURI, "designation");
+			if ("POST".equals(method)) {
+				String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+				for (String line : body.split("\r?\n")) {
+					if (!line.trim().isEmpty()) {
+						designations.add(line.trim());
+					}
+				}
+			}
+			if (designations.isEmpty()) {
+				send(exchange, 400, "text/plain", "At least one designation is needed\n");
+				return;
+			}
+			List<String> outputs = getParameters(requestURI, "output");
+			String output = outputs.isEmpty() ? "paths" : outputs.get(0);
+			if (!List.of("paths", "xml", "json", "all").contains(output)) {
+				send(exchange, 400, "text/plain", "output must be paths, xml, json or all\n");
+				return;
+			}
+			logger.info("Batch of {} designation(s) from {}", designations.size(), exchange.getRemoteAddress());
+			CFHTEphemeridesConfiguration cec = this.cfhtEphemerides.getCFHTEphemeridesConfiguration();
+			cec.updateTonight();
+			cec.updateVersionCheck();
+			RunReport runReport;
+			try {
+				runReport = this.cfhtEphemerides.process(designations);
+			} catch (NeoProcessingException e) {
+				logger.error("Batch failed: {}", e.getMessage(), e);
+				send(exchange, 500, "text/plain", "Batch failed: " + e.getMessage() + "\n");
+				return;
+			}
+			if (cec.isOutdated()) {
+				logger.error("Not the latest version ({}): nothing written", cec.getLatestVersion());
+				JsonObject outdated = new JsonObject();
+				outdated.addProperty("error", "This is not the latest version of CFHTEphemerides: nothing was written."
+						+ " Restart the server with the latest version (or with -bypassVersionCheck)");
+				outdated.addProperty("version", CFHTEphemeridesConfiguration.VERSION);
+				outdated.addProperty("latestVersion", cec.getLatestVersion());
+				send(exchange, 503, "application/json", PsNeoResources.toJson(outdated, true));
+				return;
+			}
+			send(exchange, 200, "application/json", PsNeoResources.toJson(toJson(runReport, cec.getDate(), output), true));
+		} catch (RuntimeException e) {
+			logger.error("Exception caught while serving {}: {}", exchange.getRequestURI(), e.getMessage(), e);
+			try {
+				send(exchange, 500, "text/plain", "Internal error: " + e.getMessage() + "\n");
+			} catch (IOException ioe) {
+				logger.warn("Cannot answer {}: {}", exchange.getRequestURI(), ioe.getMessage());
+			}
+		} catch (IOException e) {
+			logger.warn("Cannot answer {}: {}", exchange.getRequestURI(), e.getMessage());
+		}
+	}
+
+	/**
+	 * @param output paths, xml, json or all: the content of the written files to inline
+	 */
+	static JsonObject toJson(RunReport runReport, String date, String output) throws IOException {
+		JsonObject jsonObject = new JsonObject();
+		jsonObject.addProperty("date", date);
+		jsonObject.addProperty("partial", runReport.isPartial());
+		jsonObject.addProperty("elapsedMillis", runReport.getElapsed() == null ? 0 : runReport.getElapsed().toMillis());
+		jsonObject.addProperty("filesTouched", runReport.getTouchedCount());
+		jsonObject.addProperty("filesUnchanged", runReport.getUnchangedCount());
+		JsonArray results = new JsonArray();
+		for (RunReport.Entry entry : runReport.getEntries()) {
+			JsonObject result = new JsonObject();
+			result.addProperty("designation", entry.getDesignation());
+			result.addProperty("source", entry.getSource());
+			result.addProperty("outcome", entry.getOutcome().toString());
+			JsonArray files = new JsonArray();
+			for (String file : entry.getFiles()) {
+				files.add(file);
+				boolean xml = file.endsWith(".xml") && ("xml".equals(output) || "all".equals(output));
+				boolean json = file.endsWith(".json") && ("json".equals(output) || "all".equals(output));
+				// Only the -C000 files (the ephemerides, or the -east/-north pointing)
+				if ( (xml || json) && Paths.get(file).getFileName().toString().contains("-C000.") ) {
+					// Written with the default charset
+					result.addProperty(xml ? "xml" : "json", Files.readString(Paths.get(file), Charset.defaultCharset()));
+				}
+			}
+			result.add("files", files);
+			results.add(result);
+		}
+		jsonObject.add("results", results);
+		return jsonObject;
+	}
+
+	private static List<String> getParameters(URI uri, String name) {
+		List<String> values = new ArrayList<>();
+		String query = uri.getRawQuery();
+		if (query == null) {
+			return values;
+		}
+		for (String parameter : query.split("&")) {
+			int equal = parameter.indexOf('=');
+			if ( (equal > 0) && name.equals(parameter.substring(0, equal)) ) {
+				values.add(URLDecoder.decode(parameter.substring(equal+1), StandardCharsets.UTF_8));
+			}
+		}
+		return values;
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+}
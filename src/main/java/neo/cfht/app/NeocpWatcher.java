@@ -0,0 +1,151 @@
+package neo.cfht.app;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import neo.cfht.http.ResponseCache;
+import neo.cfht.models.NeocpListing;
+import neo.cfht.requesters.NeocpListingRequester;
+import neo.exceptions.NeoProcessingException;
+
+/**
+ * Watch mode: poll the NEOCP listings and request the objects which are new or whose orbit changed
+ */
+public class NeocpWatcher {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(NeocpWatcher.class);
+
+	private final CFHTEphemerides cfhtEphemerides;
+	private final CFHTEphemeridesConfiguration cec;
+	private final NeocpListingRequester listingRequester;
+	/** Empty: all the NEOCP objects */
+	private final List<String> designations;
+	private NeocpListing previousListing;
+	private String previousDate;
+	/** Requested but not written: requested again by the next poll */
+	private final Set<String> pending;
+
+	public NeocpWatcher(CFHTEphemerides cfhtEphemerides) {
+		this.cfhtEphemerides = cfhtEphemerides;
+		this.cec = cfhtEphemerides.getCFHTEphemeridesConfiguration();
+		this.listingRequester = this.cec.getNeocpListingRequester();
+		this.designations = new ArrayList<>(this.cec.getDesignations());
+		this.pending = new LinkedHashSet<>();
+	}
+
+	/**
+	 * Poll every -watchInterval until interrupted
+	 */
+	public void run() throws NeoProcessingException {
+		Duration interval = this.cec.getWatchInterval();
+		logger.info("Watching {} every {}s", this.designations.isEmpty() ? "the NEOCP" : this.designations,
+				interval.toSeconds());
+		while (!Thread.currentThread().isInterrupted()) {
+			Instant start = Instant.now();
+			poll();
+			long sleepMillis = interval.minus(Duration.between(start, Instant.now())).toMillis();
+			try {
+				if (sleepMillis > 0) {
+					Thread.sleep(sleepMillis);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Request the listings, then the ephemerides of the objects which changed
+	 *
+	 * @return The report of the batch (null if nothing was requested)
+	 */
+	RunReport poll() throws NeoProcessingException {
+		this.cec.updateTonight();
+		this.cec.updateVersionCheck();
+		this.cec.getHttpService().setDeadline(Instant.now().plus(this.cec.getDeadline()));
+		NeocpListing listing;
+		try {
+			listing = this.listingRequester.fetch().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			logger.error("Cannot request the NEOCP listings: {}", e.getMessage());
+			return null;
+		}
+		List<String> batch = nextBatch(listing, this.cec.getDate());
+		if (batch.isEmpty()) {
+			logger.info("No change on the NEOCP");
+			return null;
+		}
+		logger.info("Requesting {} new, changed or not yet written objects: {}", batch.size(), batch);
+		// Requested again if the batch fails as a whole
+		this.pending.addAll(batch);
+		RunReport runReport = this.cfhtEphemerides.process(batch);
+		if (this.cec.isOutdated()) {
+			this.cec.exitOutdated();
+		}
+		retryLater(batch, runReport);
+		return runReport;
+	}
+
+	/**
+	 * Keep the objects of the batch which were neither written nor found not observable
+	 */
+	void retryLater(List<String> batch, RunReport runReport) {
+		Set<String> done = new HashSet<>();
+		for (RunReport.Entry entry : runReport.getEntries()) {
+			if ( (entry.getOutcome() == RunReport.Outcome.WRITTEN)
+					|| (entry.getOutcome() == RunReport.Outcome.NOT_OBSERVABLE) ) {
+				done.add(entry.getDesignation());
+			}
+		}
+		for (String designation : batch) {
+			if (done.contains(designation)) {
+				this.pending.remove(designation);
+			} else {
+				logger.info("[{}] not written: requested again by the next poll", designation);
+				this.pending.add(designation);
+			}
+		}
+	}
+
+	/**
+	 * @return The watched objects to be requested: all of them on a new night, else those new to
+	 * the listing or whose orbit changed (their cached responses are dropped) and those not written
+	 * by the previous poll
+	 */
+	List<String> nextBatch(NeocpListing listing, String date) {
+		Set<String> batch = new LinkedHashSet<>();
+		if (!date.equals(this.previousDate)) {
+			batch.addAll(this.designations.isEmpty() ? listing.getEntries().keySet() : this.designations);
+		} else {
+			ResponseCache responseCache = this.cec.getResponseCache();
+			for (String designation : listing.getChanges(this.previousListing)) {
+				if (this.designations.isEmpty() || this.designations.contains(designation)) {
+					responseCache.invalidate(designation);
+					batch.add(designation);
+				}
+			}
+		}
+		for (String designation : listing.getRemovals(this.previousListing)) {
+			this.pending.remove(designation);
+			if (this.designations.isEmpty() || this.designations.contains(designation)) {
+				logger.info("[{}] left the NEOCP: its files are no longer updated", designation);
+			}
+		}
+		batch.addAll(this.pending);
+		this.previousListing = listing;
+		this.previousDate = date;
+		return new ArrayList<>(batch);
+	}
+}
@@ -0,0 +1,24 @@
+package neo.cfht.app;
+
+import neo.cfht.models.PointingOffset;
+import picocli.CommandLine.ITypeConverter;
+import picocli.CommandLine.TypeConversionException;
+
+/**
+ * Convert a command line offset: '&lt;east&gt;,&lt;north&gt;' in degrees (e.g. '0.01,-0.005')
+ */
+public class PointingOffsetConverter implements ITypeConverter<PointingOffset> {
+
+	@Override
+	public PointingOffset convert(String value) {
+		String[] fields = value.split(",");
+		if (fields.length != 2) {
+			throw new TypeConversionException("Invalid offset (expected <east>,<north> in degrees): " + value);
+		}
+		try {
+			return new PointingOffset(Double.parseDouble(fields[0].trim()), Double.parseDouble(fields[1].trim()));
+		} catch (NumberFormatException e) {
+			throw new TypeConversionException("Invalid offset (expected <east>,<north> in degrees): " + value);
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package neo.cfht.app;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import neo.cfht.http.EndpointCounters;
+import neo.cfht.output.AtomicFile;
+
+/**
+ * What a run produced for each requested object (files written, or why nothing was written), the
+ * number of files actually touched and the counters of the hosts
+ */
+public class RunReport {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(RunReport.class);
+
+	public enum Outcome {
+		WRITTEN,
+		FAILED,
+		TIMED_OUT,
+		/** Below -maxAirmass all night: not requested (not a failure) */
+		NOT_OBSERVABLE
+	}
+
+	public static class Entry {
+		private final String designation;
+		private final String source;
+		private final Outcome outcome;
+		private final List<String> files;
+
+		public Entry(String designation, String source, Outcome outcome, List<String> files) {
+			this.designation = designation;
+			this.source = source;
+			this.outcome = outcome;
+			this.files = List.copyOf(files);
+		}
+		public String getDesignation() {
+			return this.designation;
+		}
+		public String getSource() {
+			return this.source;
+		}
+		public Outcome getOutcome() {
+			return this.outcome;
+		}
+		public List<String> getFiles() {
+			return this.files;
+		}
+	}
+
+	private final Duration deadline;
+	private final List<Entry> entries;
+	private final Map<String, EndpointCounters> endpointCounters;
+	private Duration elapsed;
+	private int touchedCount;
+	private int unchangedCount;
+
+	public RunReport(Duration deadline) {
+		this.deadline = deadline;
+		this.entries = new ArrayList<>();
+		this.endpointCounters = new TreeMap<>();
+	}
+
+	public List<Entry> getEntries() {
+		return this.entries;
+	}
+	public Duration getElapsed() {
+		return this.elapsed;
+	}
+	public void setElapsed(Duration elapsed) {
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * @return The number of output files actually written (created or changed)
+	 */
+	public int getTouchedCount() {
+		return this.touchedCount;
+	}
+	/**
+	 * @return The number of output files left untouched because their content didn't change
+	 */
+	public int getUnchangedCount() {
+		return this.unchangedCount;
+	}
+	public void setFileCounts(int touchedCount, int unchangedCount) {
+		this.touchedCount = touchedCount;
+		this.unchangedCount = unchangedCount;
+	}
+
+	public void setEndpointCounters(Map<String, EndpointCounters> endpointCounters) {
+		this.endpointCounters.clear();
+		this.endpointCounters.putAll(endpointCounters);
+	}
+
+	public void add(String designation, String source, Outcome outcome, List<String> files) {
+		this.entries.add(new Entry(designation, source, outcome, files));
+	}
+
+	public Map<Outcome, Integer> getCounts() {
+		Map<Outcome, Integer> counts = new EnumMap<>(Outcome.class);
+		for (Outcome outcome : Outcome.values()) {
+			counts.put(outcome, 0);
+		}
+		for (Entry entry : this.entries) {
+			counts.merge(entry.getOutcome(), 1, Integer::sum);
+		}
+		return counts;
+	}
+
+	public boolean isPartial() {
+		return this.entries.stream().anyMatch(entry ->
+				(entry.getOutcome() != Outcome.WRITTEN) && (entry.getOutcome() != Outcome.NOT_OBSERVABLE));
+	}
+
+	/**
+	 * @return The summary line followed by one line per requester and one line per host
+	 */
+	public String format() {
+		Map<Outcome, Integer> counts = getCounts();
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%s: %d written, %d failed, %d timed out, %d not observable (deadline: %ds",
+				isPartial() ? "Partial results" : "Complete results",
+				counts.get(Outcome.WRITTEN), counts.get(Outcome.FAILED), counts.get(Outcome.TIMED_OUT),
+				counts.get(Outcome.NOT_OBSERVABLE), this.deadline.toSeconds()));
+		if (this.elapsed != null) {
+			sb.append(String.format(", elapsed: %.1fs", this.elapsed.toMillis()/1000.));
+		}
+		sb.append(")\n");
+		for (Entry entry : this.entries) {
+			sb.append(String.format("%-9s %-12s %-6s", entry.getOutcome(), entry.getDesignation(), entry.getSource()));
+			for (String file : entry.getFiles()) {
+				sb.append(' ').append(file);
+			}
+			sb.append('\n');
+		}
+		sb.append(String.format("%-9s %d touched, %d unchanged\n", "FILES", this.touchedCount, this.unchangedCount));
+		this.endpointCounters.forEach((host, counters) ->
+			sb.append(String.format("%-9s %s %s\n", "HOST", host, counters)));
+		return sb.toString();
+	}
+
+	public void log() {
+		String[] lines = format().split("\n");
+		if (isPartial()) {
+			logger.warn(lines[0]);
+		} else {
+			logger.info(lines[0]);
+		}
+		for (int i=1; i<lines.length; i++) {
+			logger.info("  {}", lines[i]);
+		}
+	}
+
+	public void write(Path path) throws IOException {
+		try (AtomicFile atomicFile = AtomicFile.open(path)) {
+			Writer writer = Channels.newWriter(atomicFile.getChannel(), StandardCharsets.UTF_8);
+			writer.write(format());
+			writer.flush();
+			atomicFile.commit();
+		}
+	}
+}
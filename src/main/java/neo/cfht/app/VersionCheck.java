@@ -0,0 +1,103 @@
+package neo.cfht.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import neo.cfht.http.HttpService;
+import neo.cfht.http.RetryPolicy;
+import neo.cfht.output.AtomicFile;
+
+/**
+ * Latest version of the software, cached in a local file for a while
+ */
+public class VersionCheck {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(VersionCheck.class);
+
+	public static final String VERSION_URL = "https://neo.ifa.hawaii.edu/users/cfht/VERSION";
+	public static final String CACHE_FILE_NAME = "VERSION";
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(3);
+	/** The writes wait for the check: no retry, a failure doesn't prevent the run */
+	private static final RetryPolicy NO_RETRY = new RetryPolicy(0, Duration.ZERO, Duration.ZERO);
+
+	private VersionCheck() {
+	}
+
+	/**
+	 * @param cacheFile The file holding the latest version found
+	 * @param timeToLive Age after which the cached version is requested again
+	 * @return The latest version (completed at once if the cached one is fresh), or null if it is
+	 * unknown (request failed and nothing cached)
+	 */
+	public static CompletableFuture<String> latestVersion(HttpService httpService, Path cacheFile,
+			Duration timeToLive) {
+		return latestVersion(httpService, URI.create(VERSION_URL), cacheFile, timeToLive);
+	}
+
+	static CompletableFuture<String> latestVersion(HttpService httpService, URI versionUri, Path cacheFile,
+			Duration timeToLive) {
+		String cachedVersion = readCache(cacheFile, timeToLive);
+		if (cachedVersion != null) {
+			logger.debug("Latest version (cached): [{}]", cachedVersion);
+			return CompletableFuture.completedFuture(cachedVersion);
+		}
+		HttpRequest request = HttpRequest.newBuilder(versionUri)
+				.timeout(REQUEST_TIMEOUT)
+				.build();
+		return httpService.sendAsync(request, BodyHandlers.ofString(), NO_RETRY).handle((response, throwable) -> {
+			if ( (throwable == null) && (response.statusCode() < 400) ) {
+				String latestVersion = response.body().trim();
+				writeCache(cacheFile, latestVersion);
+				logger.debug("Latest version: [{}]", latestVersion);
+				return latestVersion;
+			}
+			String reason = throwable != null ? throwable.toString() : "HTTP " + response.statusCode();
+			String staleVersion = readCache(cacheFile, null);
+			logger.warn("Cannot check the latest version of this software ({}){}", reason,
+					staleVersion == null ? "" : ": using the last one found (" + staleVersion + ")");
+			return staleVersion;
+		});
+	}
+
+	/**
+	 * @param timeToLive If null, the cached version is returned whatever its age
+	 * @return The cached version (null if missing or too old)
+	 */
+	static String readCache(Path cacheFile, Duration timeToLive) {
+		try {
+			if (!Files.isRegularFile(cacheFile)) {
+				return null;
+			}
+			long ageMillis = System.currentTimeMillis() - Files.getLastModifiedTime(cacheFile).toMillis();
+			if ( (timeToLive != null) && (ageMillis > timeToLive.toMillis()) ) {
+				return null;
+			}
+			String version = Files.readString(cacheFile, StandardCharsets.UTF_8).trim();
+			return version.isEmpty() ? null : version;
+		} catch (IOException e) {
+			logger.debug("Cannot read {}: {}", cacheFile, e.getMessage());
+			return null;
+		}
+	}
+
+	static void writeCache(Path cacheFile, String version) {
+		try {
+			Path temporaryPath = AtomicFile.createTemporaryFile(cacheFile);
+			Files.writeString(temporaryPath, version, StandardCharsets.UTF_8);
+			Files.move(temporaryPath, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.warn("Cannot write {}: {}", cacheFile, e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package neo.cfht.http;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Concurrency limit (bulkhead) of a host, adapted with an AIMD policy
+ */
+public class AdaptiveLimiter {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(AdaptiveLimiter.class);
+
+	private final String host;
+	private final int maxLimit;
+	private final long slowResponseMillis;
+
+	private int limit;
+	private int inFlight;
+	private int healthyInWindow;
+	private final Deque<CompletableFuture<Void>> waiters;
+
+	public AdaptiveLimiter(String host, int maxLimit, long slowResponseMillis) {
+		this.host = host;
+		this.maxLimit = Math.max(1, maxLimit);
+		this.slowResponseMillis = slowResponseMillis;
+		// Start half-way and let the host tell us if we can go further
+		this.limit = Math.max(1, (this.maxLimit+1)/2);
+		this.waiters = new ArrayDeque<>();
+	}
+
+	public synchronized int getLimit() {
+		return this.limit;
+	}
+
+	public synchronized int getInFlight() {
+		return this.inFlight;
+	}
+
+	public synchronized int getWaiting() {
+		return this.waiters.size();
+	}
+
+	/**
+	 * Block until a slot is available for this host
+	 */
+	public void acquire() throws InterruptedException {
+		CompletableFuture<Void> slot = acquireAsync();
+		try {
+			slot.get();
+		} catch (InterruptedException e) {
+			// Give the slot back if it was granted meanwhile
+			if (!slot.cancel(false)) {
+				releaseUnused();
+			}
+			throw e;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * @return A future completed when a slot is available for this host (cancel it to stop waiting)
+	 */
+	public CompletableFuture<Void> acquireAsync() {
+		synchronized (this) {
+			if ( (this.inFlight < this.limit) && this.waiters.isEmpty() ) {
+				this.inFlight++;
+				return CompletableFuture.completedFuture(null);
+			}
+			CompletableFuture<Void> slot = new CompletableFuture<>();
+			this.waiters.add(slot);
+			return slot;
+		}
+	}
+
+	/**
+	 * Release the slot taken by a request which got an answer
+	 *
+	 * @param statusCode The HTTP status of the response
+	 * @param elapsedMillis Time taken by the exchange
+	 */
+	public void release(int statusCode, long elapsedMillis) {
+		synchronized (this) {
+			if ( (statusCode == 429) || (statusCode == 503) ) {
+				decrease("HTTP " + statusCode);
+			} else if (elapsedMillis > this.slowResponseMillis) {
+				decrease("slow response (" + elapsedMillis + " ms)");
+			} else {
+				increase();
+			}
+			this.inFlight--;
+		}
+		grant();
+	}
+
+	/**
+	 * Release the slot taken by a request which didn't get any answer
+	 */
+	public void releaseOnFailure() {
+		synchronized (this) {
+			decrease("no response");
+			this.inFlight--;
+		}
+		grant();
+	}
+
+	/**
+	 * Release a slot which was given but not used (the limit is not adapted)
+	 */
+	public void releaseUnused() {
+		synchronized (this) {
+			this.inFlight--;
+		}
+		grant();
+	}
+
+	/**
+	 * Give the free slots to the waiting requests. The futures are completed outside of the lock
+	 * since their dependent stages (e.g. sending the request) run in the completing thread.
+	 */
+	private void grant() {
+		List<CompletableFuture<Void>> granted = new ArrayList<>();
+		synchronized (this) {
+			while ( (this.inFlight < this.limit) && !this.waiters.isEmpty() ) {
+				CompletableFuture<Void> slot = this.waiters.poll();
+				if (!slot.isDone()) {
+					this.inFlight++;
+					granted.add(slot);
+				}
+			}
+		}
+		for (CompletableFuture<Void> slot : granted) {
+			if (!slot.complete(null)) {
+				// Cancelled meanwhile
+				releaseUnused();
+			}
+		}
+	}
+
+	private void increase() {
+		this.healthyInWindow++;
+		if ( (this.healthyInWindow >= this.limit) && (this.limit < this.maxLimit) ) {
+			this.limit++;
+			this.healthyInWindow = 0;
+			logger.debug("{}: concurrency limit increased to {}", this.host, this.limit);
+		}
+	}
+
+	private void decrease(String reason) {
+		int previousLimit = this.limit;
+		this.limit = Math.max(1, this.limit/2);
+		this.healthyInWindow = 0;
+		if (previousLimit != this.limit) {
+			logger.info("{}: concurrency limit decreased from {} to {} ({})", this.host, previousLimit, this.limit,
+					reason);
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package neo.cfht.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Destination of the raw bytes of a response (trouble file, cache entry), visible once committed
+ */
+public interface BodySink {
+	/**
+	 * @param statusCode The HTTP status of the response
+	 * @return true if the body of a response with that status must go to this sink
+	 */
+	default boolean accepts(int statusCode) {
+		return statusCode < 400;
+	}
+
+	/**
+	 * @param buffer Bytes of the body (the position of the buffer is not modified)
+	 */
+	void write(ByteBuffer buffer) throws IOException;
+
+	/**
+	 * The whole body was written
+	 */
+	void commit() throws IOException;
+
+	/**
+	 * The body is incomplete and must be discarded
+	 */
+	void abort();
+}
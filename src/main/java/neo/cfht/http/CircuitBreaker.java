@@ -0,0 +1,118 @@
+package neo.cfht.http;
+
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker of a host: opens after consecutive failures, then lets one request probe the host
+ */
+public class CircuitBreaker {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	private final String host;
+	private final int failureThreshold;
+	private final long openNanos;
+	private final LongSupplier nanoClock;
+	private State state;
+	private int consecutiveFailures;
+	private long openedAt;
+	private boolean probing;
+	private long openedCount;
+	private long rejectedCount;
+
+	/**
+	 * @param failureThreshold Number of consecutive failures opening the circuit
+	 * @param openMillis Time during which the requests are rejected once the circuit is open
+	 */
+	public CircuitBreaker(String host, int failureThreshold, long openMillis) {
+		this(host, failureThreshold, openMillis, System::nanoTime);
+	}
+
+	CircuitBreaker(String host, int failureThreshold, long openMillis, LongSupplier nanoClock) {
+		this.host = host;
+		this.failureThreshold = failureThreshold;
+		this.openNanos = openMillis * 1_000_000L;
+		this.nanoClock = nanoClock;
+		this.state = State.CLOSED;
+	}
+
+	public synchronized State getState() {
+		return this.state;
+	}
+	/**
+	 * @return The number of times the circuit opened
+	 */
+	public synchronized long getOpenedCount() {
+		return this.openedCount;
+	}
+	/**
+	 * @return The number of requests rejected while the circuit was open
+	 */
+	public synchronized long getRejectedCount() {
+		return this.rejectedCount;
+	}
+
+	/**
+	 * @return True if a request may be sent. When the circuit is half open, only one (probing)
+	 * request is allowed until its outcome is known
+	 */
+	public synchronized boolean tryAcquire() {
+		if ( (this.state == State.OPEN) && (this.nanoClock.getAsLong() - this.openedAt >= this.openNanos) ) {
+			this.state = State.HALF_OPEN;
+			this.probing = false;
+			logger.info("{}: circuit half open, probing the host", this.host);
+		}
+		switch (this.state) {
+		case CLOSED:
+			return true;
+		case HALF_OPEN:
+			if (!this.probing) {
+				this.probing = true;
+				return true;
+			}
+			break;
+		default:
+			break;
+		}
+		this.rejectedCount++;
+		return false;
+	}
+
+	public synchronized void onSuccess() {
+		this.consecutiveFailures = 0;
+		if (this.state != State.CLOSED) {
+			logger.info("{}: circuit closed", this.host);
+		}
+		this.state = State.CLOSED;
+		this.probing = false;
+	}
+
+	public synchronized void onFailure() {
+		this.consecutiveFailures++;
+		if ( (this.state == State.HALF_OPEN)
+				|| ( (this.state == State.CLOSED) && (this.consecutiveFailures >= this.failureThreshold) ) ) {
+			this.state = State.OPEN;
+			this.openedAt = this.nanoClock.getAsLong();
+			this.probing = false;
+			this.openedCount++;
+			logger.warn("{}: circuit open after {} consecutive failures, requests rejected for {} ms",
+					this.host, this.consecutiveFailures, this.openNanos / 1_000_000L);
+		}
+	}
+
+	/**
+	 * The request was cancelled: its outcome says nothing about the host
+	 */
+	public synchronized void onCancelled() {
+		this.probing = false;
+	}
+}
@@ -0,0 +1,14 @@
+package neo.cfht.http;
+
+import java.io.IOException;
+
+/**
+ * Request rejected without being sent because the circuit of its host is open
+ */
+public class CircuitOpenException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(String host) {
+		super("Circuit open for " + host + ": request not sent");
+	}
+}
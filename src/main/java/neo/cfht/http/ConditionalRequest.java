@@ -0,0 +1,100 @@
+package neo.cfht.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A resource requested again and again (e.g. the NEOCP listing), answered only when it changed
+ */
+public class ConditionalRequest {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(ConditionalRequest.class);
+
+	private final URI uri;
+	private String etag;
+	private String lastModified;
+	private byte[] bodyHash;
+	private int notModifiedCount;
+	private int unchangedBodyCount;
+
+	public ConditionalRequest(URI uri) {
+		this.uri = uri;
+	}
+
+	public URI getUri() {
+		return this.uri;
+	}
+	/**
+	 * @return The number of 304 responses
+	 */
+	public int getNotModifiedCount() {
+		return this.notModifiedCount;
+	}
+	/**
+	 * @return The number of complete responses identical to the previous one
+	 */
+	public int getUnchangedBodyCount() {
+		return this.unchangedBodyCount;
+	}
+
+	/**
+	 * @return A future completed with the body if it changed since the previous call, with null
+	 * otherwise (or failed with an IOException on an HTTP error)
+	 */
+	public CompletableFuture<String> fetchIfChanged(HttpService httpService) {
+		HttpRequest.Builder builder = httpService.newRequestBuilder(this.uri);
+		synchronized (this) {
+			if (this.etag != null) {
+				builder.header("If-None-Match", this.etag);
+			}
+			if (this.lastModified != null) {
+				builder.header("If-Modified-Since", this.lastModified);
+			}
+		}
+		return httpService.sendAsync(builder.build(), BodyHandlers.ofString(StandardCharsets.UTF_8))
+				.thenApply(this::changedBody);
+	}
+
+	private synchronized String changedBody(HttpResponse<String> response) {
+		if (response.statusCode() == 304) {
+			this.notModifiedCount++;
+			logger.debug("{} not modified", this.uri);
+			return null;
+		}
+		try {
+			HttpService.checkStatus(response);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.etag = response.headers().firstValue("ETag").orElse(null);
+		this.lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+		byte[] hash = hash(response.body());
+		if (Arrays.equals(hash, this.bodyHash)) {
+			this.unchangedBodyCount++;
+			logger.debug("{} unchanged (same content)", this.uri);
+			return null;
+		}
+		this.bodyHash = hash;
+		return response.body();
+	}
+
+	private static byte[] hash(String body) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
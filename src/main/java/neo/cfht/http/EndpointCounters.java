@@ -0,0 +1,63 @@
+package neo.cfht.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the exchanges with a host
+ */
+public class EndpointCounters {
+
+	/** Exchanges sent (first attempts and retries) */
+	private final AtomicLong attempts = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	/** Attempts which failed (connection error, timeout, HTTP 429/5xx) */
+	private final AtomicLong failures = new AtomicLong();
+	/** Requests failing after their last attempt */
+	private final AtomicLong exhausted = new AtomicLong();
+	private final CircuitBreaker circuitBreaker;
+
+	public EndpointCounters(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	public long getAttempts() {
+		return this.attempts.get();
+	}
+	public long getRetries() {
+		return this.retries.get();
+	}
+	public long getFailures() {
+		return this.failures.get();
+	}
+	public long getExhausted() {
+		return this.exhausted.get();
+	}
+	public CircuitBreaker getCircuitBreaker() {
+		return this.circuitBreaker;
+	}
+	public long getCircuitOpened() {
+		return this.circuitBreaker.getOpenedCount();
+	}
+	public long getCircuitRejected() {
+		return this.circuitBreaker.getRejectedCount();
+	}
+
+	void incrementAttempts() {
+		this.attempts.incrementAndGet();
+	}
+	void incrementRetries() {
+		this.retries.incrementAndGet();
+	}
+	void incrementFailures() {
+		this.failures.incrementAndGet();
+	}
+	void incrementExhausted() {
+		this.exhausted.incrementAndGet();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("attempts=%d retries=%d failures=%d exhausted=%d circuitOpened=%d circuitRejected=%d",
+				getAttempts(), getRetries(), getFailures(), getExhausted(), getCircuitOpened(), getCircuitRejected());
+	}
+}
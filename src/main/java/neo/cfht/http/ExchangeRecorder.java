@@ -0,0 +1,172 @@
+package neo.cfht.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonObject;
+
+import neo.resources.PsNeoResources;
+
+/**
+ * Record the HTTP exchanges with the services so that the {@link ReplayServer} can replay them
+ */
+public class ExchangeRecorder {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(ExchangeRecorder.class);
+
+	public static final String SUFFIX_DESCRIPTION = ".json";
+	public static final String SUFFIX_BODY = ".body";
+
+	private final Path directory;
+
+	public ExchangeRecorder(Path directory) throws IOException {
+		this.directory = directory;
+		Files.createDirectories(this.directory);
+	}
+
+	/**
+	 * @return The recording key of a request
+	 */
+	public static String key(String method, String pathAndQuery, String requestBody) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			messageDigest.update(method.getBytes(StandardCharsets.UTF_8));
+			messageDigest.update((byte) '\n');
+			messageDigest.update(pathAndQuery.getBytes(StandardCharsets.UTF_8));
+			messageDigest.update((byte) '\n');
+			messageDigest.update(requestBody.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : messageDigest.digest()) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static String pathAndQuery(URI uri) {
+		return uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+	}
+
+	/**
+	 * @return The body of a request (empty if there is none)
+	 */
+	public static String readRequestBody(HttpRequest request) {
+		if (request.bodyPublisher().isEmpty()) {
+			return "";
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		CompletableFuture<String> body = new CompletableFuture<>();
+		request.bodyPublisher().get().subscribe(new Flow.Subscriber<ByteBuffer>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+			@Override
+			public void onNext(ByteBuffer item) {
+				byte[] bytes = new byte[item.remaining()];
+				item.get(bytes);
+				baos.writeBytes(bytes);
+			}
+			@Override
+			public void onError(Throwable throwable) {
+				body.completeExceptionally(throwable);
+			}
+			@Override
+			public void onComplete() {
+				body.complete(baos.toString(StandardCharsets.UTF_8));
+			}
+		});
+		return body.join();
+	}
+
+	/**
+	 * @return A body handler recording the response before handing it to the given handler
+	 */
+	public <T> BodyHandler<T> wrap(HttpRequest request, BodyHandler<T> bodyHandler) {
+		String requestBody = readRequestBody(request);
+		String pathAndQuery = pathAndQuery(request.uri());
+		String key = key(request.method(), pathAndQuery, requestBody);
+		return responseInfo -> {
+			JsonObject description = new JsonObject();
+			description.addProperty("method", request.method());
+			description.addProperty("host", request.uri().getHost());
+			description.addProperty("pathAndQuery", pathAndQuery);
+			description.addProperty("requestBody", requestBody);
+			description.addProperty("status", responseInfo.statusCode());
+			description.addProperty("contentType", responseInfo.headers().firstValue("Content-Type").orElse(""));
+			return new RecordingBodySubscriber<>(bodyHandler.apply(responseInfo), key, description);
+		};
+	}
+
+	private class RecordingBodySubscriber<T> implements BodySubscriber<T> {
+		private final BodySubscriber<T> downstream;
+		private final String key;
+		private final JsonObject description;
+		private final ByteArrayOutputStream body;
+
+		RecordingBodySubscriber(BodySubscriber<T> downstream, String key, JsonObject description) {
+			this.downstream = downstream;
+			this.key = key;
+			this.description = description;
+			this.body = new ByteArrayOutputStream();
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.downstream.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> items) {
+			for (ByteBuffer item : items) {
+				ByteBuffer copy = item.duplicate();
+				byte[] bytes = new byte[copy.remaining()];
+				copy.get(bytes);
+				this.body.writeBytes(bytes);
+			}
+			this.downstream.onNext(items);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			this.downstream.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			try {
+				Files.write(ExchangeRecorder.this.directory.resolve(this.key + SUFFIX_BODY), this.body.toByteArray());
+				Files.writeString(ExchangeRecorder.this.directory.resolve(this.key + SUFFIX_DESCRIPTION),
+						PsNeoResources.toJson(this.description, true));
+				logger.debug("Recorded exchange {}: {}", this.key, this.description.get("pathAndQuery").getAsString());
+			} catch (IOException e) {
+				logger.warn("Cannot record exchange {}: {}", this.key, e.getMessage());
+			}
+			this.downstream.onComplete();
+		}
+
+		@Override
+		public CompletionStage<T> getBody() {
+			return this.downstream.getBody();
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package neo.cfht.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import neo.cfht.output.AtomicFile;
+import neo.cfht.output.OutputManifest;
+
+/**
+ * Write a response body to a temporary file which replaces the target once the body is complete
+ */
+public class FileBodySink implements BodySink {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(FileBodySink.class);
+
+	private static final DateTimeFormatter BACKUP_SUFFIX_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+			.withZone(ZoneOffset.UTC);
+
+	private final Path target;
+	private final boolean keepBackup;
+	private final boolean acceptErrors;
+	private final OutputManifest outputManifest;
+	private final MessageDigest digest;
+	/** Created on the first write (null before, and after the commit or abort) */
+	private Path temporaryPath;
+	private FileChannel fileChannel;
+	private long size;
+
+	/**
+	 * @param target The file eventually holding the body
+	 * @param keepBackup If true, an existing target is renamed with its modification time as suffix
+	 * @param acceptErrors If true, the body of HTTP errors is written too
+	 */
+	public FileBodySink(Path target, boolean keepBackup, boolean acceptErrors) throws IOException {
+		this(target, keepBackup, acceptErrors, null);
+	}
+
+	/**
+	 * @param outputManifest The manifest of the directory of the target (null: the target is always replaced)
+	 */
+	public FileBodySink(Path target, boolean keepBackup, boolean acceptErrors, OutputManifest outputManifest)
+			throws IOException {
+		this.target = target;
+		this.keepBackup = keepBackup;
+		this.acceptErrors = acceptErrors;
+		this.outputManifest = outputManifest;
+		this.digest = outputManifest == null ? null : OutputManifest.newDigest();
+	}
+
+	/**
+	 * Create the temporary file unless it is already open: an exchange failing before its body is
+	 * received leaves nothing behind
+	 */
+	private void open() throws IOException {
+		if (this.fileChannel != null) {
+			return;
+		}
+		this.temporaryPath = AtomicFile.createTemporaryFile(this.target);
+		try {
+			this.fileChannel = FileChannel.open(this.temporaryPath, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		} catch (IOException e) {
+			Files.deleteIfExists(this.temporaryPath);
+			this.temporaryPath = null;
+			throw e;
+		}
+	}
+
+	/**
+	 * @return A sink for the files to be sent in case of trouble (the body is kept whatever the HTTP status,
+	 * the previous different body is backed up)
+	 */
+	public static FileBodySink forTrouble(Path target, OutputManifest outputManifest) throws IOException {
+		return new FileBodySink(target, true, true, outputManifest);
+	}
+
+	public Path getTarget() {
+		return this.target;
+	}
+
+	@Override
+	public boolean accepts(int statusCode) {
+		return this.acceptErrors || BodySink.super.accepts(statusCode);
+	}
+
+	@Override
+	public void write(ByteBuffer buffer) throws IOException {
+		open();
+		if (this.digest != null) {
+			this.digest.update(buffer.duplicate());
+			this.size += buffer.remaining();
+		}
+		ByteBuffer duplicate = buffer.duplicate();
+		while (duplicate.hasRemaining()) {
+			this.fileChannel.write(duplicate);
+		}
+	}
+
+	@Override
+	public void commit() throws IOException {
+		// Empty body
+		open();
+		this.fileChannel.close();
+		this.fileChannel = null;
+		Path temporaryPath = this.temporaryPath;
+		this.temporaryPath = null;
+		long size = this.size;
+		this.size = 0;
+		String hash = this.digest == null ? null : OutputManifest.toHex(this.digest.digest());
+		if ( (hash != null) && this.outputManifest.isUnchanged(this.target, hash, size) ) {
+			logger.debug("{} unchanged", this.target);
+			Files.deleteIfExists(temporaryPath);
+			return;
+		}
+		if (this.keepBackup && Files.exists(this.target)) {
+			Path backupPath = this.target.resolveSibling(this.target.getFileName().toString() + "."
+					+ BACKUP_SUFFIX_FORMATTER.format(Files.getLastModifiedTime(this.target).toInstant()));
+			Files.move(this.target, backupPath, StandardCopyOption.REPLACE_EXISTING);
+		}
+		Files.move(temporaryPath, this.target, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		if (hash != null) {
+			this.outputManifest.record(this.target, hash, size);
+		}
+	}
+
+	/**
+	 * Drop what was written (nothing if the temporary file was not created yet): the sink can be
+	 * written again, e.g. by the next attempt of a retried request
+	 */
+	@Override
+	public void abort() {
+		if (this.fileChannel == null) {
+			return;
+		}
+		try {
+			this.fileChannel.close();
+			Files.deleteIfExists(this.temporaryPath);
+		} catch (IOException e) {
+			logger.warn("Cannot delete temporary file {}: {}", this.temporaryPath, e.getMessage());
+		}
+		this.fileChannel = null;
+		this.temporaryPath = null;
+		this.size = 0;
+		if (this.digest != null) {
+			this.digest.reset();
+		}
+	}
+}
@@ -0,0 +1,558 @@
+package neo.cfht.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import neo.cfht.http.LineSplitter.LineHandler;
+
+/**
+ * HTTP client shared by all the requesters: per-host limits, retries and circuit breakers, deadline
+ */
+public class HttpService {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(HttpService.class);
+
+	/** JDK property holding the idle time (in seconds) after which a pooled connection is closed */
+	private static final String PROPERTY_KEEPALIVE_TIMEOUT = "jdk.httpclient.keepalive.timeout";
+	private static final String DEADLINE_REACHED = "Deadline reached before sending ";
+
+	/** Maximum number of concurrent requests per host, unless overridden with -hostConcurrency */
+	public static final Map<String, Integer> DEFAULT_HOST_CONCURRENCY = Map.of(
+			"ssd-api.jpl.nasa.gov", 2, /* if larger, Scout fails :-( */
+			"cgi.minorplanetcenter.net", 8,
+			"www.minorplanetcenter.net", 8);
+	private static final int DEFAULT_CONCURRENCY = 4;
+	/** Maximum number of retries per host, unless overridden with -hostRetries */
+	public static final Map<String, Integer> DEFAULT_HOST_RETRIES = Map.of(
+			"ssd-api.jpl.nasa.gov", 3 /* Scout answers 503 when busy */);
+
+	private final HttpClient client;
+	private final Duration readTimeout;
+	private final Map<String, Integer> hostConcurrency;
+	private final long slowResponseMillis;
+	private final Map<String, AdaptiveLimiter> limiters;
+	private final Map<String, EndpointCounters> endpointCounters;
+	private final Map<String, Integer> hostRetries;
+	private int defaultRetries;
+	private Duration retryBaseDelay;
+	private Duration retryMaxDelay;
+	private int circuitFailureThreshold;
+	private Duration circuitOpenDuration;
+	/** Asynchronous exchanges not completed yet (waiting for a slot or in flight) */
+	private final Set<CompletableFuture<?>> pendingExchanges;
+	private ExchangeRecorder exchangeRecorder;
+	private volatile Instant deadline;
+
+	public HttpService(Duration connectTimeout, Duration readTimeout, Duration keepAlive,
+			Map<String, Integer> hostConcurrency, Duration slowResponse) {
+		// Read once by the JDK when the first client is built: must be set before that
+		if (System.getProperty(PROPERTY_KEEPALIVE_TIMEOUT) == null) {
+			System.setProperty(PROPERTY_KEEPALIVE_TIMEOUT, Long.toString(keepAlive.toSeconds()));
+		}
+		this.readTimeout = readTimeout;
+		this.hostConcurrency = new HashMap<>(DEFAULT_HOST_CONCURRENCY);
+		this.hostConcurrency.putAll(hostConcurrency);
+		this.slowResponseMillis = slowResponse.toMillis();
+		this.limiters = new ConcurrentHashMap<>();
+		this.endpointCounters = new ConcurrentHashMap<>();
+		this.hostRetries = new HashMap<>(DEFAULT_HOST_RETRIES);
+		this.defaultRetries = 2;
+		this.retryBaseDelay = Duration.ofMillis(500);
+		this.retryMaxDelay = Duration.ofSeconds(10);
+		this.circuitFailureThreshold = 5;
+		this.circuitOpenDuration = Duration.ofSeconds(30);
+		this.pendingExchanges = ConcurrentHashMap.newKeySet();
+		this.client = HttpClient.newBuilder()
+				.version(Version.HTTP_2)
+				.connectTimeout(connectTimeout)
+				.build();
+		logger.debug("HTTP client created (connect timeout: {}, read timeout: {}, keep-alive: {})",
+				connectTimeout, readTimeout, keepAlive);
+	}
+
+	public HttpClient getClient() {
+		return this.client;
+	}
+
+	/**
+	 * @param uri The requested URI
+	 * @return A request builder with the configured read timeout already set
+	 */
+	public HttpRequest.Builder newRequestBuilder(URI uri) {
+		return HttpRequest.newBuilder(uri).timeout(this.readTimeout);
+	}
+
+	public Instant getDeadline() {
+		return this.deadline;
+	}
+	/**
+	 * @param deadline The time after which no request is sent any more (null: no deadline)
+	 */
+	public void setDeadline(Instant deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * @return The request with its timeout cut to the time left before the deadline
+	 * @throws HttpTimeoutException If the deadline is reached
+	 */
+	HttpRequest withinDeadline(HttpRequest request) throws HttpTimeoutException {
+		Instant deadline = this.deadline;
+		if (deadline == null) {
+			return request;
+		}
+		Duration remaining = Duration.between(Instant.now(), deadline);
+		if (remaining.isNegative() || remaining.isZero()) {
+			throw new HttpTimeoutException(DEADLINE_REACHED + request.uri());
+		}
+		if (request.timeout().isPresent() && (request.timeout().get().compareTo(remaining) <= 0)) {
+			return request;
+		}
+		return HttpRequest.newBuilder(request, (name, value) -> true).timeout(remaining).build();
+	}
+
+	/**
+	 * Open a connection to each host (DNS lookup, TCP and TLS handshakes) with a HEAD request whose
+	 * response is ignored: the connection then waits in the pool of the client (or is the HTTP/2
+	 * connection of the host) for the first real request. The exchanges are neither limited nor
+	 * recorded and their failures are only logged.
+	 */
+	public void prewarm(Collection<URI> uris) {
+		Set<String> origins = new HashSet<>();
+		for (URI uri : uris) {
+			if (!origins.add(uri.getScheme() + "://" + uri.getRawAuthority())) {
+				continue;
+			}
+			HttpRequest request = newRequestBuilder(uri).method("HEAD", BodyPublishers.noBody()).build();
+			long start = System.currentTimeMillis();
+			this.client.sendAsync(request, BodyHandlers.discarding()).whenComplete((response, throwable) -> {
+				if (throwable != null) {
+					logger.debug("Cannot pre-warm the connection to {}: {}", uri.getHost(), throwable.toString());
+					return;
+				}
+				logger.debug("Connection to {} ready in {} ms ({})", uri.getHost(),
+						System.currentTimeMillis() - start, response.version());
+			});
+		}
+	}
+
+	/**
+	 * Cancel the asynchronous exchanges not completed yet: those waiting for a slot are never sent,
+	 * those in flight are aborted by the HTTP client (their sinks being aborted)
+	 *
+	 * @return The number of cancelled exchanges
+	 */
+	public int cancelAll() {
+		int cancelled = 0;
+		for (CompletableFuture<?> exchange : this.pendingExchanges) {
+			if (exchange.cancel(true)) {
+				cancelled++;
+			}
+		}
+		if (cancelled > 0) {
+			logger.warn("{} HTTP exchange(s) cancelled", cancelled);
+		}
+		return cancelled;
+	}
+
+	/**
+	 * @param exchangeRecorder If not null, all the exchanges are recorded
+	 */
+	public void setExchangeRecorder(ExchangeRecorder exchangeRecorder) {
+		this.exchangeRecorder = exchangeRecorder;
+	}
+
+	/**
+	 * Must be called before the first request
+	 *
+	 * @param defaultRetries Maximum number of retries of the hosts not in hostRetries
+	 * @param hostRetries Maximum number of retries per host (overriding {@link #DEFAULT_HOST_RETRIES})
+	 * @param baseDelay Backoff before the first retry
+	 * @param maxDelay Cap of the backoff
+	 */
+	public void setRetries(int defaultRetries, Map<String, Integer> hostRetries, Duration baseDelay,
+			Duration maxDelay) {
+		this.defaultRetries = defaultRetries;
+		this.hostRetries.putAll(hostRetries);
+		this.retryBaseDelay = baseDelay;
+		this.retryMaxDelay = maxDelay;
+	}
+
+	/**
+	 * Must be called before the first request
+	 *
+	 * @param failureThreshold Number of consecutive failures opening the circuit of a host
+	 * @param openDuration Time during which the requests to a host are rejected once its circuit is open
+	 */
+	public void setCircuitBreakers(int failureThreshold, Duration openDuration) {
+		this.circuitFailureThreshold = failureThreshold;
+		this.circuitOpenDuration = openDuration;
+	}
+
+	public RetryPolicy getRetryPolicy(String host) {
+		return new RetryPolicy(this.hostRetries.getOrDefault(host, this.defaultRetries), this.retryBaseDelay,
+				this.retryMaxDelay);
+	}
+
+	public EndpointCounters getEndpointCounters(String host) {
+		return this.endpointCounters.computeIfAbsent(host, key -> new EndpointCounters(
+				new CircuitBreaker(key, this.circuitFailureThreshold, this.circuitOpenDuration.toMillis())));
+	}
+
+	/**
+	 * @return The counters of the hosts requested so far
+	 */
+	public Map<String, EndpointCounters> getEndpointCounters() {
+		return new TreeMap<>(this.endpointCounters);
+	}
+
+	public AdaptiveLimiter getLimiter(String host) {
+		return this.limiters.computeIfAbsent(host, key -> new AdaptiveLimiter(key,
+				this.hostConcurrency.getOrDefault(key, DEFAULT_CONCURRENCY), this.slowResponseMillis));
+	}
+
+	/**
+	 * Blocking version of {@link #sendAsync(HttpRequest, BodyHandler)}
+	 */
+	public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> bodyHandler)
+			throws IOException, InterruptedException {
+		CompletableFuture<HttpResponse<T>> response = sendAsync(request, bodyHandler);
+		try {
+			return response.get();
+		} catch (InterruptedException e) {
+			response.cancel(true);
+			throw e;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Send a request without blocking: the request waits for a slot of its host (without holding a
+	 * thread), then is sent with {@link HttpClient#sendAsync}. Transient failures are retried after
+	 * a delay (without holding a thread either).
+	 *
+	 * Cancelling the returned future releases the slot request or aborts the exchange.
+	 */
+	public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> bodyHandler) {
+		return sendAsync(request, bodyHandler, getRetryPolicy(request.uri().getHost()));
+	}
+
+	/**
+	 * @param retryPolicy Overrides the retry policy of the host
+	 */
+	public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> bodyHandler,
+			RetryPolicy retryPolicy) {
+		BodyHandler<T> handler = this.exchangeRecorder == null ? bodyHandler
+				: this.exchangeRecorder.wrap(request, bodyHandler);
+		CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+		this.pendingExchanges.add(result);
+		result.whenComplete((response, throwable) -> this.pendingExchanges.remove(result));
+		attempt(request, handler, retryPolicy, 0, result);
+		return result;
+	}
+
+	/**
+	 * Send one attempt of a request, completing the result or scheduling the next attempt.
+	 *
+	 * The body of a response with a retryable status is discarded (neither parsed nor copied to the
+	 * sinks) unless it is the last attempt.
+	 */
+	private <T> void attempt(HttpRequest request, BodyHandler<T> handler, RetryPolicy retryPolicy, int retry,
+			CompletableFuture<HttpResponse<T>> result) {
+		if (result.isDone()) {
+			return;
+		}
+		String host = request.uri().getHost();
+		EndpointCounters counters = getEndpointCounters(host);
+		CircuitBreaker circuitBreaker = counters.getCircuitBreaker();
+		if (!circuitBreaker.tryAcquire()) {
+			result.completeExceptionally(new CircuitOpenException(host));
+			return;
+		}
+		counters.incrementAttempts();
+		boolean lastAttempt = retry >= retryPolicy.getMaxRetries();
+		AtomicReference<ResponseInfo> discardedResponse = new AtomicReference<>();
+		AtomicBoolean bodyHandled = new AtomicBoolean();
+		BodyHandler<T> attemptHandler = responseInfo -> {
+			if (!lastAttempt && RetryPolicy.isRetryable(responseInfo.statusCode())) {
+				discardedResponse.set(responseInfo);
+				return BodySubscribers.replacing(null);
+			}
+			bodyHandled.set(true);
+			return handler.apply(responseInfo);
+		};
+		CompletableFuture<HttpResponse<T>> exchange = exchange(request, attemptHandler);
+		result.whenComplete((response, throwable) -> {
+			if (result.isCancelled()) {
+				exchange.cancel(true);
+			}
+		});
+		exchange.whenComplete((response, throwable) -> {
+			if (result.isCancelled() || (throwable instanceof CancellationException)) {
+				circuitBreaker.onCancelled();
+				return;
+			}
+			Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+			ResponseInfo discarded = discardedResponse.get();
+			boolean failed = (cause != null) || (response.statusCode() == 429) || (response.statusCode() >= 500);
+			if (failed && !isDeadlineReached(cause)) {
+				counters.incrementFailures();
+				circuitBreaker.onFailure();
+			} else if (!failed) {
+				circuitBreaker.onSuccess();
+			} else {
+				// Never sent: releases the probe of a half-open circuit
+				circuitBreaker.onCancelled();
+			}
+			if (!failed) {
+				result.complete(response);
+				return;
+			}
+			boolean retryable = (discarded != null)
+					|| ( (cause instanceof IOException) && !bodyHandled.get() && !isDeadlineReached(cause) );
+			if (lastAttempt || !retryable) {
+				fail(result, counters, cause != null ? cause : response);
+				return;
+			}
+			long delayMillis = retryPolicy.getDelayMillis(retry,
+					discarded == null ? null : RetryPolicy.getRetryAfter(discarded.headers()));
+			Instant deadline = this.deadline;
+			if ( (deadline != null) && Instant.now().plusMillis(delayMillis).isAfter(deadline) ) {
+				logger.debug("{} {}: no retry in {} ms before the deadline", request.method(), host, delayMillis);
+				fail(result, counters, cause != null ? cause : response);
+				return;
+			}
+			counters.incrementRetries();
+			logger.info("{} {} failed ({}): retry {}/{} in {} ms", request.method(), host,
+					cause != null ? cause.toString() : "HTTP " + discarded.statusCode(),
+					retry+1, retryPolicy.getMaxRetries(), delayMillis);
+			CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS)
+				.execute(() -> attempt(request, handler, retryPolicy, retry+1, result));
+		});
+	}
+
+	private static boolean isDeadlineReached(Throwable cause) {
+		return (cause instanceof HttpTimeoutException) && (cause.getMessage() != null)
+				&& cause.getMessage().startsWith(DEADLINE_REACHED);
+	}
+
+	/**
+	 * @param failure The exception of the last attempt, or its response if it was an HTTP error
+	 */
+	private static <T> void fail(CompletableFuture<HttpResponse<T>> result, EndpointCounters counters,
+			Object failure) {
+		counters.incrementExhausted();
+		if (failure instanceof Throwable) {
+			result.completeExceptionally((Throwable) failure);
+		} else {
+			// Completed with the HTTP error, the caller checks the status
+			@SuppressWarnings("unchecked")
+			HttpResponse<T> response = (HttpResponse<T>) failure;
+			result.complete(response);
+		}
+	}
+
+	/**
+	 * Send a request once: wait for a slot of its host then send it with {@link HttpClient#sendAsync}
+	 *
+	 * @return A future which aborts the exchange when cancelled
+	 */
+	private <T> CompletableFuture<HttpResponse<T>> exchange(HttpRequest request, BodyHandler<T> handler) {
+		AdaptiveLimiter limiter = getLimiter(request.uri().getHost());
+		CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+		AtomicReference<CompletableFuture<HttpResponse<T>>> exchangeReference = new AtomicReference<>();
+		CompletableFuture<Void> slot = limiter.acquireAsync();
+		slot.whenComplete((granted, slotThrowable) -> {
+			if (slotThrowable != null) {
+				result.completeExceptionally(slotThrowable);
+				return;
+			}
+			if (result.isDone()) {
+				// Cancelled while the slot was being granted
+				limiter.releaseUnused();
+				return;
+			}
+			long start = System.currentTimeMillis();
+			CompletableFuture<HttpResponse<T>> exchange;
+			try {
+				exchange = this.client.sendAsync(withinDeadline(request), handler);
+			} catch (HttpTimeoutException e) {
+				// Not the fault of the host
+				limiter.releaseUnused();
+				result.completeExceptionally(e);
+				return;
+			} catch (RuntimeException e) {
+				limiter.releaseOnFailure();
+				result.completeExceptionally(e);
+				return;
+			}
+			exchangeReference.set(exchange);
+			exchange.whenComplete((response, throwable) -> {
+				if (throwable != null) {
+					if (result.isCancelled()) {
+						limiter.releaseUnused();
+					} else {
+						limiter.releaseOnFailure();
+					}
+					result.completeExceptionally(throwable);
+					return;
+				}
+				limiter.release(response.statusCode(), System.currentTimeMillis() - start);
+				logger.debug("{} {} -> {} ({})", request.method(), request.uri().getHost(),
+						response.statusCode(), response.version());
+				result.complete(response);
+			});
+			if (result.isCancelled()) {
+				exchange.cancel(true);
+			}
+		});
+		result.whenComplete((response, throwable) -> {
+			if (result.isCancelled()) {
+				slot.cancel(false);
+				CompletableFuture<HttpResponse<T>> exchange = exchangeReference.get();
+				if (exchange != null) {
+					// Since JDK 16, the HTTP client aborts the exchange
+					exchange.cancel(true);
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Send a request and parse its response line by line while it is received
+	 *
+	 * @param lineHandler The parser of the lines (not called for HTTP errors)
+	 * @param sinks The sinks of the raw body (only those accepting the HTTP status of the response)
+	 * @return The response, its body being the number of bytes received
+	 */
+	public HttpResponse<Long> sendLines(HttpRequest request, LineHandler lineHandler, List<BodySink> sinks)
+			throws IOException, InterruptedException {
+		return send(request, lineStreamingHandler(lineHandler, sinks));
+	}
+
+	/**
+	 * Asynchronous version of {@link #sendLines(HttpRequest, LineHandler, List)}: the lines are parsed
+	 * by the threads of the HTTP client as the bytes arrive
+	 */
+	public CompletableFuture<HttpResponse<Long>> sendLinesAsync(HttpRequest request, LineHandler lineHandler,
+			List<BodySink> sinks) {
+		return abortSinksOnFailure(sendAsync(request, lineStreamingHandler(lineHandler, sinks)), sinks);
+	}
+
+	private static BodyHandler<Long> lineStreamingHandler(LineHandler lineHandler, List<BodySink> sinks) {
+		return responseInfo -> new LineStreamingSubscriber(
+				responseInfo.statusCode() < 400 ? lineHandler : null,
+				acceptedSinks(sinks, responseInfo.statusCode()));
+	}
+
+	/**
+	 * Send a request and return the response as a stream copied to the sinks while it is read
+	 *
+	 * @param sinks The sinks of the raw body (only those accepting the HTTP status of the response)
+	 */
+	public HttpResponse<TeeInputStream> sendTeeing(HttpRequest request, List<BodySink> sinks)
+			throws IOException, InterruptedException {
+		return send(request, teeingHandler(sinks));
+	}
+
+	/**
+	 * Asynchronous version of {@link #sendTeeing(HttpRequest, List)}: the future is completed when the
+	 * headers are received, the body being read from the stream
+	 */
+	public CompletableFuture<HttpResponse<TeeInputStream>> sendTeeingAsync(HttpRequest request, List<BodySink> sinks) {
+		return abortSinksOnFailure(sendAsync(request, teeingHandler(sinks)), sinks);
+	}
+
+	/**
+	 * Abort the sinks of an exchange failing before its body is complete (connection refused,
+	 * timeout, circuit open, deadline, cancelled...)
+	 */
+	private static <T> CompletableFuture<HttpResponse<T>> abortSinksOnFailure(
+			CompletableFuture<HttpResponse<T>> response, List<BodySink> sinks) {
+		response.whenComplete((completed, throwable) -> {
+			if (throwable != null) {
+				sinks.forEach(BodySink::abort);
+			}
+		});
+		return response;
+	}
+
+	private static BodyHandler<TeeInputStream> teeingHandler(List<BodySink> sinks) {
+		return responseInfo -> BodySubscribers.mapping(BodySubscribers.ofInputStream(),
+				inputStream -> new TeeInputStream(inputStream, acceptedSinks(sinks, responseInfo.statusCode())));
+	}
+
+	private static List<BodySink> acceptedSinks(List<BodySink> sinks, int statusCode) {
+		List<BodySink> acceptedSinks = new ArrayList<>();
+		for (BodySink sink : sinks) {
+			if (sink.accepts(statusCode)) {
+				acceptedSinks.add(sink);
+			} else {
+				sink.abort();
+			}
+		}
+		return acceptedSinks;
+	}
+
+	/**
+	 * Stage version of {@link #checkStatus(HttpResponse)}
+	 * @throws UncheckedIOException If the response is an HTTP error
+	 */
+	public static <T> HttpResponse<T> requireSuccess(HttpResponse<T> response) {
+		try {
+			checkStatus(response);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return response;
+	}
+
+	/**
+	 * @throws IOException If the response is an HTTP error (which must be neither parsed nor cached)
+	 */
+	public static void checkStatus(HttpResponse<?> response) throws IOException {
+		if (response.statusCode() >= 400) {
+			throw new IOException("HTTP " + response.statusCode() + " from " + response.uri().getHost());
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package neo.cfht.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Split a stream of bytes into lines as the bytes arrive
+ */
+public class LineSplitter {
+
+	public interface LineHandler {
+		/**
+		 * @param line The line, without its end of line characters (only valid during the call)
+		 */
+		void onLine(CharSequence line);
+	}
+
+	private final LineHandler lineHandler;
+	private final StringBuilder line;
+
+	public LineSplitter(LineHandler lineHandler) {
+		this.lineHandler = lineHandler;
+		this.line = new StringBuilder(256);
+	}
+
+	/**
+	 * @param buffer Bytes to split (the position of the buffer is not modified)
+	 */
+	public void feed(ByteBuffer buffer) {
+		for (int i=buffer.position(); i<buffer.limit(); i++) {
+			feed(buffer.get(i));
+		}
+	}
+
+	public void feed(byte[] bytes, int offset, int length) {
+		for (int i=offset; i<offset+length; i++) {
+			feed(bytes[i]);
+		}
+	}
+
+	private void feed(byte b) {
+		if (b == '\n') {
+			emit();
+		} else {
+			this.line.append((char) (b & 0xFF));
+		}
+	}
+
+	/**
+	 * The stream is over: emit the last line if it is not terminated
+	 */
+	public void finish() {
+		if (this.line.length() > 0) {
+			emit();
+		}
+	}
+
+	private void emit() {
+		int length = this.line.length();
+		if ( (length > 0) && (this.line.charAt(length-1) == '\r') ) {
+			this.line.setLength(length-1);
+		}
+		this.lineHandler.onLine(this.line);
+		this.line.setLength(0);
+	}
+
+	/**
+	 * Split a whole stream (e.g. a cached response)
+	 */
+	public static void split(InputStream inputStream, LineHandler lineHandler) throws IOException {
+		LineSplitter lineSplitter = new LineSplitter(lineHandler);
+		byte[] buffer = new byte[16384];
+		int read;
+		while ( (read = inputStream.read(buffer)) != -1 ) {
+			lineSplitter.feed(buffer, 0, read);
+		}
+		lineSplitter.finish();
+	}
+
+	/**
+	 * @return true if the line starts with the prefix
+	 */
+	public static boolean startsWith(CharSequence line, String prefix) {
+		if (line.length() < prefix.length()) {
+			return false;
+		}
+		for (int i=0; i<prefix.length(); i++) {
+			if (line.charAt(i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,92 @@
+package neo.cfht.http;
+
+import java.io.IOException;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+import neo.cfht.http.LineSplitter.LineHandler;
+
+/**
+ * Body subscriber handing each line of a response to a parser while copying the bytes to sinks
+ */
+public class LineStreamingSubscriber implements BodySubscriber<Long> {
+
+	private final LineSplitter lineSplitter;
+	private final List<BodySink> sinks;
+	private final CompletableFuture<Long> body;
+	private Flow.Subscription subscription;
+	private long bytesCount;
+
+	/**
+	 * @param lineHandler The parser (null if the lines must not be parsed, e.g. for HTTP errors)
+	 * @param sinks The sinks of the raw bytes
+	 */
+	public LineStreamingSubscriber(LineHandler lineHandler, List<BodySink> sinks) {
+		this.lineSplitter = lineHandler == null ? null : new LineSplitter(lineHandler);
+		this.sinks = sinks;
+		this.body = new CompletableFuture<>();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		this.subscription.request(1);
+	}
+
+	@Override
+	public void onNext(List<ByteBuffer> items) {
+		try {
+			for (ByteBuffer item : items) {
+				for (BodySink sink : this.sinks) {
+					sink.write(item);
+				}
+				if (this.lineSplitter != null) {
+					this.lineSplitter.feed(item);
+				}
+				this.bytesCount += item.remaining();
+			}
+		} catch (IOException | RuntimeException e) {
+			this.subscription.cancel();
+			onError(e);
+			return;
+		}
+		this.subscription.request(1);
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		if (this.body.isDone()) {
+			return;
+		}
+		this.sinks.forEach(BodySink::abort);
+		this.body.completeExceptionally(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		if (this.body.isDone()) {
+			return;
+		}
+		try {
+			if (this.lineSplitter != null) {
+				this.lineSplitter.finish();
+			}
+			for (BodySink sink : this.sinks) {
+				sink.commit();
+			}
+			this.body.complete(this.bytesCount);
+		} catch (IOException | RuntimeException e) {
+			this.sinks.forEach(BodySink::abort);
+			this.body.completeExceptionally(e);
+		}
+	}
+
+	@Override
+	public CompletionStage<Long> getBody() {
+		return this.body;
+	}
+}
@@ -0,0 +1,219 @@
+package neo.cfht.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Local stand-in for JPL Scout and the MPC services, replaying the exchanges recorded with -record
+ */
+@Command( name = "ReplayServer",
+	description = "Replay recorded exchanges with JPL Scout and the MPC on a local HTTP port")
+public class ReplayServer {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(ReplayServer.class);
+
+	@Option( names = {"-recordings", "--recordings"},
+			description = "Directory of the recorded exchanges (see -record)",
+			required = true)
+	private Path recordingsDirectory;
+
+	@Option( names = {"-port", "--port"},
+			description = "Local port (default: ${DEFAULT-VALUE}, 0 for any free port)",
+			defaultValue = "8642",
+			required = false)
+	private int port;
+
+	@Option( names = {"-latency", "--latency"},
+			description = "Latency in milliseconds added to each response (default: ${DEFAULT-VALUE})",
+			defaultValue = "0",
+			required = false)
+	private int latencyMillis;
+
+	@Option( names = {"-jitter", "--jitter"},
+			description = "Maximum random latency in milliseconds added to the latency (default: ${DEFAULT-VALUE})",
+			defaultValue = "0",
+			required = false)
+	private int jitterMillis;
+
+	@Option( names = {"-tooManyRequests", "--tooManyRequests"},
+			description = "Probability [0:1] to answer HTTP 429 instead of the recorded response (default: ${DEFAULT-VALUE})",
+			defaultValue = "0",
+			required = false)
+	private double tooManyRequestsProbability;
+
+	@Option( names = {"-truncate", "--truncate"},
+			description = "Probability [0:1] to send only half of the recorded body (default: ${DEFAULT-VALUE})",
+			defaultValue = "0",
+			required = false)
+	private double truncateProbability;
+
+	@Option( names = {"-anyDesignation", "--anyDesignation"},
+			description = "If a request was not recorded, answer with any recorded response of the same service\n" +
+					"         (to load the requesters with many designations from a few recordings)",
+			required = false)
+	private boolean anyDesignation;
+
+	@Option( names = {"-seed", "--seed"},
+			description = "Seed of the random generator (default: ${DEFAULT-VALUE})",
+			defaultValue = "0",
+			required = false)
+	private long seed;
+
+	private Random random;
+	private Map<String, JsonObject> descriptions;
+	private Map<String, String> keyByPath;
+	private HttpServer httpServer;
+	private ExecutorService executorService;
+
+	private ReplayServer() {
+		logger.trace("No compiler warning");
+	}
+
+	public static ReplayServer create(Path recordingsDirectory, int port) {
+		ReplayServer replayServer = new ReplayServer();
+		replayServer.recordingsDirectory = recordingsDirectory;
+		replayServer.port = port;
+		return replayServer;
+	}
+
+	public ReplayServer withLatency(int latencyMillis, int jitterMillis) {
+		this.latencyMillis = latencyMillis;
+		this.jitterMillis = jitterMillis;
+		return this;
+	}
+
+	public ReplayServer withFaults(double tooManyRequestsProbability, double truncateProbability) {
+		this.tooManyRequestsProbability = tooManyRequestsProbability;
+		this.truncateProbability = truncateProbability;
+		return this;
+	}
+
+	public ReplayServer withAnyDesignation(boolean anyDesignation) {
+		this.anyDesignation = anyDesignation;
+		return this;
+	}
+
+	/**
+	 * @return The base URL of the server (to be used as -jplBaseUrl, -mpcBaseUrl or -mpcCgiBaseUrl)
+	 */
+	public String getBaseUrl() {
+		return "http://localhost:" + this.httpServer.getAddress().getPort();
+	}
+
+	public ReplayServer start() throws IOException {
+		this.random = new Random(this.seed);
+		this.descriptions = new HashMap<>();
+		this.keyByPath = new HashMap<>();
+		try (Stream<Path> paths = Files.list(this.recordingsDirectory)) {
+			for (Path path : (Iterable<Path>) paths::iterator) {
+				String fileName = path.getFileName().toString();
+				if (fileName.endsWith(ExchangeRecorder.SUFFIX_DESCRIPTION)) {
+					String key = fileName.substring(0, fileName.length() - ExchangeRecorder.SUFFIX_DESCRIPTION.length());
+					JsonObject description = JsonParser.parseString(Files.readString(path)).getAsJsonObject();
+					this.descriptions.put(key, description);
+					this.keyByPath.putIfAbsent(URI.create(description.get("pathAndQuery").getAsString()).getPath(), key);
+				}
+			}
+		}
+		logger.info("Loaded {} recorded exchanges from {}", this.descriptions.size(), this.recordingsDirectory);
+		this.executorService = Executors.newCachedThreadPool();
+		this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port), 0);
+		this.httpServer.setExecutor(this.executorService);
+		this.httpServer.createContext("/", this::handle);
+		this.httpServer.start();
+		logger.info("Replaying on {}", getBaseUrl());
+		return this;
+	}
+
+	public void stop() {
+		this.httpServer.stop(0);
+		this.executorService.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			URI requestURI = exchange.getRequestURI();
+			String key = ExchangeRecorder.key(exchange.getRequestMethod(), ExchangeRecorder.pathAndQuery(requestURI),
+					requestBody);
+			if (!this.descriptions.containsKey(key) && this.anyDesignation) {
+				key = this.keyByPath.get(requestURI.getPath());
+			}
+			if ( (key == null) || !this.descriptions.containsKey(key) ) {
+				logger.warn("No recorded exchange for {} {}", exchange.getRequestMethod(), requestURI);
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			int delayMillis = this.latencyMillis + (this.jitterMillis > 0 ? nextInt(this.jitterMillis) : 0);
+			if (delayMillis > 0) {
+				Thread.sleep(delayMillis);
+			}
+			if (nextDouble() < this.tooManyRequestsProbability) {
+				exchange.getResponseHeaders().add("Retry-After", "1");
+				exchange.sendResponseHeaders(429, -1);
+				return;
+			}
+			JsonObject description = this.descriptions.get(key);
+			byte[] body = Files.readAllBytes(this.recordingsDirectory.resolve(key + ExchangeRecorder.SUFFIX_BODY));
+			String contentType = description.get("contentType").getAsString();
+			if (!contentType.isEmpty()) {
+				exchange.getResponseHeaders().add("Content-Type", contentType);
+			}
+			// The announced length is the full one: the client sees a premature end of the body
+			exchange.sendResponseHeaders(description.get("status").getAsInt(), body.length == 0 ? -1 : body.length);
+			boolean truncate = nextDouble() < this.truncateProbability;
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(body, 0, truncate ? body.length/2 : body.length);
+			} catch (IOException e) {
+				if (!truncate) {
+					throw e;
+				}
+				logger.debug("Truncated response to {}", requestURI);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private synchronized int nextInt(int bound) {
+		return this.random.nextInt(bound);
+	}
+
+	private synchronized double nextDouble() {
+		return this.random.nextDouble();
+	}
+
+	public static void main(String[] args) {
+		try {
+			ReplayServer replayServer = CommandLine.populateCommand(new ReplayServer(), args);
+			replayServer.start();
+		} catch (Exception e) {
+			logger.error("Aborting because of exception: {}", e.getMessage(), e);
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package neo.cfht.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import neo.cfht.output.AtomicFile;
+
+/**
+ * On-disk cache of the responses of the ephemerides services
+ */
+public class ResponseCache {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+	public enum Mode {
+		/** Use fresh entries, request the missing ones */
+		DEFAULT,
+		/** Ignore the entries (but store the new responses) */
+		REFRESH,
+		/** Never request: a missing entry is an error */
+		CACHE_ONLY
+	}
+
+	public static class CacheKey {
+		private final String source;
+		private final String designation;
+		private final String description;
+
+		public CacheKey(String source, String designation, String date, int intervalMinutes, String observatory,
+				int positionsCount, int nOrbits) {
+			this.source = source;
+			this.designation = designation;
+			this.description = String.join("|", source, designation, date, Integer.toString(intervalMinutes),
+					observatory, Integer.toString(positionsCount), Integer.toString(nOrbits));
+		}
+		public String getSource() {
+			return this.source;
+		}
+		public String getDesignation() {
+			return this.designation;
+		}
+		String getFileName() {
+			try {
+				byte[] digest = MessageDigest.getInstance("SHA-256")
+						.digest(this.description.getBytes(StandardCharsets.UTF_8));
+				StringBuilder sb = new StringBuilder();
+				for (int i=0; i<8; i++) {
+					sb.append(String.format("%02x", digest[i]));
+				}
+				return String.format("%s-%s-%s.response", this.source, getFileDesignation(this.designation),
+						sb.toString());
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		static String getFileDesignation(String designation) {
+			return designation.replaceAll("[^0-9A-Za-z]", "_");
+		}
+		@Override
+		public String toString() {
+			return this.description;
+		}
+	}
+
+	/** The evicted entries bring the cache down to that fraction of its maximum size */
+	private static final double EVICTION_TARGET = 0.9;
+
+	private final Path directory;
+	private final Map<String, Duration> timeToLiveBySource;
+	private final Duration defaultTimeToLive;
+	private final Duration notFoundTimeToLive;
+	private final long maxBytes;
+	private final Mode mode;
+	/** Size of the entries at the last listing plus the entries added since (-1 before the first listing) */
+	private long estimatedBytes = -1;
+
+	/**
+	 * @param notFoundTimeToLive Time-to-live of the entries marked with {@link #markNotFound(CacheKey)}
+	 */
+	public ResponseCache(Path directory, Map<String, Duration> timeToLiveBySource, Duration defaultTimeToLive,
+			Duration notFoundTimeToLive, long maxBytes, Mode mode) throws IOException {
+		this.directory = directory;
+		this.timeToLiveBySource = timeToLiveBySource;
+		this.defaultTimeToLive = defaultTimeToLive;
+		this.notFoundTimeToLive = notFoundTimeToLive;
+		this.maxBytes = maxBytes;
+		this.mode = mode;
+		Files.createDirectories(this.directory);
+	}
+
+	public Mode getMode() {
+		return this.mode;
+	}
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * @return true if the cached response can be used (fresh enough and allowed by the mode)
+	 */
+	public boolean isUsable(CacheKey key) {
+		if (this.mode == Mode.REFRESH) {
+			return false;
+		}
+		Path path = this.directory.resolve(key.getFileName());
+		try {
+			if (!Files.isRegularFile(path)) {
+				return false;
+			}
+			Duration age = Duration.ofMillis(System.currentTimeMillis() - Files.getLastModifiedTime(path).toMillis());
+			Duration timeToLive = this.timeToLiveBySource.getOrDefault(key.getSource(), this.defaultTimeToLive);
+			if ( (this.mode != Mode.CACHE_ONLY) && (age.compareTo(timeToLive) > 0) ) {
+				logger.debug("Cache entry for [{}] expired ({} old)", key, age);
+				return false;
+			}
+			return true;
+		} catch (IOException e) {
+			logger.warn("Cannot read cache entry {}: {}", path, e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * @return The cached response (to be called only if {@link #isUsable(CacheKey)})
+	 */
+	public InputStream open(CacheKey key) throws IOException {
+		logger.info("Using cached response for [{}]", key);
+		return Files.newInputStream(this.directory.resolve(key.getFileName()));
+	}
+
+	/**
+	 * @return A sink storing a new response in the cache once it is complete
+	 * @throws IOException If the network must not be used (-cacheOnly)
+	 */
+	public BodySink newEntry(CacheKey key) throws IOException {
+		if (this.mode == Mode.CACHE_ONLY) {
+			throw new IOException("No cached response for [" + key + "] (-cacheOnly)");
+		}
+		Path path = this.directory.resolve(key.getFileName());
+		FileBodySink fileBodySink = new FileBodySink(path, false, false);
+		return new BodySink() {
+			@Override
+			public void write(ByteBuffer buffer) throws IOException {
+				fileBodySink.write(buffer);
+			}
+			@Override
+			public void commit() throws IOException {
+				fileBodySink.commit();
+				evict(Files.size(path));
+			}
+			@Override
+			public void abort() {
+				fileBodySink.abort();
+			}
+		};
+	}
+
+	public void put(CacheKey key, String body) {
+		Path path = this.directory.resolve(key.getFileName());
+		try {
+			Path temporaryPath = AtomicFile.createTemporaryFile(path);
+			Files.writeString(temporaryPath, body, StandardCharsets.UTF_8);
+			Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			evict(Files.size(path));
+		} catch (IOException e) {
+			logger.warn("Cannot write cache entry {}: {}", path, e.getMessage());
+		}
+	}
+
+	/**
+	 * Let an entry whose response tells that the object is unknown (or is an error) expire after the
+	 * not-found time-to-live rather than that of its source: the object may be known soon
+	 */
+	public void markNotFound(CacheKey key) {
+		Path path = this.directory.resolve(key.getFileName());
+		Duration timeToLive = this.timeToLiveBySource.getOrDefault(key.getSource(), this.defaultTimeToLive);
+		if (timeToLive.compareTo(this.notFoundTimeToLive) <= 0) {
+			return;
+		}
+		try {
+			// Aged so that it expires after the not-found time-to-live (and is evicted first)
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()
+					- timeToLive.minus(this.notFoundTimeToLive).toMillis()));
+			logger.debug("Cache entry for [{}] expires in {}", key, this.notFoundTimeToLive);
+		} catch (NoSuchFileException e) {
+			logger.debug("No cache entry for [{}] to mark", key);
+		} catch (IOException e) {
+			logger.warn("Cannot mark cache entry {}: {}", path, e.getMessage());
+		}
+	}
+
+	/**
+	 * Delete the entries of an object (all sources, dates...), e.g. because its orbit changed
+	 *
+	 * @return The number of entries deleted
+	 */
+	public synchronized int invalidate(String designation) {
+		Pattern pattern = Pattern.compile("[^-]+-" + Pattern.quote(CacheKey.getFileDesignation(designation))
+				+ "-[0-9a-f]{16}\\.response");
+		int invalidated = 0;
+		try (Stream<Path> paths = Files.list(this.directory)) {
+			for (Path path : (Iterable<Path>) paths::iterator) {
+				if (pattern.matcher(path.getFileName().toString()).matches() && Files.deleteIfExists(path)) {
+					invalidated++;
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Cannot invalidate the cache entries of [{}]: {}", designation, e.getMessage());
+		}
+		logger.debug("{} cache entries of [{}] invalidated", invalidated, designation);
+		return invalidated;
+	}
+
+	/**
+	 * @param addedBytes Size of the entry just added
+	 */
+	private synchronized void evict(long addedBytes) throws IOException {
+		if (this.estimatedBytes >= 0) {
+			// Over-estimated if the entry replaced another one: the directory is listed sooner
+			this.estimatedBytes += addedBytes;
+			if (this.estimatedBytes <= this.maxBytes) {
+				return;
+			}
+		}
+		List<Path> entries;
+		try (Stream<Path> paths = Files.list(this.directory)) {
+			entries = paths.filter(path -> path.getFileName().toString().endsWith(".response"))
+					.sorted(Comparator.comparingLong(ResponseCache::lastModified))
+					.collect(Collectors.toList());
+		}
+		long totalBytes = 0;
+		for (Path entry : entries) {
+			totalBytes += Files.size(entry);
+		}
+		if (totalBytes > this.maxBytes) {
+			for (Path entry : entries) {
+				if (totalBytes <= this.maxBytes*EVICTION_TARGET) {
+					break;
+				}
+				totalBytes -= Files.size(entry);
+				Files.deleteIfExists(entry);
+				logger.debug("Evicted cache entry {}", entry);
+			}
+		}
+		this.estimatedBytes = totalBytes;
+	}
+
+	private static long lastModified(Path path) {
+		try {
+			return Files.getLastModifiedTime(path).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+}
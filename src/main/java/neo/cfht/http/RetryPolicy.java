@@ -0,0 +1,88 @@
+package neo.cfht.http;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries of the requests to a host failing transiently, with a capped exponential backoff
+ */
+public class RetryPolicy {
+
+	/** Header giving a number of seconds or an HTTP date */
+	public static final String HEADER_RETRY_AFTER = "Retry-After";
+
+	private final int maxRetries;
+	private final long baseDelayMillis;
+	private final long maxDelayMillis;
+
+	/**
+	 * @param maxRetries Maximum number of retries (0: no retry)
+	 * @param baseDelay Backoff before the first retry (doubled at each retry)
+	 * @param maxDelay Cap of the backoff
+	 */
+	public RetryPolicy(int maxRetries, Duration baseDelay, Duration maxDelay) {
+		this.maxRetries = maxRetries;
+		this.baseDelayMillis = baseDelay.toMillis();
+		this.maxDelayMillis = maxDelay.toMillis();
+	}
+
+	public int getMaxRetries() {
+		return this.maxRetries;
+	}
+
+	public static boolean isRetryable(int statusCode) {
+		return (statusCode == 429) || (statusCode == 502) || (statusCode == 503) || (statusCode == 504);
+	}
+
+	/**
+	 * @param retry The retry (0 for the first one)
+	 * @param retryAfter The delay requested by the host (null if none)
+	 * @return A delay drawn in [backoff/2, backoff], backoff being base*2^retry capped, or retryAfter if longer
+	 */
+	public long getDelayMillis(int retry, Duration retryAfter) {
+		long backoff = this.maxDelayMillis;
+		if (retry < 31) {
+			backoff = Math.min(this.maxDelayMillis, this.baseDelayMillis << retry);
+		}
+		long delay = backoff/2 + ThreadLocalRandom.current().nextLong(backoff/2 + 1);
+		if (retryAfter != null) {
+			delay = Math.max(delay, retryAfter.toMillis());
+		}
+		return delay;
+	}
+
+	/**
+	 * @return The delay of the 'Retry-After' header (null if missing or invalid)
+	 */
+	public static Duration getRetryAfter(HttpHeaders headers) {
+		Optional<String> value = headers.firstValue(HEADER_RETRY_AFTER);
+		if (value.isEmpty()) {
+			return null;
+		}
+		String retryAfter = value.get().trim();
+		try {
+			return Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter)));
+		} catch (NumberFormatException e) {
+			// An HTTP date
+		}
+		try {
+			Duration delay = Duration.between(Instant.now(),
+					ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+			return delay.isNegative() ? Duration.ZERO : delay;
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d retries, backoff %d..%d ms", this.maxRetries, this.baseDelayMillis,
+				this.maxDelayMillis);
+	}
+}
@@ -0,0 +1,77 @@
+package neo.cfht.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Input stream copying the bytes it reads to sinks
+ */
+public class TeeInputStream extends FilterInputStream {
+
+	private final List<BodySink> sinks;
+	private boolean ended;
+
+	public TeeInputStream(InputStream inputStream, List<BodySink> sinks) {
+		super(inputStream);
+		this.sinks = sinks;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+		int read = read(single, 0, 1);
+		return read == -1 ? -1 : (single[0] & 0xFF);
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		int read = super.read(bytes, offset, length);
+		if (read == -1) {
+			if (!this.ended) {
+				this.ended = true;
+				for (BodySink sink : this.sinks) {
+					sink.commit();
+				}
+			}
+			return -1;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, read);
+		for (BodySink sink : this.sinks) {
+			sink.write(buffer);
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] skipped = new byte[(int) Math.max(0, Math.min(n, 8192))];
+		return Math.max(0, read(skipped, 0, skipped.length));
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * Read (and copy) the rest of the stream
+	 */
+	public void drain() throws IOException {
+		byte[] buffer = new byte[8192];
+		while (read(buffer, 0, buffer.length) != -1) {
+			// Only copied to the sinks
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!this.ended) {
+			this.ended = true;
+			this.sinks.forEach(BodySink::abort);
+		}
+		super.close();
+	}
+}
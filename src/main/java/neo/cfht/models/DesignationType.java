@@ -0,0 +1,64 @@
+package neo.cfht.models;
+
+import java.util.regex.Pattern;
+
+/**
+ * Kind of designation, to route each object to the services that can know it
+ */
+public enum DesignationType {
+	/** NEOCP temporary designation, e.g. 'P109isj', 'A10fwNJ' */
+	NEOCP,
+	/** Packed provisional designation, e.g. 'K14A00A' */
+	PACKED_PROVISIONAL,
+	/** Unpacked provisional designation, e.g. '2014 AA' */
+	PROVISIONAL,
+	/** Numbered object, e.g. '(87890)' or '87890' */
+	NUMBERED,
+	/** Packed number, e.g. 'A1234' (101234) or '~0000' (620000) */
+	PACKED_NUMBERED,
+	/** Comet, e.g. 'P/2013 R3', 'C/2020 F3', '29P' */
+	COMET,
+	/** Anything else (names, ...) */
+	UNKNOWN;
+
+	private static final Pattern PACKED_PROVISIONAL_MATCH = Pattern.compile("^[IJK]\\d\\d[A-HJ-Y][0-9A-Za-z]\\d[A-HJ-Z]$");
+	private static final Pattern PROVISIONAL_MATCH = Pattern.compile("^\\d{4} [A-HJ-Y][A-HJ-Z]\\d*$");
+	private static final Pattern NUMBERED_MATCH = Pattern.compile("^\\(\\d+\\)$|^\\d+$");
+	private static final Pattern PACKED_NUMBERED_MATCH = Pattern.compile("^[A-Za-z]\\d{4}$|^~[0-9A-Za-z]{4}$");
+	private static final Pattern COMET_MATCH = Pattern.compile("^(\\d*[PCDXI]/.+|\\d+[PDI](-\\S+)?)$");
+	private static final Pattern NEOCP_MATCH = Pattern.compile("^(?=.*\\d)(?=.*[A-Za-z])[0-9A-Za-z]{1,7}$");
+
+	/**
+	 * @param designation The designation as typed by the user
+	 * @return The type of the designation (never null)
+	 */
+	public static DesignationType classify(String designation) {
+		String trimmed = designation.trim();
+		if (COMET_MATCH.matcher(trimmed).matches()) {
+			return COMET;
+		}
+		if (NUMBERED_MATCH.matcher(trimmed).matches()) {
+			return NUMBERED;
+		}
+		if (PROVISIONAL_MATCH.matcher(trimmed).matches()) {
+			return PROVISIONAL;
+		}
+		// Must be checked before NEOCP: a packed provisional designation is also 7 alphanumerics
+		if (PACKED_PROVISIONAL_MATCH.matcher(trimmed).matches()) {
+			return PACKED_PROVISIONAL;
+		}
+		// Also before NEOCP: 'A1234' is alphanumerics with a digit too
+		if (PACKED_NUMBERED_MATCH.matcher(trimmed).matches()) {
+			return PACKED_NUMBERED;
+		}
+		if (NEOCP_MATCH.matcher(trimmed).matches()) {
+			return NEOCP;
+		}
+		return UNKNOWN;
+	}
+
+	public boolean isKnownObject() {
+		return (this == PACKED_PROVISIONAL) || (this == PROVISIONAL) || (this == NUMBERED)
+				|| (this == PACKED_NUMBERED) || (this == COMET);
+	}
+}
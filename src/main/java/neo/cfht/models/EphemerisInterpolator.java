@@ -0,0 +1,157 @@
+package neo.cfht.models;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.apache.commons.math3.analysis.interpolation.HermiteInterpolator;
+
+/**
+ * Interpolate an ephemeris table requested on a coarse grid to a finer grid
+ */
+public class EphemerisInterpolator {
+
+	/** Number of nodes of the interpolating polynomial (cubic) */
+	public static final int WINDOW = 4;
+	/** Two nodes further apart than this number of steps are in different segments */
+	private static final double MAX_GAP_STEPS = 1.5;
+	private static final double ARCSEC_PER_DEGREE = 3600.;
+	private static final double MINUTES_PER_DAY = 1440.;
+	/** Time of the CFHT lines */
+	private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	private static final LocalDateTime MJD_ORIGIN = LocalDateTime.of(1858, 11, 17, 0, 0);
+
+	private final double intervalMinutes;
+
+	/**
+	 * @param intervalMinutes The step of the fine grid
+	 */
+	public EphemerisInterpolator(double intervalMinutes) {
+		this.intervalMinutes = intervalMinutes;
+	}
+
+	/**
+	 * @return The positions every interval within each segment of the nodes
+	 */
+	public EphemerisTable interpolate(EphemerisTable nodes) {
+		EphemerisTable points = new EphemerisTable(nodes.size());
+		if (nodes.isEmpty()) {
+			return points;
+		}
+		double[] ra = unwrappedRa(nodes);
+		double tolerance = 0.5/MINUTES_PER_DAY/60.;
+		int segmentStart = 0;
+		while (segmentStart < nodes.size()) {
+			int segmentEnd = segmentEnd(nodes, segmentStart);
+			double start = nodes.getMjd(segmentStart);
+			double stepDays = this.intervalMinutes/MINUTES_PER_DAY;
+			int node = segmentStart;
+			for (int k=0; ; k++) {
+				double mjd = start + k*stepDays;
+				if (mjd > nodes.getMjd(segmentEnd) + tolerance) {
+					break;
+				}
+				while ( (node < segmentEnd) && (nodes.getMjd(node+1) <= mjd + tolerance) ) {
+					node++;
+				}
+				if (Math.abs(nodes.getMjd(node) - mjd) <= tolerance) {
+					points.add(nodes.getMjd(node), nodes.getRa(node), nodes.getDec(node), nodes.getCFHTLine(node));
+					continue;
+				}
+				double[] position = interpolate(nodes, ra, node, segmentStart, segmentEnd, mjd, -1);
+				double raDegrees = normalize(position[0]);
+				points.add(mjd, raDegrees, position[1], toCFHTLine(mjd, raDegrees, position[1]));
+			}
+			segmentStart = segmentEnd + 1;
+		}
+		return points;
+	}
+
+	/**
+	 * Estimate the interpolation error by predicting each node from its neighbours (the node left
+	 * out): as the neighbours are then further apart than the nodes, this overestimates the error
+	 * of the points between the nodes
+	 *
+	 * @return The largest distance in arcsec between a node and its prediction (0 if no node has
+	 * enough neighbours in its segment)
+	 */
+	public double estimateErrorArcsec(EphemerisTable nodes) {
+		double[] ra = unwrappedRa(nodes);
+		double maxError = 0;
+		int segmentStart = 0;
+		while (segmentStart < nodes.size()) {
+			int segmentEnd = segmentEnd(nodes, segmentStart);
+			if (segmentEnd - segmentStart >= WINDOW) {
+				for (int node=segmentStart+1; node<segmentEnd; node++) {
+					double[] position = interpolate(nodes, ra, node, segmentStart, segmentEnd,
+							nodes.getMjd(node), node);
+					double cosDec = Math.cos(Math.toRadians(nodes.getDec(node)));
+					double error = Math.hypot((position[0] - ra[node])*cosDec, position[1] - nodes.getDec(node));
+					maxError = Math.max(maxError, error*ARCSEC_PER_DEGREE);
+				}
+			}
+			segmentStart = segmentEnd + 1;
+		}
+		return maxError;
+	}
+
+	/**
+	 * @return The last node of the segment starting at a node
+	 */
+	private static int segmentEnd(EphemerisTable nodes, int segmentStart) {
+		if (segmentStart+1 >= nodes.size()) {
+			return segmentStart;
+		}
+		double step = nodes.getMjd(segmentStart+1) - nodes.getMjd(segmentStart);
+		int end = segmentStart+1;
+		while ( (end+1 < nodes.size()) && (nodes.getMjd(end+1) - nodes.getMjd(end) <= MAX_GAP_STEPS*step) ) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * @param node The node preceding the point (or the node left out)
+	 * @param excluded The node left out (-1: none)
+	 * @return RA and Dec (degrees) at the MJD from the {@value #WINDOW} nodes of the segment around
+	 * the point
+	 */
+	private static double[] interpolate(EphemerisTable nodes, double[] ra, int node, int segmentStart,
+			int segmentEnd, double mjd, int excluded) {
+		int size = Math.min(WINDOW + (excluded < 0 ? 0 : 1), segmentEnd - segmentStart + 1);
+		int first = Math.max(segmentStart, Math.min(node - (size-1)/2, segmentEnd - size + 1));
+		HermiteInterpolator hermiteInterpolator = new HermiteInterpolator();
+		double origin = nodes.getMjd(first);
+		for (int i=first; i<first+size; i++) {
+			if (i != excluded) {
+				hermiteInterpolator.addSamplePoint((nodes.getMjd(i) - origin)*MINUTES_PER_DAY,
+						new double[] { ra[i], nodes.getDec(i) });
+			}
+		}
+		return hermiteInterpolator.value((mjd - origin)*MINUTES_PER_DAY);
+	}
+
+	/**
+	 * @return The RA of the nodes without the jumps at 0/360
+	 */
+	private static double[] unwrappedRa(EphemerisTable nodes) {
+		double[] ra = new double[nodes.size()];
+		for (int node=0; node<nodes.size(); node++) {
+			ra[node] = nodes.getRa(node);
+			if (node > 0) {
+				ra[node] += 360.*Math.rint((ra[node-1] - ra[node])/360.);
+			}
+		}
+		return ra;
+	}
+
+	private static double normalize(double ra) {
+		double normalized = ra % 360.;
+		return normalized < 0 ? normalized + 360. : normalized;
+	}
+
+	static String toCFHTLine(double mjd, double ra, double dec) {
+		LocalDateTime time = MJD_ORIGIN.plusSeconds(Math.round(mjd*86400.));
+		return String.format("%s|%s|%s|", TIME_FORMATTER.format(time), CFHTFormatter.raForCFHT(ra),
+				CFHTFormatter.deForCFHT(dec));
+	}
+}
@@ -0,0 +1,195 @@
+package neo.cfht.models;
+
+import java.util.Arrays;
+
+/**
+ * Ephemerides of an object stored by column
+ */
+public class EphemerisTable {
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private int size;
+	private double[] mjd;
+	private double[] ra;
+	private double[] dec;
+	/** Optional columns (null until a value is set) */
+	private double[] raRate;
+	private double[] decRate;
+	private double[] magnitude;
+	private double[] positionUncertainty;
+	private final StringBuilder cfhtLines;
+	private int[] cfhtLineStarts;
+
+	public EphemerisTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public EphemerisTable(int capacity) {
+		int initialCapacity = Math.max(1, capacity);
+		this.mjd = new double[initialCapacity];
+		this.ra = new double[initialCapacity];
+		this.dec = new double[initialCapacity];
+		this.cfhtLineStarts = new int[initialCapacity];
+		this.cfhtLines = new StringBuilder(initialCapacity*48);
+	}
+
+	public int size() {
+		return this.size;
+	}
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	public double getMjd(int row) {
+		return this.mjd[checkRow(row)];
+	}
+	public double getRa(int row) {
+		return this.ra[checkRow(row)];
+	}
+	public double getDec(int row) {
+		return this.dec[checkRow(row)];
+	}
+	public boolean hasRates() {
+		return this.raRate != null;
+	}
+	public double getRaRate(int row) {
+		return this.raRate == null ? Double.NaN : this.raRate[checkRow(row)];
+	}
+	public double getDecRate(int row) {
+		return this.decRate == null ? Double.NaN : this.decRate[checkRow(row)];
+	}
+	public boolean hasMagnitudes() {
+		return this.magnitude != null;
+	}
+	public double getMagnitude(int row) {
+		return this.magnitude == null ? Double.NaN : this.magnitude[checkRow(row)];
+	}
+
+	public boolean hasPositionUncertainties() {
+		return this.positionUncertainty != null;
+	}
+	/**
+	 * @return The position uncertainty as given by the source (e.g. Scout 'sigma-pos', in arcmin)
+	 */
+	public double getPositionUncertainty(int row) {
+		return this.positionUncertainty == null ? Double.NaN : this.positionUncertainty[checkRow(row)];
+	}
+
+	/**
+	 * @return The MJD column (only the first {@link #size()} values are meaningful)
+	 */
+	public double[] getMjdColumn() {
+		return this.mjd;
+	}
+	/**
+	 * @return The RA column (only the first {@link #size()} values are meaningful)
+	 */
+	public double[] getRaColumn() {
+		return this.ra;
+	}
+	/**
+	 * @return The Dec column (only the first {@link #size()} values are meaningful)
+	 */
+	public double[] getDecColumn() {
+		return this.dec;
+	}
+
+	/**
+	 * @param cfhtLine The CFHT ephemeris line of the point (copied)
+	 * @return The row of the point
+	 */
+	public int add(double mjd, double ra, double dec, CharSequence cfhtLine) {
+		if (this.size == this.mjd.length) {
+			grow();
+		}
+		int row = this.size++;
+		this.mjd[row] = mjd;
+		this.ra[row] = ra;
+		this.dec[row] = dec;
+		if (row > 0) {
+			this.cfhtLines.append('\n');
+		}
+		this.cfhtLineStarts[row] = this.cfhtLines.length();
+		this.cfhtLines.append(cfhtLine);
+		return row;
+	}
+
+	public void setRates(int row, double raRate, double decRate) {
+		checkRow(row);
+		if (this.raRate == null) {
+			this.raRate = newOptionalColumn();
+			this.decRate = newOptionalColumn();
+		}
+		this.raRate[row] = raRate;
+		this.decRate[row] = decRate;
+	}
+
+	public void setMagnitude(int row, double magnitude) {
+		checkRow(row);
+		if (this.magnitude == null) {
+			this.magnitude = newOptionalColumn();
+		}
+		this.magnitude[row] = magnitude;
+	}
+
+	public void setPositionUncertainty(int row, double positionUncertainty) {
+		checkRow(row);
+		if (this.positionUncertainty == null) {
+			this.positionUncertainty = newOptionalColumn();
+		}
+		this.positionUncertainty[row] = positionUncertainty;
+	}
+
+	/**
+	 * @return The CFHT line of a point
+	 */
+	public CharSequence getCFHTLine(int row) {
+		checkRow(row);
+		int end = row+1 < this.size ? this.cfhtLineStarts[row+1]-1 : this.cfhtLines.length();
+		return this.cfhtLines.subSequence(this.cfhtLineStarts[row], end);
+	}
+
+	/**
+	 * @return The CFHT lines of all the points, separated by new lines
+	 */
+	public CharSequence getCFHTLines() {
+		return this.cfhtLines;
+	}
+
+	private int checkRow(int row) {
+		if ( (row < 0) || (row >= this.size) ) {
+			throw new IndexOutOfBoundsException(String.format("Row %d out of [0, %d[", row, this.size));
+		}
+		return row;
+	}
+
+	private void grow() {
+		int capacity = 2*this.mjd.length;
+		this.mjd = Arrays.copyOf(this.mjd, capacity);
+		this.ra = Arrays.copyOf(this.ra, capacity);
+		this.dec = Arrays.copyOf(this.dec, capacity);
+		this.cfhtLineStarts = Arrays.copyOf(this.cfhtLineStarts, capacity);
+		if (this.raRate != null) {
+			this.raRate = growOptionalColumn(this.raRate, capacity);
+			this.decRate = growOptionalColumn(this.decRate, capacity);
+		}
+		if (this.magnitude != null) {
+			this.magnitude = growOptionalColumn(this.magnitude, capacity);
+		}
+		if (this.positionUncertainty != null) {
+			this.positionUncertainty = growOptionalColumn(this.positionUncertainty, capacity);
+		}
+	}
+
+	private double[] newOptionalColumn() {
+		double[] column = new double[this.mjd.length];
+		Arrays.fill(column, Double.NaN);
+		return column;
+	}
+
+	private static double[] growOptionalColumn(double[] column, int capacity) {
+		double[] grown = Arrays.copyOf(column, capacity);
+		Arrays.fill(grown, column.length, capacity, Double.NaN);
+		return grown;
+	}
+}
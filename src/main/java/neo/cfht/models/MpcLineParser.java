@@ -0,0 +1,127 @@
+package neo.cfht.models;
+
+import neo.models.time.Epoch;
+
+/**
+ * Fixed-column parser of the ephemeris lines of the MPC services (not thread-safe)
+ */
+public class MpcLineParser {
+
+	private CharSequence line;
+	private int year;
+	private int month;
+	private int day;
+	private int hour;
+	private int minute;
+	private double raDegrees;
+	private double decDegrees;
+
+	public int getYear() {
+		return this.year;
+	}
+	public int getMonth() {
+		return this.month;
+	}
+	public int getDay() {
+		return this.day;
+	}
+	public int getHour() {
+		return this.hour;
+	}
+	public int getMinute() {
+		return this.minute;
+	}
+	public double getRaDegrees() {
+		return this.raDegrees;
+	}
+	public double getDecDegrees() {
+		return this.decDegrees;
+	}
+
+	/**
+	 * @param line An ephemeris line (it must remain unchanged until the next call)
+	 * @throws NumberFormatException if a numeric column doesn't hold digits
+	 * @throws IndexOutOfBoundsException if the line is too short
+	 */
+	public void parse(CharSequence line) {
+		this.line = line;
+		// Date part
+		this.year = digits(0, 4);
+		this.month = digits(5, 2);
+		this.day = digits(8, 2);
+		this.hour = digits(11, 2);
+		this.minute = digits(13, 2);
+		// RA (hh mm ss.s)
+		this.raDegrees = 15. * (digits(18, 2) + digits(21, 2)/60. + seconds(24, 4)/3600.);
+		// De (+dd mm ss)
+		double decDegrees = digits(30, 2) + digits(33, 2)/60. + seconds(36, 2)/3600.;
+		this.decDegrees = line.charAt(29) == '-' ? -decDegrees : decDegrees;
+	}
+
+	/**
+	 * @return The MJD (UT) of the line
+	 */
+	public double getMJD() {
+		double dday = (double) this.day + ((double) this.hour)/24. + ((double) this.minute)/1440.;
+		return Epoch.createFromMPCUTDate(this.year, this.month, dday).getMJDUT();
+	}
+
+	/**
+	 * Append the CFHT ephemeris line (e.g. '2019-08-14 06:00:00|21:15:42.30|-12:34:56.0|') of the
+	 * last parsed line
+	 */
+	public StringBuilder appendCFHTLine(StringBuilder sb) {
+		// Date part
+		sb.append(this.line, 0, 4).append('-')
+			.append(this.line, 5, 5+2).append('-')
+			.append(this.line, 8, 8+2).append(' ')
+			.append(this.line, 11, 11+2).append(':')
+			.append(this.line, 13, 13+2).append(":00|");
+		// RA
+		sb.append(this.line, 18, 18+2).append(':')
+			.append(this.line, 21, 21+2).append(':')
+			.append(this.line, 24, 24+4).append("0|");
+		// De
+		sb.append(this.line, 29, 29+3).append(':')
+			.append(this.line, 33, 33+2).append(':')
+			.append(this.line, 36, 36+2).append(".0|");
+		return sb;
+	}
+
+	private int digits(int start, int length) {
+		int value = 0;
+		for (int i=start; i<start+length; i++) {
+			value = 10*value + digit(i);
+		}
+		return value;
+	}
+
+	/**
+	 * @return The value of a field made of digits with an optional decimal part (e.g. '42.3'),
+	 *   rounded as Double.parseDouble does
+	 */
+	private double seconds(int start, int length) {
+		long value = 0;
+		long scale = 1;
+		boolean decimals = false;
+		for (int i=start; i<start+length; i++) {
+			if (!decimals && (this.line.charAt(i) == '.')) {
+				decimals = true;
+				continue;
+			}
+			value = 10*value + digit(i);
+			if (decimals) {
+				scale *= 10;
+			}
+		}
+		return scale == 1 ? (double) value : ((double) value) / scale;
+	}
+
+	private int digit(int index) {
+		char c = this.line.charAt(index);
+		if ( (c < '0') || (c > '9') ) {
+			throw new NumberFormatException(String.format("Not a digit at column %d: [%s]", index, this.line));
+		}
+		return c - '0';
+	}
+}
@@ -0,0 +1,198 @@
+package neo.cfht.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * The objects of the NEOCP listed by the MPC and by JPL Scout, with a signature of their orbit
+ */
+public class NeocpListing {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(NeocpListing.class);
+
+	public static class Entry {
+		private final String designation;
+		private double ra = Double.NaN;
+		private double dec = Double.NaN;
+		private double magnitude = Double.NaN;
+		private String neocpSignature;
+		private String scoutSignature;
+
+		Entry(String designation) {
+			this.designation = designation;
+		}
+		public String getDesignation() {
+			return this.designation;
+		}
+		/**
+		 * @return The RA of the object (degrees) in the MPC listing, NaN if unknown
+		 */
+		public double getRa() {
+			return this.ra;
+		}
+		/**
+		 * @return The Dec of the object (degrees) in the MPC listing, NaN if unknown
+		 */
+		public double getDec() {
+			return this.dec;
+		}
+		/**
+		 * @return The V magnitude of the object in the MPC listing, NaN if unknown
+		 */
+		public double getMagnitude() {
+			return this.magnitude;
+		}
+		public String getSignature() {
+			return this.neocpSignature + "#" + this.scoutSignature;
+		}
+	}
+
+	private final Map<String, Entry> entries;
+
+	private NeocpListing(Map<String, Entry> entries) {
+		this.entries = Collections.unmodifiableMap(entries);
+	}
+
+	/**
+	 * @param neocpText The MPC listing (null if unavailable)
+	 * @param scoutJson The Scout listing (null if unavailable)
+	 */
+	public static NeocpListing parse(String neocpText, String scoutJson) {
+		Map<String, Entry> entries = new LinkedHashMap<>();
+		if (neocpText != null) {
+			parseNeocp(neocpText, entries);
+		}
+		if (scoutJson != null) {
+			parseScout(scoutJson, entries);
+		}
+		return new NeocpListing(entries);
+	}
+
+	public Map<String, Entry> getEntries() {
+		return this.entries;
+	}
+	public Entry get(String designation) {
+		return this.entries.get(designation);
+	}
+	public boolean contains(String designation) {
+		return this.entries.containsKey(designation);
+	}
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * @param previous The previous listing (null if none)
+	 * @return The designations of the objects new to this listing or whose orbit changed
+	 */
+	public List<String> getChanges(NeocpListing previous) {
+		List<String> changes = new ArrayList<>();
+		for (Entry entry : this.entries.values()) {
+			Entry previousEntry = previous == null ? null : previous.get(entry.getDesignation());
+			if ( (previousEntry == null) || !Objects.equals(previousEntry.getSignature(), entry.getSignature()) ) {
+				changes.add(entry.getDesignation());
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * @return The designations of the objects of the previous listing which left the NEOCP
+	 */
+	public List<String> getRemovals(NeocpListing previous) {
+		List<String> removals = new ArrayList<>();
+		if (previous != null) {
+			for (String designation : previous.getEntries().keySet()) {
+				if (!this.entries.containsKey(designation)) {
+					removals.add(designation);
+				}
+			}
+		}
+		return removals;
+	}
+
+	/**
+	 * A line is e.g.
+	 * <pre>P21abcd 100 2019 08 13.4  23.0187 -14.5234 20.6 Updated Aug. 13.52 UT    6   0.05 22.8  0.062</pre>
+	 * (designation, score, discovery date, RA in hours, Dec, V, last update ('Added' for a new
+	 * object), observations, arc, H, days since last seen)
+	 *
+	 * The signature is the line from the last update without the days since last seen (or, without
+	 * 'Updated' / 'Added', the line without the designation, the score and the last field): the
+	 * fields which change without a new orbit are left out.
+	 */
+	static void parseNeocp(String neocpText, Map<String, Entry> entries) {
+		for (String line : neocpText.split("\n")) {
+			String[] tokens = line.trim().split("\\s+");
+			if (tokens.length < 2) {
+				continue;
+			}
+			Entry entry = entries.computeIfAbsent(tokens[0], Entry::new);
+			if (tokens.length > 7) {
+				entry.ra = parseDouble(tokens[5])*15.;
+				entry.dec = parseDouble(tokens[6]);
+				entry.magnitude = parseDouble(tokens[7]);
+			}
+			int first = Math.min(2, tokens.length - 1);
+			for (int i=first; i<tokens.length; i++) {
+				if ("Updated".equals(tokens[i]) || "Added".equals(tokens[i])) {
+					first = i;
+					break;
+				}
+			}
+			// Without the days since last seen
+			int last = Math.max(first + 1, tokens.length - 1);
+			entry.neocpSignature = String.join(" ", Arrays.asList(tokens).subList(first, Math.min(last, tokens.length)));
+		}
+	}
+
+	static void parseScout(String scoutJson, Map<String, Entry> entries) {
+		try {
+			JsonElement root = JsonParser.parseString(scoutJson);
+			JsonElement data = root.isJsonObject() ? root.getAsJsonObject().get("data") : null;
+			if ( (data == null) || !data.isJsonArray() ) {
+				logger.warn("No 'data' in the Scout listing");
+				return;
+			}
+			JsonArray objects = data.getAsJsonArray();
+			for (JsonElement element : objects) {
+				JsonObject object = element.getAsJsonObject();
+				String designation = getString(object, "objectName");
+				if (designation == null) {
+					continue;
+				}
+				Entry entry = entries.computeIfAbsent(designation.trim(), Entry::new);
+				entry.scoutSignature = getString(object, "lastRun") + "|" + getString(object, "nObs");
+			}
+		} catch (JsonParseException | IllegalStateException e) {
+			logger.warn("Cannot parse the Scout listing: {}", e.getMessage());
+		}
+	}
+
+	private static String getString(JsonObject object, String name) {
+		JsonElement element = object.get(name);
+		return ( (element == null) || element.isJsonNull() ) ? null : element.getAsString();
+	}
+
+	private static double parseDouble(String token) {
+		try {
+			return Double.parseDouble(token);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+}
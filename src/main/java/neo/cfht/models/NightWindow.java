@@ -0,0 +1,138 @@
+package neo.cfht.models;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Time span (UT) of a night during which the ephemerides are useful
+ */
+public class NightWindow {
+
+	private static final double MINUTES_PER_DAY = 1440.;
+	/** MJD of 1970-01-01 */
+	private static final double MJD_EPOCH = 40587.;
+	private static final int OBJECT_STEP_MINUTES = 5;
+
+	private final double startMjd;
+	private final double stopMjd;
+
+	public NightWindow(double startMjd, double stopMjd) {
+		this.startMjd = startMjd;
+		this.stopMjd = stopMjd;
+	}
+
+	/**
+	 * @param date The UT date of the night (the local midnight falls on that date)
+	 * @param twilight Altitude (degrees) of the Sun at the twilights, e.g. -12 (nautical)
+	 * @return The dark part of the night, null if the Sun doesn't set below the twilight altitude
+	 */
+	public static NightWindow of(Observatory observatory, LocalDate date, double twilight) {
+		double hours = ( (-observatory.getLongitude()/15.) % 24. + 24.) % 24.;
+		double midnight = date.toEpochDay() + MJD_EPOCH + hours/24.;
+		double step = 1./MINUTES_PER_DAY;
+		if (observatory.getSunAltitude(midnight) > twilight) {
+			return null;
+		}
+		double start = midnight;
+		while ( (midnight - start < 0.5) && (observatory.getSunAltitude(start - step) <= twilight) ) {
+			start -= step;
+		}
+		double stop = midnight;
+		while ( (stop - midnight < 0.5) && (observatory.getSunAltitude(stop + step) <= twilight) ) {
+			stop += step;
+		}
+		return new NightWindow(start, stop);
+	}
+
+	/**
+	 * @param ra Position (degrees) of the object during the night
+	 * @param minAltitude Altitude (degrees) from which the object is observable
+	 * @param margin Added before and after the span where the object is observable (its position
+	 * is approximate), within the night
+	 * @return The part of the night where the object is observable, null if it never is
+	 */
+	public NightWindow restrict(Observatory observatory, double ra, double dec, double minAltitude,
+			Duration margin) {
+		double step = OBJECT_STEP_MINUTES/MINUTES_PER_DAY;
+		double first = Double.NaN;
+		double last = Double.NaN;
+		for (double mjd=this.startMjd; mjd<this.stopMjd+step; mjd+=step) {
+			double clamped = Math.min(mjd, this.stopMjd);
+			if (observatory.getAltitude(clamped, ra, dec) >= minAltitude) {
+				if (Double.isNaN(first)) {
+					first = clamped;
+				}
+				last = clamped;
+			}
+		}
+		if (Double.isNaN(first)) {
+			return null;
+		}
+		double marginDays = margin.toSeconds()/MINUTES_PER_DAY/60.;
+		return new NightWindow(Math.max(this.startMjd, first - marginDays), Math.min(this.stopMjd, last + marginDays));
+	}
+
+	/**
+	 * @return The window widened to the positions of a grid of that interval starting at 00:00 UT
+	 */
+	public NightWindow align(int intervalMinutes) {
+		double step = intervalMinutes/MINUTES_PER_DAY;
+		// Rounded to the second first: the bounds found minute by minute are not exact
+		double start = Math.rint(this.startMjd*MINUTES_PER_DAY*60.)/MINUTES_PER_DAY/60.;
+		double stop = Math.rint(this.stopMjd*MINUTES_PER_DAY*60.)/MINUTES_PER_DAY/60.;
+		double day = Math.floor(start);
+		return new NightWindow(day + Math.floor((start - day)/step + 1e-9)*step,
+				day + Math.ceil((stop - day)/step - 1e-9)*step);
+	}
+
+	/**
+	 * @return The number of positions every interval from the start to the stop (both included)
+	 */
+	public int getPositionsCount(int intervalMinutes) {
+		return (int) Math.round((this.stopMjd - this.startMjd)*MINUTES_PER_DAY/intervalMinutes) + 1;
+	}
+
+	public double getStartMjd() {
+		return this.startMjd;
+	}
+	public double getStopMjd() {
+		return this.stopMjd;
+	}
+	public Instant getStart() {
+		return toInstant(this.startMjd);
+	}
+	public Instant getStop() {
+		return toInstant(this.stopMjd);
+	}
+	public Duration getDuration() {
+		return Duration.between(getStart(), getStop());
+	}
+
+	/**
+	 * @return The start formatted in UT
+	 */
+	public String formatStart(DateTimeFormatter formatter) {
+		return formatter.format(getStart().atOffset(ZoneOffset.UTC));
+	}
+	/**
+	 * @return The stop formatted in UT
+	 */
+	public String formatStop(DateTimeFormatter formatter) {
+		return formatter.format(getStop().atOffset(ZoneOffset.UTC));
+	}
+
+	private static Instant toInstant(double mjd) {
+		return Instant.ofEpochSecond(Math.round((mjd - MJD_EPOCH)*MINUTES_PER_DAY*60.));
+	}
+
+	/**
+	 * @return The ISO 8601 interval (UT), e.g. 2019-08-14T05:30:00Z/2019-08-14T15:00:00Z
+	 */
+	@Override
+	public String toString() {
+		return getStart() + "/" + getStop();
+	}
+}
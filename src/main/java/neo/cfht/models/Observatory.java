@@ -0,0 +1,94 @@
+package neo.cfht.models;
+
+import java.util.Map;
+
+/**
+ * Site of an MPC observatory code, and the (low precision) altitudes of the Sun and of an object
+ */
+public class Observatory {
+
+	private static final Map<String, Observatory> KNOWN_OBSERVATORIES = Map.of(
+			"568", new Observatory("568", 204.52780, 0.94171, +0.33725),
+			"F51", new Observatory("F51", 203.74409, 0.936241, +0.351543),
+			"F52", new Observatory("F52", 203.74416, 0.936239, +0.351545));
+
+	/** MJD of J2000.0 */
+	private static final double MJD_J2000 = 51544.5;
+
+	private final String code;
+	private final double longitude;
+	private final double latitude;
+
+	/**
+	 * @param longitude Longitude east (degrees)
+	 * @param rhoCosPhi Parallax constant (Earth radii)
+	 * @param rhoSinPhi Parallax constant (Earth radii)
+	 */
+	public Observatory(String code, double longitude, double rhoCosPhi, double rhoSinPhi) {
+		this.code = code;
+		this.longitude = longitude;
+		this.latitude = Math.toDegrees(Math.atan2(rhoSinPhi, rhoCosPhi));
+	}
+
+	/**
+	 * @return The site of the code, null if it is unknown
+	 */
+	public static Observatory forCode(String code) {
+		return KNOWN_OBSERVATORIES.get(code);
+	}
+
+	public String getCode() {
+		return this.code;
+	}
+	/**
+	 * @return The longitude east (degrees)
+	 */
+	public double getLongitude() {
+		return this.longitude;
+	}
+	/**
+	 * @return The geocentric latitude (degrees)
+	 */
+	public double getLatitude() {
+		return this.latitude;
+	}
+
+	/**
+	 * @return The altitude (degrees) of a position at a time (refraction and parallax ignored)
+	 */
+	public double getAltitude(double mjd, double ra, double dec) {
+		double hourAngle = Math.toRadians(getSiderealTime(mjd) - ra);
+		double phi = Math.toRadians(this.latitude);
+		double delta = Math.toRadians(dec);
+		return Math.toDegrees(Math.asin(Math.sin(phi)*Math.sin(delta)
+				+ Math.cos(phi)*Math.cos(delta)*Math.cos(hourAngle)));
+	}
+
+	/**
+	 * @return The altitude (degrees) of the center of the Sun at a time
+	 */
+	public double getSunAltitude(double mjd) {
+		double n = mjd - MJD_J2000;
+		double meanLongitude = 280.460 + 0.9856474*n;
+		double meanAnomaly = Math.toRadians(357.528 + 0.9856003*n);
+		double eclipticLongitude = Math.toRadians(meanLongitude + 1.915*Math.sin(meanAnomaly)
+				+ 0.020*Math.sin(2*meanAnomaly));
+		double obliquity = Math.toRadians(23.439 - 0.0000004*n);
+		double ra = Math.toDegrees(Math.atan2(Math.cos(obliquity)*Math.sin(eclipticLongitude),
+				Math.cos(eclipticLongitude)));
+		double dec = Math.toDegrees(Math.asin(Math.sin(obliquity)*Math.sin(eclipticLongitude)));
+		return getAltitude(mjd, ra, dec);
+	}
+
+	/**
+	 * @return The local mean sidereal time (degrees)
+	 */
+	double getSiderealTime(double mjd) {
+		return (280.46061837 + 360.98564736629*(mjd - MJD_J2000) + this.longitude) % 360.;
+	}
+
+	@Override
+	public String toString() {
+		return this.code;
+	}
+}
@@ -0,0 +1,92 @@
+package neo.cfht.models;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Offset of the pointing from the position of the object (degrees east and north)
+ */
+public class PointingOffset {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(PointingOffset.class);
+
+	public static final PointingOffset NONE = new PointingOffset(0., 0.);
+
+	private final double east;
+	private final double north;
+
+	/**
+	 * @param east Offset in degrees on the sky towards the east (already multiplied by the RA sign)
+	 * @param north Offset in degrees towards the north
+	 */
+	public PointingOffset(double east, double north) {
+		this.east = east;
+		this.north = north;
+	}
+
+	public double getEast() {
+		return this.east;
+	}
+	public double getNorth() {
+		return this.north;
+	}
+	public boolean isZero() {
+		return (this.east == 0.) && (this.north == 0.);
+	}
+
+	/**
+	 * @return The sum of the offsets (e.g. a dither position around a base offset)
+	 */
+	public PointingOffset plus(PointingOffset offset) {
+		return new PointingOffset(this.east + offset.east, this.north + offset.north);
+	}
+
+	/**
+	 * @return The ephemerides of the pointing (the same table if the offset is zero). The time of
+	 * the CFHT lines is kept, their RA and Dec are formatted again.
+	 */
+	public EphemerisTable apply(EphemerisTable ephemerides) {
+		if (isZero()) {
+			return ephemerides;
+		}
+		int size = ephemerides.size();
+		double[] mjd = ephemerides.getMjdColumn();
+		double[] ra = ephemerides.getRaColumn();
+		double[] dec = ephemerides.getDecColumn();
+		double[] offsetRa = new double[size];
+		double[] offsetDec = new double[size];
+		int clamped = 0;
+		for (int row=0; row<size; row++) {
+			double cosDec = Math.cos(Math.toRadians(dec[row]));
+			// At the pole, any RA is the same position
+			double shifted = ra[row] + (Math.abs(cosDec) < 1e-9 ? 0. : this.east/cosDec);
+			offsetRa[row] = shifted - 360.*Math.floor(shifted/360.);
+			offsetDec[row] = Math.max(-90., Math.min(90., dec[row] + this.north));
+			if (offsetDec[row] != dec[row] + this.north) {
+				clamped++;
+			}
+		}
+		if (clamped > 0) {
+			logger.warn("Pointing {} goes past the pole: Dec of {} position(s) clamped to +/-90", this, clamped);
+		}
+		EphemerisTable pointing = new EphemerisTable(size);
+		StringBuilder cfhtLine = new StringBuilder(64);
+		for (int row=0; row<size; row++) {
+			CharSequence sourceLine = ephemerides.getCFHTLine(row);
+			cfhtLine.setLength(0);
+			// Time of the source line
+			for (int i=0; (i<sourceLine.length()) && (sourceLine.charAt(i) != '|'); i++) {
+				cfhtLine.append(sourceLine.charAt(i));
+			}
+			cfhtLine.append('|').append(CFHTFormatter.raForCFHT(offsetRa[row]))
+				.append('|').append(CFHTFormatter.deForCFHT(offsetDec[row])).append('|');
+			pointing.add(mjd[row], offsetRa[row], offsetDec[row], cfhtLine);
+		}
+		return pointing;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("east %+.6f, north %+.6f", this.east, this.north);
+	}
+}
@@ -4,6 +4,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import neo.cfht.app.CFHTEphemeridesConfiguration;
+import neo.cfht.http.HttpService;
+import neo.cfht.http.ResponseCache;
+import neo.cfht.http.ResponseCache.CacheKey;
 
 public class SmallBodyRequest {
 	/** Logging */
@@ -11,7 +14,10 @@ public class SmallBodyRequest {
 
 	private String designation;
 	private String normalizedDesignation;
+	private DesignationType designationType;
 	private CFHTEphemeridesConfiguration cec;
+	/** Part of the night where the object is observable (null: the whole night) */
+	private NightWindow observingWindow;
 
 	public SmallBodyRequest(String designation, CFHTEphemeridesConfiguration cec) {
 		this.designation = designation;
@@ -21,6 +27,7 @@ public class SmallBodyRequest {
 			logger.info("After meta-characters replacement, normalized designation of '{}' is '{}'",
 					this.designation, this.normalizedDesignation);
 		}
+		this.designationType = DesignationType.classify(this.designation);
 		this.cec = cec;
 	}
 	public String getDesignation() {
@@ -29,7 +36,44 @@ public class SmallBodyRequest {
 	public String getNormalizedDesignation() {
 		return this.normalizedDesignation;
 	}
+	public DesignationType getDesignationType() {
+		return this.designationType;
+	}
 	public CFHTEphemeridesConfiguration getCFHTEphemeridesConfiguration() {
 		return this.cec;
 	}
+	public HttpService getHttpService() {
+		return this.cec.getHttpService();
+	}
+	public ResponseCache getResponseCache() {
+		return this.cec.getResponseCache();
+	}
+	/**
+	 * @return The part of the night where the object is observable, else the night window (null if
+	 * there is none: the positions are requested from the start of the date)
+	 */
+	public NightWindow getObservingWindow() {
+		return this.observingWindow != null ? this.observingWindow : this.cec.getNightWindow();
+	}
+	public void setObservingWindow(NightWindow observingWindow) {
+		this.observingWindow = observingWindow;
+	}
+	/**
+	 * @param source The suffix of the requester
+	 * @param window The time span requested (null: the requester's default for the date)
+	 * @return The key of the cached response of that requester for this object
+	 */
+	public CacheKey getCacheKey(String source, NightWindow window) {
+		return new CacheKey(source, this.designation, window == null ? this.cec.getDate() : window.toString(),
+				this.cec.getRequestIntervalMinutes(),
+				this.cec.getObservatory(), this.cec.getRequestPositionsCount(), this.cec.getNOrbits());
+	}
+	/**
+	 * @param source The suffix of a requester whose request only depends on the object, the date and
+	 * the observatory (the MPC NEOCP answers hourly positions whatever -interval, -count and -norbits)
+	 * @return The key of the cached response of that requester for this object
+	 */
+	public CacheKey getDailyCacheKey(String source) {
+		return new CacheKey(source, this.designation, this.cec.getDate(), 0, this.cec.getObservatory(), 0, 0);
+	}
 }
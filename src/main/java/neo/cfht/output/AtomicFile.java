@@ -0,0 +1,123 @@
+package neo.cfht.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Output file written to a temporary file and renamed atomically to its target on {@link #commit()}
+ */
+public class AtomicFile implements Closeable {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(AtomicFile.class);
+
+	private static final Random RANDOM = new SecureRandom();
+
+	private final Path target;
+	private final Path temporaryPath;
+	private final FileChannel fileChannel;
+	private boolean committed;
+
+	private AtomicFile(Path target) throws IOException {
+		this.target = target;
+		this.temporaryPath = createTemporaryFile(target);
+		this.fileChannel = FileChannel.open(this.temporaryPath, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	public static AtomicFile open(Path target) throws IOException {
+		return new AtomicFile(target);
+	}
+
+	/**
+	 * Unlike Files.createTempFile (always 0600), the file is created with the default permissions
+	 * (umask), then given those of the target if it exists
+	 *
+	 * @return A new empty file in the directory of the target, to be renamed to the target
+	 */
+	public static Path createTemporaryFile(Path target) throws IOException {
+		Path directory = target.toAbsolutePath().getParent();
+		String prefix = "." + target.getFileName().toString();
+		while (true) {
+			Path temporaryPath = directory.resolve(prefix + Long.toUnsignedString(RANDOM.nextLong()) + ".tmp");
+			try {
+				Files.createFile(temporaryPath);
+			} catch (FileAlreadyExistsException e) {
+				continue;
+			}
+			try {
+				if (Files.exists(target)) {
+					Files.setPosixFilePermissions(temporaryPath, Files.getPosixFilePermissions(target));
+				}
+			} catch (UnsupportedOperationException e) {
+				// Not a POSIX file system: default permissions
+			} catch (IOException e) {
+				logger.debug("Cannot copy the permissions of {}: {}", target, e.getMessage());
+			}
+			return temporaryPath;
+		}
+	}
+
+	public Path getTarget() {
+		return this.target;
+	}
+
+	/**
+	 * @return The channel of the temporary file
+	 */
+	public FileChannel getChannel() {
+		return this.fileChannel;
+	}
+
+	/**
+	 * Write all the buffers (their positions are not changed)
+	 * @return The number of bytes written
+	 */
+	public long write(ByteBuffer... buffers) throws IOException {
+		ByteBuffer[] duplicates = new ByteBuffer[buffers.length];
+		long remaining = 0;
+		for (int i=0; i<buffers.length; i++) {
+			duplicates[i] = buffers[i].duplicate();
+			remaining += duplicates[i].remaining();
+		}
+		long written = 0;
+		while (written < remaining) {
+			written += this.fileChannel.write(duplicates);
+		}
+		return written;
+	}
+
+	/**
+	 * Replace the target with what was written
+	 */
+	public void commit() throws IOException {
+		this.fileChannel.close();
+		Files.move(this.temporaryPath, this.target, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		this.committed = true;
+	}
+
+	@Override
+	public void close() {
+		if (this.committed) {
+			return;
+		}
+		try {
+			this.fileChannel.close();
+			Files.deleteIfExists(this.temporaryPath);
+		} catch (IOException e) {
+			logger.warn("Cannot delete temporary file {}: {}", this.temporaryPath, e.getMessage());
+		}
+	}
+}
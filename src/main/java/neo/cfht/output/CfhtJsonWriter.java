@@ -0,0 +1,54 @@
+package neo.cfht.output;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import neo.cfht.models.EphemerisTable;
+
+/**
+ * Write the CFHT JSON document of an ephemeris table point by point
+ */
+public class CfhtJsonWriter {
+
+	public static final int MJD_DECIMALS = 12;
+	public static final int DEGREES_DECIMALS = 7;
+
+	private CfhtJsonWriter() {
+	}
+
+	/**
+	 * Write the document (without end of line after the closing brace)
+	 */
+	public static void write(EphemerisTable ephemerides, Writer writer) throws IOException {
+		writer.write("{\n  \"moving_target\": {\n    \"ephemeris_point\": [");
+		if (ephemerides.isEmpty()) {
+			writer.write("]\n  }\n}");
+			return;
+		}
+		StringBuilder sb = new StringBuilder(128);
+		for (int row=0; row<ephemerides.size(); row++) {
+			sb.setLength(0);
+			sb.append(row == 0 ? "\n      {\n        \"mjd\": " : ",\n      {\n        \"mjd\": ");
+			FixedDecimalFormatter.append(sb, ephemerides.getMjd(row), MJD_DECIMALS);
+			sb.append(",\n        \"ra\": ");
+			FixedDecimalFormatter.append(sb, ephemerides.getRa(row), DEGREES_DECIMALS);
+			sb.append(",\n        \"dec\": ");
+			FixedDecimalFormatter.append(sb, ephemerides.getDec(row), DEGREES_DECIMALS);
+			sb.append("\n      }");
+			writer.append(sb);
+		}
+		writer.write("\n    ]\n  }\n}");
+	}
+
+	public static String toString(EphemerisTable ephemerides) {
+		StringWriter writer = new StringWriter();
+		try {
+			write(ephemerides, writer);
+		} catch (IOException e) {
+			// A StringWriter doesn't throw
+			throw new IllegalStateException(e);
+		}
+		return writer.toString();
+	}
+}
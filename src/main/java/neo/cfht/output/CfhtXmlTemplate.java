@@ -0,0 +1,67 @@
+package neo.cfht.output;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+import neo.cfht.models.EphemerisTable;
+import neo.exceptions.NeoSerializationException;
+import neo.utils.UtilsResources;
+
+/**
+ * The CFHT XML document with the header and the footer encoded once
+ */
+public class CfhtXmlTemplate {
+
+	public static final String RESOURCE_HEADER = "/xml/cfht_template_header.xml";
+	public static final String RESOURCE_FOOTER = "/xml/cfht_template_footer.xml";
+
+	private final Charset charset;
+	private final ByteBuffer header;
+	/** End of line of the last CFHT line and footer */
+	private final ByteBuffer footer;
+	private final ByteBuffer endOfLine;
+
+	public CfhtXmlTemplate(String header, String footer, Charset charset) {
+		this.charset = charset;
+		this.header = ByteBuffer.wrap(header.getBytes(charset)).asReadOnlyBuffer();
+		this.footer = ByteBuffer.wrap(("\n" + footer).getBytes(charset)).asReadOnlyBuffer();
+		this.endOfLine = ByteBuffer.wrap(System.lineSeparator().getBytes(charset)).asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return The template of the resources, encoded with the default charset (as PrintWriter does)
+	 */
+	public static CfhtXmlTemplate load() throws NeoSerializationException {
+		return new CfhtXmlTemplate(UtilsResources.getResourceAsString(RESOURCE_HEADER),
+				UtilsResources.getResourceAsString(RESOURCE_FOOTER), Charset.defaultCharset());
+	}
+
+	/**
+	 * @return The bytes of the document followed by an end of line (e.g. to be hashed before being
+	 * written)
+	 */
+	public ByteBuffer[] toBuffers(EphemerisTable ephemerides) {
+		return new ByteBuffer[] {
+				this.header.duplicate(),
+				encode(ephemerides),
+				this.footer.duplicate(),
+				this.endOfLine.duplicate() };
+	}
+
+	/**
+	 * @return The document, without end of line (e.g. to be sent inline)
+	 */
+	public String render(EphemerisTable ephemerides) {
+		CharSequence cfhtLines = ephemerides.getCFHTLines();
+		StringBuilder sb = new StringBuilder(this.header.remaining() + cfhtLines.length() + this.footer.remaining());
+		sb.append(this.charset.decode(this.header.duplicate()));
+		sb.append(cfhtLines);
+		sb.append(this.charset.decode(this.footer.duplicate()));
+		return sb.toString();
+	}
+
+	private ByteBuffer encode(EphemerisTable ephemerides) {
+		return this.charset.encode(CharBuffer.wrap(ephemerides.getCFHTLines()));
+	}
+}
@@ -0,0 +1,132 @@
+package neo.cfht.output;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Format a double with a fixed number of decimals as BigDecimal.setScale(scale, HALF_UP) does
+ */
+public class FixedDecimalFormatter {
+
+	private static final long[] POWERS_OF_TEN = new long[19];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i=1; i<POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = 10*POWERS_OF_TEN[i-1];
+		}
+	}
+	/** Above this value, the ULP of the scaled value is too large for the arithmetic path */
+	private static final double ARITHMETIC_LIMIT = 0x1p49;
+	/** BigDecimal.toString switches to the scientific notation below this adjusted exponent */
+	private static final int SCIENTIFIC_EXPONENT = -6;
+
+	private FixedDecimalFormatter() {
+	}
+
+	/**
+	 * @param scale The number of decimals (0 to 18)
+	 * @throws NumberFormatException if the value is NaN or infinite (as BigDecimal.valueOf)
+	 */
+	public static StringBuilder append(StringBuilder sb, double value, int scale) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new NumberFormatException("Infinite or NaN");
+		}
+		if ( (scale < 0) || (scale >= POWERS_OF_TEN.length) ) {
+			throw new IllegalArgumentException("Unsupported scale: " + scale);
+		}
+		double absolute = Math.abs(value);
+		double scaled = absolute * POWERS_OF_TEN[scale];
+		if (scaled < ARITHMETIC_LIMIT) {
+			double floor = Math.floor(scaled);
+			double fraction = scaled - floor;
+			double margin = 4 * Math.ulp(scaled) + Math.ulp(absolute) * POWERS_OF_TEN[scale];
+			if (Math.abs(fraction - 0.5) > margin) {
+				long unscaled = (long) floor + (fraction > 0.5 ? 1 : 0);
+				return layout(sb, value < 0, unscaled, scale);
+			}
+		}
+		return appendFromDigits(sb, value, scale);
+	}
+
+	public static String format(double value, int scale) {
+		return append(new StringBuilder(24), value, scale).toString();
+	}
+
+	/**
+	 * Round the digits of Double.toString (what BigDecimal.valueOf parses)
+	 */
+	private static StringBuilder appendFromDigits(StringBuilder sb, double value, int scale) {
+		String representation = Double.toString(value);
+		boolean negative = representation.charAt(0) == '-';
+		int exponentIndex = representation.indexOf('E');
+		int mantissaEnd = exponentIndex < 0 ? representation.length() : exponentIndex;
+		int exponent = exponentIndex < 0 ? 0
+				: Integer.parseInt(representation, exponentIndex+1, representation.length(), 10);
+		int pointIndex = representation.indexOf('.');
+		int mantissaStart = negative ? 1 : 0;
+		// Number of digits before the decimal point once the exponent is applied
+		int integerDigits = pointIndex - mantissaStart + exponent;
+		// Number of digits of the mantissa making the unscaled value
+		int keptDigits = integerDigits + scale;
+		if (keptDigits > 18) {
+			return appendWithBigDecimal(sb, value, scale);
+		}
+		long unscaled = 0;
+		int roundingDigit = 0;
+		int digitIndex = 0;
+		for (int i=mantissaStart; i<mantissaEnd; i++) {
+			char c = representation.charAt(i);
+			if (c == '.') {
+				continue;
+			}
+			if (digitIndex < keptDigits) {
+				unscaled = 10*unscaled + (c - '0');
+			} else if (digitIndex == keptDigits) {
+				roundingDigit = c - '0';
+			}
+			digitIndex++;
+		}
+		for (int i=digitIndex; i<keptDigits; i++) {
+			unscaled = 10*unscaled;
+		}
+		if (roundingDigit >= 5) {
+			unscaled++;
+		}
+		return layout(sb, negative, unscaled, scale);
+	}
+
+	private static StringBuilder appendWithBigDecimal(StringBuilder sb, double value, int scale) {
+		return sb.append(BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).toString());
+	}
+
+	/**
+	 * Layout of BigDecimal.toString for a non negative unscaled value and a positive scale
+	 */
+	static StringBuilder layout(StringBuilder sb, boolean negative, long unscaled, int scale) {
+		if (negative && (unscaled != 0)) {
+			sb.append('-');
+		}
+		int start = sb.length();
+		sb.append(unscaled);
+		int digitsCount = sb.length() - start;
+		if (scale == 0) {
+			return sb;
+		}
+		int adjustedExponent = digitsCount - 1 - scale;
+		if (adjustedExponent >= SCIENTIFIC_EXPONENT) {
+			if (digitsCount > scale) {
+				sb.insert(sb.length() - scale, '.');
+			} else {
+				sb.insert(start, "0.");
+				for (int i=digitsCount; i<scale; i++) {
+					sb.insert(start + 2, '0');
+				}
+			}
+			return sb;
+		}
+		if (digitsCount > 1) {
+			sb.insert(start + 1, '.');
+		}
+		return sb.append('E').append(adjustedExponent);
+	}
+}
@@ -0,0 +1,249 @@
+package neo.cfht.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hash (SHA-256) and size of the files of the output directory, as written by the previous runs
+ */
+public class OutputManifest {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(OutputManifest.class);
+
+	public static final String FILE_NAME = ".manifest";
+
+	private static class Entry {
+		private final String hash;
+		private final long size;
+
+		Entry(String hash, long size) {
+			this.hash = hash;
+			this.size = size;
+		}
+	}
+
+	private final Path directory;
+	private final Map<String, Entry> entries;
+	private final AtomicInteger touchedCount;
+	private final AtomicInteger unchangedCount;
+
+	private OutputManifest(Path directory) {
+		this.directory = directory;
+		this.entries = new ConcurrentHashMap<>();
+		this.touchedCount = new AtomicInteger();
+		this.unchangedCount = new AtomicInteger();
+	}
+
+	/**
+	 * @return The manifest of the directory (empty if there is none or it cannot be read)
+	 */
+	public static OutputManifest load(Path directory) {
+		OutputManifest outputManifest = new OutputManifest(directory);
+		Path path = directory.resolve(FILE_NAME);
+		try {
+			for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+				String[] fields = line.split(" ", 3);
+				if (fields.length == 3) {
+					outputManifest.entries.put(fields[2], new Entry(fields[0], Long.parseLong(fields[1])));
+				}
+			}
+			logger.debug("{} entries in {}", outputManifest.entries.size(), path);
+		} catch (NoSuchFileException e) {
+			logger.debug("No manifest {}", path);
+		} catch (IOException | NumberFormatException e) {
+			logger.warn("Cannot read the manifest {} (all the files will be written): {}", path, e.getMessage());
+			outputManifest.entries.clear();
+		}
+		return outputManifest;
+	}
+
+	public Path getDirectory() {
+		return this.directory;
+	}
+	/**
+	 * @return The number of files written (created or changed) since the manifest was loaded
+	 */
+	public int getTouchedCount() {
+		return this.touchedCount.get();
+	}
+	/**
+	 * @return The number of files left untouched since the manifest was loaded
+	 */
+	public int getUnchangedCount() {
+		return this.unchangedCount.get();
+	}
+
+	public static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static String toHex(byte[] digest) {
+		StringBuilder sb = new StringBuilder(2*digest.length);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return true (and counted as unchanged) if the target on disk already has that content
+	 */
+	public boolean isUnchanged(Path target, String hash, long size) {
+		Entry entry = this.entries.get(target.getFileName().toString());
+		if ( (entry == null) || !entry.hash.equals(hash) || (entry.size != size) ) {
+			return false;
+		}
+		try {
+			if (Files.size(target) != size) {
+				return false;
+			}
+		} catch (IOException e) {
+			// Deleted since
+			return false;
+		}
+		this.unchangedCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Record the content of a target which was just written (and count it as touched)
+	 */
+	public void record(Path target, String hash, long size) {
+		this.entries.put(target.getFileName().toString(), new Entry(hash, size));
+		this.touchedCount.incrementAndGet();
+	}
+
+	/**
+	 * Delete a target and its entry (e.g. the file of a pointing which is no longer requested)
+	 *
+	 * @return true if the target existed
+	 */
+	public boolean delete(Path target) throws IOException {
+		this.entries.remove(target.getFileName().toString());
+		if (Files.deleteIfExists(target)) {
+			this.touchedCount.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Write the content to the target (atomically) unless it is unchanged
+	 *
+	 * @return true if the target was written
+	 */
+	public boolean write(Path target, ByteBuffer... buffers) throws IOException {
+		MessageDigest digest = newDigest();
+		long size = 0;
+		for (ByteBuffer buffer : buffers) {
+			size += buffer.remaining();
+			digest.update(buffer.duplicate());
+		}
+		String hash = toHex(digest.digest());
+		if (isUnchanged(target, hash, size)) {
+			return false;
+		}
+		try (AtomicFile atomicFile = AtomicFile.open(target)) {
+			atomicFile.write(buffers);
+			atomicFile.commit();
+		}
+		record(target, hash, size);
+		return true;
+	}
+
+	/**
+	 * Content written to a channel
+	 */
+	@FunctionalInterface
+	public interface Content {
+		void writeTo(WritableByteChannel channel) throws IOException;
+	}
+
+	/**
+	 * Stream the content to a temporary file while hashing it, then move it to the target unless
+	 * it is unchanged (the temporary file is dropped then)
+	 *
+	 * @return true if the target was written
+	 */
+	public boolean write(Path target, Content content) throws IOException {
+		try (AtomicFile atomicFile = AtomicFile.open(target)) {
+			DigestChannel channel = new DigestChannel(atomicFile.getChannel());
+			content.writeTo(channel);
+			String hash = toHex(channel.digest.digest());
+			if (isUnchanged(target, hash, channel.size)) {
+				return false;
+			}
+			atomicFile.commit();
+			record(target, hash, channel.size);
+			return true;
+		}
+	}
+
+	/**
+	 * Hash what is written to the channel
+	 */
+	private static class DigestChannel implements WritableByteChannel {
+		private final WritableByteChannel channel;
+		private final MessageDigest digest;
+		private long size;
+
+		DigestChannel(WritableByteChannel channel) {
+			this.channel = channel;
+			this.digest = newDigest();
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			ByteBuffer written = src.duplicate();
+			int count = this.channel.write(src);
+			written.limit(written.position() + count);
+			this.digest.update(written);
+			this.size += count;
+			return count;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return this.channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+
+	/**
+	 * Write the manifest (atomically)
+	 */
+	public synchronized void save() throws IOException {
+		try (AtomicFile atomicFile = AtomicFile.open(this.directory.resolve(FILE_NAME))) {
+			Writer writer = Channels.newWriter(atomicFile.getChannel(), StandardCharsets.UTF_8);
+			for (Map.Entry<String, Entry> entry : new TreeMap<>(this.entries).entrySet()) {
+				writer.write(entry.getValue().hash + " " + entry.getValue().size + " " + entry.getKey() + "\n");
+			}
+			writer.flush();
+			atomicFile.commit();
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package neo.cfht.requesters;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import neo.cfht.models.EphemerisTable;
+import neo.cfht.models.SmallBodyRequest;
+
+/**
+ * Try an ordered list of requesters for the same object and keep the first one which succeeds
+ */
+public class FallbackRequester implements IRequester {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(FallbackRequester.class);
+
+	private SmallBodyRequest smallBodyRequest;
+	@Override
+	public SmallBodyRequest getSmallBodyRequest() {
+		return this.smallBodyRequest;
+	}
+
+	private List<IRequester> candidates;
+	public List<IRequester> getCandidates() {
+		return this.candidates;
+	}
+
+	/** The requester which answered (null until one did) */
+	private IRequester selected;
+
+	public FallbackRequester(SmallBodyRequest smallBodyRequest, List<IRequester> candidates) {
+		this.smallBodyRequest = smallBodyRequest;
+		this.candidates = candidates;
+	}
+
+	@Override
+	public IRequester call() throws Exception {
+		return fetch(Runnable::run).join();
+	}
+
+	@Override
+	public CompletableFuture<IRequester> fetch(Executor executor) {
+		return fetch(executor, 0);
+	}
+
+	private CompletableFuture<IRequester> fetch(Executor executor, int index) {
+		if (index >= this.candidates.size()) {
+			logger.warn("No source knows [{}] (tried: {})", this.smallBodyRequest.getDesignation(),
+					this.candidates.stream()
+					.map(candidate -> candidate.getClass().getSimpleName())
+					.collect(Collectors.joining(", ")));
+			return CompletableFuture.completedFuture(this);
+		}
+		IRequester candidate = this.candidates.get(index);
+		return candidate.fetch(executor).thenCompose(answered -> {
+			if (candidate.isRequestSuccessful()) {
+				this.selected = candidate;
+				logger.debug("[{}] answered by {}", this.smallBodyRequest.getDesignation(),
+						candidate.getClass().getSimpleName());
+				return CompletableFuture.completedFuture(this);
+			}
+			logger.debug("[{}] not answered by {}: trying next source", this.smallBodyRequest.getDesignation(),
+					candidate.getClass().getSimpleName());
+			return fetch(executor, index+1);
+		});
+	}
+
+	@Override
+	public boolean isRequestSuccessful() {
+		return (this.selected != null) && this.selected.isRequestSuccessful();
+	}
+
+	@Override
+	public EphemerisTable getEphemerides() {
+		return this.selected.getEphemerides();
+	}
+
+	@Override
+	public EphemerisTable getOutputEphemerides() {
+		return this.selected.getOutputEphemerides();
+	}
+
+	@Override
+	public String getCfhtXML() {
+		return this.selected.getCfhtXML();
+	}
+
+	@Override
+	public String getSuffix() {
+		return this.selected.getSuffix();
+	}
+
+	@Override
+	public String getOutputFileNameXML() {
+		return this.selected.getOutputFileNameXML();
+	}
+	@Override
+	public void setOutputFileNameXML(String outputFileNameXML) {
+		this.selected.setOutputFileNameXML(outputFileNameXML);
+	}
+	@Override
+	public String getOutputFileNameJSON() {
+		return this.selected.getOutputFileNameJSON();
+	}
+	@Override
+	public void setOutputFileNameJSON(String outputFileNameJSON) {
+		this.selected.setOutputFileNameJSON(outputFileNameJSON);
+	}
+}
@@ -1,22 +1,36 @@
 package neo.cfht.requesters;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-
-import neo.cfht.models.Ephemeris;
+import neo.cfht.app.CFHTEphemeridesConfiguration;
+import neo.cfht.http.BodySink;
+import neo.cfht.http.FileBodySink;
+import neo.cfht.http.ResponseCache;
+import neo.cfht.http.ResponseCache.CacheKey;
+import neo.cfht.models.DesignationType;
+import neo.cfht.models.EphemerisInterpolator;
+import neo.cfht.models.EphemerisTable;
+import neo.cfht.models.PointingOffset;
 import neo.cfht.models.SmallBodyRequest;
+import neo.cfht.output.CfhtJsonWriter;
+import neo.cfht.output.OutputManifest;
 import neo.exceptions.NeoIOException;
-import neo.resources.PsNeoResources;
 import neo.utils.UtilsOs;
 
 public interface IRequester extends Callable<IRequester> {
@@ -25,70 +39,218 @@ public interface IRequester extends Callable<IRequester> {
 
 	boolean isRequestSuccessful();
 	
+	/**
+	 * Route a designation to the sources which can plausibly know it.
+	 * 
+	 * NEOCP candidates go to JPL Scout then, if Scout doesn't know them, to the MPC NEOCP; known objects
+	 * only go to the MPC ephemeris service; anything else tries the three sources in turn.
+	 * With -allSources, every source is requested in parallel (and all answers are written).
+	 */
 	public static List<IRequester> getRequesters(SmallBodyRequest smallBodyRequest) {
 		List<IRequester> requesters = new ArrayList<>();
-		requesters.add(new JplNeoRequester(smallBodyRequest));
-		requesters.add(new MpcKnownRequester(smallBodyRequest));
-		requesters.add(new MpcNeoRequester(smallBodyRequest));
+		if (smallBodyRequest.getCFHTEphemeridesConfiguration().isAllSources()) {
+			requesters.add(new JplNeoRequester(smallBodyRequest));
+			requesters.add(new MpcKnownRequester(smallBodyRequest));
+			requesters.add(new MpcNeoRequester(smallBodyRequest));
+			return requesters;
+		}
+		DesignationType designationType = smallBodyRequest.getDesignationType();
+		logger.debug("[{}] classified as {}", smallBodyRequest.getDesignation(), designationType);
+		if (designationType == DesignationType.NEOCP) {
+			requesters.add(new FallbackRequester(smallBodyRequest, List.of(
+					new JplNeoRequester(smallBodyRequest),
+					new MpcNeoRequester(smallBodyRequest))));
+		} else if (designationType.isKnownObject()) {
+			requesters.add(new MpcKnownRequester(smallBodyRequest));
+		} else {
+			requesters.add(new FallbackRequester(smallBodyRequest, List.of(
+					new MpcKnownRequester(smallBodyRequest),
+					new JplNeoRequester(smallBodyRequest),
+					new MpcNeoRequester(smallBodyRequest))));
+		}
 		return requesters;
 	}
 	
-	List<Ephemeris> getEphemerides();
-	
-	String getCfhtXML();
-	
+	/**
+	 * Request the ephemerides without blocking the calling thread
+	 *
+	 * @param executor The executor of the stages which may block (cache reads, parsing of a stream)
+	 * @return A future completed with this requester once it is answered (successfully or not)
+	 */
+	default CompletableFuture<IRequester> fetch(Executor executor) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return call();
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * @return The sinks of a downloaded response: the trouble file and the cache entry
+	 * @throws IOException if a sink cannot be created (e.g. -cacheOnly)
+	 */
+	static List<BodySink> newSinks(Path troublePath, OutputManifest outputManifest, ResponseCache responseCache,
+			CacheKey cacheKey) throws IOException {
+		BodySink cacheSink = responseCache.newEntry(cacheKey);
+		try {
+			return List.of(FileBodySink.forTrouble(troublePath, outputManifest), cacheSink);
+		} catch (IOException e) {
+			cacheSink.abort();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The exception wrapped by the stages of a future
+	 */
+	static Throwable unwrap(Throwable throwable) {
+		Throwable cause = throwable;
+		while ( ( (cause instanceof CompletionException) || (cause instanceof ExecutionException)
+				|| (cause instanceof UncheckedIOException) ) && (cause.getCause() != null) ) {
+			cause = cause.getCause();
+		}
+		return cause;
+	}
+
+	EphemerisTable getEphemerides();
+
+	/**
+	 * @return The ephemerides to be written ({@link #interpolateEphemerides()}), computed once per
+	 * fetch for the XML, the JSON and the files of every pointing
+	 */
+	EphemerisTable getOutputEphemerides();
+
+	/**
+	 * @return The ephemerides of the source, or interpolated every -interval from the coarse grid
+	 * requested with -coarseInterval (the interpolation error is estimated and logged)
+	 */
+	default EphemerisTable interpolateEphemerides() {
+		CFHTEphemeridesConfiguration cec = getSmallBodyRequest().getCFHTEphemeridesConfiguration();
+		if (!cec.isInterpolating()) {
+			return getEphemerides();
+		}
+		EphemerisInterpolator ephemerisInterpolator = new EphemerisInterpolator(cec.getIntervalMinutes());
+		double errorArcsec = ephemerisInterpolator.estimateErrorArcsec(getEphemerides());
+		if (errorArcsec > cec.getInterpolationToleranceArcsec()) {
+			logger.warn("[{}] Interpolated positions may be off by up to {} arcsec: decrease -coarseInterval",
+					getSmallBodyRequest().getDesignation(), String.format("%.2f", errorArcsec));
+		} else {
+			logger.debug("[{}] Interpolation error below {} arcsec", getSmallBodyRequest().getDesignation(),
+					String.format("%.3f", errorArcsec));
+		}
+		return ephemerisInterpolator.interpolate(getEphemerides());
+	}
+
+	default String getCfhtXML() {
+		return getSmallBodyRequest().getCFHTEphemeridesConfiguration().getCfhtXML(getOutputEphemerides());
+	}
 	
 	default String getCfhtJSON() {
-		JsonArray ephemerisPointsJAB = new JsonArray();
-		getEphemerides().forEach(ephemeris -> {
-			ephemerisPointsJAB.add(ephemeris.toJSON());
-		});
-		JsonObject ephemerisPoint = new JsonObject();
-		ephemerisPoint.add("ephemeris_point", ephemerisPointsJAB);
-		JsonObject jsonObject = new JsonObject();
-		jsonObject.add("moving_target", ephemerisPoint);
-		return PsNeoResources.toJson(jsonObject,true);
+		return CfhtJsonWriter.toString(getOutputEphemerides());
 	}
 
-	default void write() throws NeoIOException {
+	/**
+	 * Write the files of each pointing: -C000 (the ephemerides, or the -east/-north pointing), then
+	 * -C001... for the -offset and -ditherGrid pointings. The files of the following pointings,
+	 * written by earlier runs with more pointings, are deleted.
+	 *
+	 * @return The files (XML and JSON of each pointing)
+	 */
+	default List<String> write() throws NeoIOException {
+		List<String> files = new ArrayList<>();
 		if (isRequestSuccessful()) {
-			writeXML();
-			writeJson();
+			EphemerisTable ephemerides = getOutputEphemerides();
+			List<PointingOffset> pointingOffsets = getSmallBodyRequest().getCFHTEphemeridesConfiguration()
+					.getPointingOffsets();
+			for (int pointing=0; pointing<pointingOffsets.size(); pointing++) {
+				EphemerisTable pointingEphemerides = pointingOffsets.get(pointing).apply(ephemerides);
+				files.add(writeXML(pointingEphemerides, pointing));
+				files.add(writeJson(pointingEphemerides, pointing));
+			}
+			for (int pointing=pointingOffsets.size(); deleteStalePointing(pointing); pointing++) {
+				// Until the first pointing without file
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * @return true if the pointing had files (from an earlier run), now deleted
+	 */
+	default boolean deleteStalePointing(int pointing) throws NeoIOException {
+		OutputManifest outputManifest = getSmallBodyRequest().getCFHTEphemeridesConfiguration().getOutputManifest();
+		boolean deleted = false;
+		try {
+			for (String extension : List.of("xml", "json")) {
+				String outputFileName = getOutputFileName(pointing, extension);
+				if (outputManifest.delete(Paths.get(outputFileName))) {
+					logger.info("Deleted output file of a pointing no longer requested: {}", outputFileName);
+					deleted = true;
+				}
+			}
+		} catch (IOException e) {
+			throw new NeoIOException(e);
 		}
+		return deleted;
 	}
 
 	SmallBodyRequest getSmallBodyRequest();
 	String getSuffix();
-	default String writeXML() throws NeoIOException {
+
+	/**
+	 * @return The output file of a pointing, e.g. out/P109isj-C001.neojpl.xml
+	 */
+	default String getOutputFileName(int pointing, String extension) {
 		SmallBodyRequest smallBodyRequest = getSmallBodyRequest();
-		Path outputDirectory = smallBodyRequest.getCFHTEphemeridesConfiguration().getOutputDirectory();
-		setOutputFileNameXML(outputDirectory.resolve(
-				smallBodyRequest.getNormalizedDesignation() + "-C000." + getSuffix() + ".xml").toString());
-		UtilsOs.mkdirs(outputDirectory);
-		try (PrintWriter writer = new PrintWriter(getOutputFileNameXML())) {
-			logger.info("Writing output XML file: {}", getOutputFileNameXML());
-			writer.println(getCfhtXML());
-			writer.close();
+		return smallBodyRequest.getCFHTEphemeridesConfiguration().getOutputDirectory().resolve(String.format(
+				"%s-C%03d.%s.%s", smallBodyRequest.getNormalizedDesignation(), pointing, getSuffix(), extension))
+				.toString();
+	}
+
+	default String writeXML(EphemerisTable ephemerides, int pointing) throws NeoIOException {
+		CFHTEphemeridesConfiguration cec = getSmallBodyRequest().getCFHTEphemeridesConfiguration();
+		String outputFileName = getOutputFileName(pointing, "xml");
+		if (pointing == 0) {
+			setOutputFileNameXML(outputFileName);
+		}
+		UtilsOs.mkdirs(cec.getOutputDirectory());
+		try {
+			if (cec.getOutputManifest().write(Paths.get(outputFileName),
+					cec.getCfhtXmlTemplate().toBuffers(ephemerides))) {
+				logger.info("Wrote output XML file: {}", outputFileName);
+			} else {
+				logger.info("Output XML file unchanged: {}", outputFileName);
+			}
 		} catch (IOException e) {
 			throw new NeoIOException(e);
 		}
-		return getOutputFileNameXML();
+		return outputFileName;
 	}
 	
-	default String writeJson() throws NeoIOException {
-		SmallBodyRequest smallBodyRequest = getSmallBodyRequest();
-		Path outputDirectory = smallBodyRequest.getCFHTEphemeridesConfiguration().getOutputDirectory();
-		setOutputFileNameJSON(outputDirectory.resolve(
-				smallBodyRequest.getNormalizedDesignation() + "-C000." + getSuffix() + ".json").toString());
-		UtilsOs.mkdirs(outputDirectory);
-		try (PrintWriter writer = new PrintWriter(getOutputFileNameJSON())) {
-			logger.info("Writing output JSON file: {}", getOutputFileNameJSON());
-			writer.println(getCfhtJSON());
-			writer.close();
+	default String writeJson(EphemerisTable ephemerides, int pointing) throws NeoIOException {
+		CFHTEphemeridesConfiguration cec = getSmallBodyRequest().getCFHTEphemeridesConfiguration();
+		String outputFileName = getOutputFileName(pointing, "json");
+		if (pointing == 0) {
+			setOutputFileNameJSON(outputFileName);
+		}
+		UtilsOs.mkdirs(cec.getOutputDirectory());
+		try {
+			if (cec.getOutputManifest().write(Paths.get(outputFileName), channel -> {
+				Writer writer = Channels.newWriter(channel, Charset.defaultCharset());
+				CfhtJsonWriter.write(ephemerides, writer);
+				writer.write(System.lineSeparator());
+				writer.flush();
+			})) {
+				logger.info("Wrote output JSON file: {}", outputFileName);
+			} else {
+				logger.info("Output JSON file unchanged: {}", outputFileName);
+			}
 		} catch (IOException e) {
 			throw new NeoIOException(e);
 		}
-		return getOutputFileNameJSON();
+		return outputFileName;
 	}
 	
 	String getOutputFileNameXML();
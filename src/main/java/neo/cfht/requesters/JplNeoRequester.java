@@ -1,30 +1,32 @@
 package neo.cfht.requesters;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-
 import neo.cfht.app.CFHTEphemeridesConfiguration;
-import neo.cfht.models.CFHTFormatter;
-import neo.cfht.models.Ephemeris;
+import neo.cfht.http.BodySink;
+import neo.cfht.http.HttpService;
+import neo.cfht.http.ResponseCache;
+import neo.cfht.http.ResponseCache.CacheKey;
+import neo.cfht.http.TeeInputStream;
+import neo.cfht.models.EphemerisTable;
+import neo.cfht.models.NightWindow;
 import neo.cfht.models.SmallBodyRequest;
-import neo.resources.PsNeoResources;
-import neo.utils.UtilsFiles;
 
 /**
  * Request NEO Candidate from JPL Scout 
@@ -36,10 +38,11 @@ public class JplNeoRequester implements IRequester {
 	/** Logging */
 	private final static Logger logger = LoggerFactory.getLogger(JplNeoRequester.class);
 
-	public static final String FORMAT_JPL_SCOUT_URL = "https://ssd-api.jpl.nasa.gov/scout.api?"
-			+ "tdes=%s&eph-start=%sT04:00:00&eph-stop=%sT18:00:00&eph-step=%sm&obs-code=%s&n-orbits=%d";
+	public static final String FORMAT_JPL_SCOUT_URL = "%s/scout.api?"
+			+ "tdes=%s&eph-start=%s&eph-stop=%s&eph-step=%sm&obs-code=%s&n-orbits=%d";
+	private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
-	private static final String SUFFIX = "neojpl";
+	public static final String SUFFIX = "neojpl";
 	@Override
 	public String getSuffix() {
 		return JplNeoRequester.SUFFIX;
@@ -51,13 +54,22 @@ public class JplNeoRequester implements IRequester {
 		return this.smallBodyRequest;
 	}
 
-	private List<String> cfhtEphemerides;
-	private List<Ephemeris> ephemerides;
+	private EphemerisTable ephemerides;
 	@Override
-	public List<Ephemeris> getEphemerides() {
+	public EphemerisTable getEphemerides() {
 		return this.ephemerides;
 	}
 
+	/** Computed once per fetch */
+	private EphemerisTable outputEphemerides;
+	@Override
+	public synchronized EphemerisTable getOutputEphemerides() {
+		if (this.outputEphemerides == null) {
+			this.outputEphemerides = interpolateEphemerides();
+		}
+		return this.outputEphemerides;
+	}
+
 	private boolean requestSuccessful;
 
 	private String outputFileNameXML;
@@ -75,68 +87,116 @@ public class JplNeoRequester implements IRequester {
 
 	@Override
 	public IRequester call() throws Exception {
+		return fetch(Runnable::run).join();
+	}
+
+	/**
+	 * The response is parsed on the executor while it is read (the parsing thread waits for the
+	 * bytes, but the bulkhead of Scout keeps the number of such threads low)
+	 */
+	@Override
+	public CompletableFuture<IRequester> fetch(Executor executor) {
 		logger.debug("Requesting {}", this.smallBodyRequest.getDesignation());
-		try {
-			String encodedDesignation = URLEncoder.encode(this.smallBodyRequest.getDesignation(), StandardCharsets.US_ASCII);
-			CFHTEphemeridesConfiguration cec = this.smallBodyRequest.getCFHTEphemeridesConfiguration();
-			HttpClient client = HttpClient.newHttpClient();
-			HttpRequest request = HttpRequest.newBuilder()
-					.uri(URI.create(String.format(FORMAT_JPL_SCOUT_URL, 
-							encodedDesignation,
-							cec.getDate(), cec.getDate(),
-							cec.getIntervalMinutes(),
-							cec.getObservatory(),
-							cec.getNOrbits())))
-					.build();
-			logger.debug("Sending request for {}", this.smallBodyRequest.getDesignation());
-			HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
-			logger.debug("Got response for {}", this.smallBodyRequest.getDesignation());
-			this.requestSuccessful = true;
-			String body = response.body();
-			Path jplResponsePath = this.smallBodyRequest.getCFHTEphemeridesConfiguration()
-					.getOutputDirectory().resolve(String.format("%s-%s.jpl-response", 
-							CFHTEphemeridesConfiguration.PREFIX_TROUBLE,
-							this.smallBodyRequest.getDesignation()));
-			logger.info("Saving JPL HTTP response to {}", jplResponsePath);
-			UtilsFiles.saveWithBackup(jplResponsePath, body);
-			JsonObject jsonObject = JsonParser.parseString(body).getAsJsonObject();
-			logger.debug("response = {}", PsNeoResources.toJson(jsonObject,true));
-			this.cfhtEphemerides = new ArrayList<>();
-			this.ephemerides = new ArrayList<>();
-			JsonArray jaEph = jsonObject.get("eph").getAsJsonArray();
-			for (JsonElement ephemeris : jaEph) {
-				JsonObject jEphemeris = ephemeris.getAsJsonObject();
-				String time = jEphemeris.get("time").getAsString();
-				JsonObject jMedian = jEphemeris.get("median").getAsJsonObject();
-				double ra = jMedian.get("ra").getAsDouble();
-				double de = jMedian.get("dec").getAsDouble();
-				logger.debug("{}:{}:{}", time, ra, de);
-				this.cfhtEphemerides.add(String.format("%s|%s|%s|", 
-						time, CFHTFormatter.raForCFHT(ra), CFHTFormatter.deForCFHT(de)));
-				this.ephemerides.add(Ephemeris.buildJPL(time, ra, de));
+		ResponseCache responseCache = this.smallBodyRequest.getResponseCache();
+		CacheKey cacheKey = this.smallBodyRequest.getCacheKey(SUFFIX, this.smallBodyRequest.getObservingWindow());
+		CompletableFuture<EphemerisTable> answered;
+		if (responseCache.isUsable(cacheKey)) {
+			answered = CompletableFuture.supplyAsync(() -> {
+				try (InputStream inputStream = responseCache.open(cacheKey)) {
+					return parse(inputStream);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, executor);
+		} else {
+			answered = download(responseCache, cacheKey, executor);
+		}
+		return answered.handle((ephemerides, throwable) -> {
+			if (throwable != null) {
+				failed(IRequester.unwrap(throwable));
+				return this;
 			}
-		} catch (Exception e) {
-			if (this.smallBodyRequest.getCFHTEphemeridesConfiguration().isDebug()) {
-				logger.error("Exception caught while executing JplNeoRequester for object [{}] (this might be expected): {}",
-						this.smallBodyRequest.getDesignation(),
-						e.getMessage(), e);
-			} else {
-				logger.warn("JPL Scout doesn't seem to know the NEO candidate [{}] (this might be expected): {}",
-						this.smallBodyRequest.getDesignation(), e.getMessage());
-				logger.info("If you think that it is an issue, execute the same command line with '-d -useLogfile' "
-						+ "and send the generated log to someone who can help");
+			this.ephemerides = ephemerides;
+			this.outputEphemerides = null;
+			this.requestSuccessful = !ephemerides.isEmpty();
+			if (ephemerides.isEmpty()) {
+				logger.info("JPL Scout has no ephemerides for [{}] (this might be expected)",
+						this.smallBodyRequest.getDesignation());
 			}
-			logger.info("Marking request to JPL Scout as failed");
-			this.requestSuccessful = false;
+			logger.debug("Got {} ephemerides", this.ephemerides.size());
+			return this;
+		});
+	}
+
+	private void failed(Throwable e) {
+		if (this.smallBodyRequest.getCFHTEphemeridesConfiguration().isDebug()) {
+			logger.error("Exception caught while executing JplNeoRequester for object [{}] (this might be expected): {}",
+					this.smallBodyRequest.getDesignation(),
+					e.getMessage(), e);
+		} else {
+			logger.warn("JPL Scout doesn't seem to know the NEO candidate [{}] (this might be expected): {}",
+					this.smallBodyRequest.getDesignation(), e.getMessage());
+			logger.info("If you think that it is an issue, execute the same command line with '-d -useLogfile' "
+					+ "and send the generated log to someone who can help");
 		}
-		return this;
+		logger.info("Marking request to JPL Scout as failed");
+		this.requestSuccessful = false;
 	}
 
-	@Override
-	public String getCfhtXML() {
-		return this.smallBodyRequest.getCFHTEphemeridesConfiguration().getCfhtXML(this.cfhtEphemerides);
+	/**
+	 * Request the ephemerides, parsing the response while it is received
+	 */
+	private CompletableFuture<EphemerisTable> download(ResponseCache responseCache, CacheKey cacheKey,
+			Executor executor) {
+		String encodedDesignation = URLEncoder.encode(this.smallBodyRequest.getDesignation(), StandardCharsets.US_ASCII);
+		CFHTEphemeridesConfiguration cec = this.smallBodyRequest.getCFHTEphemeridesConfiguration();
+		HttpService httpService = this.smallBodyRequest.getHttpService();
+		// From 04:00 to 18:00 UT without observing window
+		NightWindow window = this.smallBodyRequest.getObservingWindow();
+		HttpRequest request = httpService.newRequestBuilder(URI.create(String.format(FORMAT_JPL_SCOUT_URL, 
+					cec.getJplBaseUrl(),
+					encodedDesignation,
+					window == null ? cec.getDate() + "T04:00:00" : window.formatStart(TIME_FORMATTER),
+					window == null ? cec.getDate() + "T18:00:00" : window.formatStop(TIME_FORMATTER),
+					cec.getRequestIntervalMinutes(),
+					cec.getObservatory(),
+					cec.getNOrbits())))
+				.build();
+		Path jplResponsePath = cec.getOutputDirectory().resolve(String.format("%s-%s.jpl-response", 
+				CFHTEphemeridesConfiguration.PREFIX_TROUBLE,
+				this.smallBodyRequest.getDesignation()));
+		List<BodySink> sinks;
+		try {
+			sinks = IRequester.newSinks(jplResponsePath, cec.getOutputManifest(), responseCache, cacheKey);
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		logger.info("Saving JPL HTTP response to {}", jplResponsePath);
+		logger.debug("Sending request for {}", this.smallBodyRequest.getDesignation());
+		return httpService.sendTeeingAsync(request, sinks).thenApplyAsync(response -> {
+			logger.debug("Got response for {}", this.smallBodyRequest.getDesignation());
+			try (TeeInputStream inputStream = response.body()) {
+				if (response.statusCode() >= 400) {
+					inputStream.drain();
+					responseCache.markNotFound(cacheKey);
+					HttpService.checkStatus(response);
+				}
+				EphemerisTable ephemerides = parse(inputStream);
+				inputStream.drain();
+				if (ephemerides.isEmpty()) {
+					responseCache.markNotFound(cacheKey);
+				}
+				return ephemerides;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor);
 	}
-	
+
+	private static EphemerisTable parse(InputStream inputStream) throws IOException {
+		return ScoutEphemerisReader.read(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+	}
+
 	@Override
 	public String getOutputFileNameXML() {
 		return this.outputFileNameXML;
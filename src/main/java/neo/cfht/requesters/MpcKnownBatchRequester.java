@@ -0,0 +1,139 @@
+package neo.cfht.requesters;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import neo.cfht.app.CFHTEphemeridesConfiguration;
+import neo.cfht.http.FileBodySink;
+import neo.cfht.http.HttpService;
+import neo.cfht.http.ResponseCache;
+import neo.cfht.models.SmallBodyRequest;
+
+/**
+ * Request several known objects at once from the MPC and hand each requester its part
+ */
+public class MpcKnownBatchRequester implements Callable<MpcKnownBatchRequester> {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(MpcKnownBatchRequester.class);
+
+	private List<MpcKnownRequester> requesters;
+	private int batchIndex;
+
+	public MpcKnownBatchRequester(List<MpcKnownRequester> requesters, int batchIndex) {
+		this.requesters = requesters;
+		this.batchIndex = batchIndex;
+	}
+
+	/**
+	 * @return The known objects requesters (direct or as fallback candidates) among the requesters
+	 */
+	public static List<MpcKnownRequester> getMpcKnownRequesters(IRequester requester) {
+		List<MpcKnownRequester> mpcKnownRequesters = new ArrayList<>();
+		if (requester instanceof MpcKnownRequester) {
+			mpcKnownRequesters.add((MpcKnownRequester) requester);
+		} else if (requester instanceof FallbackRequester) {
+			for (IRequester candidate : ((FallbackRequester) requester).getCandidates()) {
+				mpcKnownRequesters.addAll(getMpcKnownRequesters(candidate));
+			}
+		}
+		return mpcKnownRequesters;
+	}
+
+	/**
+	 * @param batchSize Maximum number of designations per request. Batching is disabled if lower than 2
+	 * @return The batches covering all the known objects requesters (empty if batching is useless)
+	 */
+	public static List<MpcKnownBatchRequester> getBatchRequesters(List<IRequester> requesters, int batchSize) {
+		List<MpcKnownRequester> mpcKnownRequesters = requesters.stream()
+				.flatMap(requester -> getMpcKnownRequesters(requester).stream())
+				.collect(Collectors.toList());
+		List<MpcKnownBatchRequester> batchRequesters = new ArrayList<>();
+		if ( (batchSize < 2) || (mpcKnownRequesters.size() < 2) ) {
+			return batchRequesters;
+		}
+		for (int start=0; start<mpcKnownRequesters.size(); start+=batchSize) {
+			batchRequesters.add(new MpcKnownBatchRequester(
+					mpcKnownRequesters.subList(start, Math.min(start+batchSize, mpcKnownRequesters.size())),
+					batchRequesters.size()));
+		}
+		return batchRequesters;
+	}
+
+	@Override
+	public MpcKnownBatchRequester call() throws Exception {
+		return fetch().join();
+	}
+
+	/**
+	 * @return A future completed once the lines of the batch are handed to the requesters (or the batch failed)
+	 */
+	public CompletableFuture<MpcKnownBatchRequester> fetch() {
+		CFHTEphemeridesConfiguration cec = this.requesters.get(0).getSmallBodyRequest()
+				.getCFHTEphemeridesConfiguration();
+		ResponseCache responseCache = cec.getResponseCache();
+		if (responseCache.getMode() == ResponseCache.Mode.CACHE_ONLY) {
+			return CompletableFuture.completedFuture(this);
+		}
+		// Objects with a usable cached response don't need to be requested
+		List<MpcKnownRequester> pendingRequesters = this.requesters.stream()
+				.filter(requester -> !responseCache.isUsable(requester.getSmallBodyRequest()
+						.getCacheKey(MpcKnownRequester.SUFFIX, cec.getNightWindow())))
+				.collect(Collectors.toList());
+		if (pendingRequesters.isEmpty()) {
+			return CompletableFuture.completedFuture(this);
+		}
+		List<String> designations = pendingRequesters.stream()
+				.map(requester -> requester.getSmallBodyRequest().getDesignation())
+				.collect(Collectors.toList());
+		logger.debug("Requesting batch {}: {}", this.batchIndex, designations);
+		HttpService httpService = cec.getHttpService();
+		HttpRequest request = httpService.newRequestBuilder(
+				MpcKnownRequester.buildURI(String.join("\n", designations), cec))
+				.build();
+		Path mpcResponsePath = cec.getOutputDirectory().resolve(String.format("%s-known-batch-%d.mpc-response",
+				CFHTEphemeridesConfiguration.PREFIX_TROUBLE, this.batchIndex));
+		MpcKnownDemultiplexer mpcKnownDemultiplexer = new MpcKnownDemultiplexer();
+		CompletableFuture<HttpResponse<Long>> answered;
+		try {
+			logger.info("Saving MPC HTTP response to {}", mpcResponsePath);
+			answered = httpService.sendLinesAsync(request, mpcKnownDemultiplexer,
+					List.of(FileBodySink.forTrouble(mpcResponsePath, cec.getOutputManifest())));
+		} catch (IOException e) {
+			answered = CompletableFuture.failedFuture(e);
+		}
+		return answered.handle((response, throwable) -> {
+			try {
+				if (throwable != null) {
+					throw IRequester.unwrap(throwable);
+				}
+				HttpService.checkStatus(response);
+				Map<String, List<String>> linesByDesignation = mpcKnownDemultiplexer.getLinesByDesignation(designations);
+				for (MpcKnownRequester requester : pendingRequesters) {
+					SmallBodyRequest smallBodyRequest = requester.getSmallBodyRequest();
+					List<String> lines = linesByDesignation.get(smallBodyRequest.getDesignation());
+					requester.setPrefetchedLines(lines);
+					if (lines != null) {
+						responseCache.put(smallBodyRequest.getCacheKey(MpcKnownRequester.SUFFIX, cec.getNightWindow()), String.join("\n", lines));
+					}
+				}
+				logger.info("Batch {}: {} of {} objects found in the MPC response (the others will be requested one by one)",
+						this.batchIndex, linesByDesignation.size(), designations.size());
+			} catch (Throwable e) {
+				logger.warn("Exception caught while executing batch {} of MpcKnownRequester: {}. Objects will be requested one by one",
+						this.batchIndex, e.getMessage());
+			}
+			return this;
+		});
+	}
+}
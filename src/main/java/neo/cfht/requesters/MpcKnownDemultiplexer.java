@@ -0,0 +1,142 @@
+package neo.cfht.requesters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import neo.cfht.http.LineSplitter.LineHandler;
+import neo.cfht.models.DesignationType;
+
+/**
+ * Split a multi-object response of the MPC ephemeris service into the lines of each object
+ */
+public class MpcKnownDemultiplexer implements LineHandler {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(MpcKnownDemultiplexer.class);
+
+	private static final Pattern HEADING_MATCH = Pattern.compile("<b>(.*?)</b>", Pattern.CASE_INSENSITIVE);
+	private static final Pattern TAG_MATCH = Pattern.compile("<[^>]*>");
+	private static final String PACKED_DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+	private final List<String> headings;
+	private final List<List<String>> sections;
+	private List<String> currentSection;
+	private boolean inPre;
+
+	public MpcKnownDemultiplexer() {
+		this.headings = new ArrayList<>();
+		this.sections = new ArrayList<>();
+	}
+
+	/**
+	 * @param body The mpeph2 response
+	 * @param designations The designations sent in the TextArea parameter
+	 * @return The ephemeris lines of each designation found in the response
+	 */
+	public static Map<String, List<String>> split(String body, List<String> designations) {
+		MpcKnownDemultiplexer mpcKnownDemultiplexer = new MpcKnownDemultiplexer();
+		for (String line : body.split("\n")) {
+			mpcKnownDemultiplexer.onLine(line);
+		}
+		return mpcKnownDemultiplexer.getLinesByDesignation(designations);
+	}
+
+	@Override
+	public void onLine(CharSequence charSequence) {
+		String line = charSequence.toString();
+		String lowerCase = line.toLowerCase();
+		if (!this.inPre) {
+			Matcher matcher = HEADING_MATCH.matcher(line);
+			if (matcher.find()) {
+				this.headings.add(TAG_MATCH.matcher(matcher.group(1)).replaceAll("").trim());
+				this.currentSection = new ArrayList<>();
+				this.sections.add(this.currentSection);
+			}
+		}
+		if (lowerCase.contains("<pre>")) {
+			this.inPre = true;
+		}
+		if ( (this.currentSection != null) && MpcKnownRequester.DATE_MATCH.matcher(line).matches() ) {
+			this.currentSection.add(line);
+		}
+		if (lowerCase.contains("</pre>")) {
+			this.inPre = false;
+		}
+	}
+
+	/**
+	 * @param designations The designations sent in the TextArea parameter
+	 * @return The ephemeris lines of each designation found in the lines received so far
+	 */
+	public Map<String, List<String>> getLinesByDesignation(List<String> designations) {
+		logger.debug("Sections found: {}", this.headings);
+		Map<String, List<String>> linesByDesignation = new HashMap<>();
+		for (String designation : designations) {
+			List<String> words = words(unpack(designation));
+			for (int iSection=0; iSection<this.sections.size(); iSection++) {
+				if (!this.sections.get(iSection).isEmpty()
+						&& containsSequence(words(this.headings.get(iSection)), words)) {
+					linesByDesignation.put(designation, this.sections.get(iSection));
+					break;
+				}
+			}
+			if (!linesByDesignation.containsKey(designation)) {
+				logger.debug("No section found for [{}] in the batched response", designation);
+			}
+		}
+		return linesByDesignation;
+	}
+
+	private static List<String> words(String text) {
+		return Arrays.stream(text.toLowerCase().replaceAll("[()]", " ").trim().split("\\s+"))
+				.filter(word -> !word.isEmpty())
+				.collect(Collectors.toList());
+	}
+
+	private static boolean containsSequence(List<String> words, List<String> sequence) {
+		if (sequence.isEmpty()) {
+			return false;
+		}
+		for (int start=0; start+sequence.size()<=words.size(); start++) {
+			if (words.subList(start, start+sequence.size()).equals(sequence)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The unpacked form of a packed provisional designation (e.g. 'K19Q12Z' to '2019 QZ12')
+	 *   or of a packed number (e.g. 'A1234' to '(101234)', '~0001' to '(620001)'), the designation
+	 *   itself otherwise
+	 */
+	static String unpack(String designation) {
+		String trimmed = designation.trim();
+		DesignationType designationType = DesignationType.classify(trimmed);
+		if (designationType == DesignationType.PACKED_NUMBERED) {
+			if (trimmed.charAt(0) == '~') {
+				long number = 0;
+				for (int i=1; i<trimmed.length(); i++) {
+					number = number*PACKED_DIGITS.length() + PACKED_DIGITS.indexOf(trimmed.charAt(i));
+				}
+				return String.format("(%d)", 620000 + number);
+			}
+			return String.format("(%d%s)", PACKED_DIGITS.indexOf(trimmed.charAt(0)), trimmed.substring(1));
+		}
+		if (designationType != DesignationType.PACKED_PROVISIONAL) {
+			return trimmed;
+		}
+		int century = 18 + (trimmed.charAt(0) - 'I');
+		int cycle = PACKED_DIGITS.indexOf(trimmed.charAt(4))*10 + (trimmed.charAt(5) - '0');
+		return String.format("%d%s %c%c%s", century, trimmed.substring(1, 3), trimmed.charAt(3), trimmed.charAt(6),
+				cycle == 0 ? "" : Integer.toString(cycle));
+	}
+}
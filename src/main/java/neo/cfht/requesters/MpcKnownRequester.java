@@ -1,36 +1,48 @@
 package neo.cfht.requesters;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import neo.cfht.app.CFHTEphemeridesConfiguration;
-import neo.cfht.models.Ephemeris;
+import neo.cfht.http.BodySink;
+import neo.cfht.http.HttpService;
+import neo.cfht.http.LineSplitter;
+import neo.cfht.http.ResponseCache;
+import neo.cfht.http.ResponseCache.CacheKey;
+import neo.cfht.models.EphemerisTable;
+import neo.cfht.models.MpcLineParser;
+import neo.cfht.models.NightWindow;
 import neo.cfht.models.SmallBodyRequest;
-import neo.utils.UtilsFiles;
 
 public class MpcKnownRequester implements IRequester {
 	/** Logging */
 	private final static Logger logger = LoggerFactory.getLogger(MpcKnownRequester.class);
 
-	public static final String FORMAT_MPC_KNOWN_URL = "https://www.minorplanetcenter.net/cgi-bin/mpeph2.cgi?"
+	public static final String FORMAT_MPC_KNOWN_URL = "%s/cgi-bin/mpeph2.cgi?"
 			+ "ty=e&TextArea=%s&d=%s&l=%d&i=%d&u=m&uto=0&c=%s&long=&lat=&alt=&raty=a&s=t&m=m&igd=y&ibh=y"
 			+ "&adir=S&oed=&e=-2&resoc=&tit=&bu=&ch=c&ce=f&js=f";
 
-	private static Pattern DATE_MATCH = Pattern.compile("^2\\d\\d\\d \\d\\d \\d\\d.*$");
+	/** Start of the ephemerides with a time */
+	private static final DateTimeFormatter START_FORMATTER = DateTimeFormatter.ofPattern("yyyy MM dd HHmmss");
+
+	static final Pattern DATE_MATCH = Pattern.compile("^2\\d\\d\\d \\d\\d \\d\\d.*$");
 	
-	private static final String SUFFIX = "knompc";
+	public static final String SUFFIX = "knompc";
 	@Override
 	public String getSuffix() {
 		return MpcKnownRequester.SUFFIX;
@@ -43,13 +55,32 @@ public class MpcKnownRequester implements IRequester {
 	}
 	
 	private boolean requestSuccessful;
-	private List<String> cfhtEphemeridesLine;
-	private List<Ephemeris> ephemerides;
+	private EphemerisTable ephemerides;
 	@Override
-	public List<Ephemeris> getEphemerides() {
+	public EphemerisTable getEphemerides() {
 		return this.ephemerides;
 	}
+
+	/** Computed once per fetch */
+	private EphemerisTable outputEphemerides;
+	@Override
+	public synchronized EphemerisTable getOutputEphemerides() {
+		if (this.outputEphemerides == null) {
+			this.outputEphemerides = interpolateEphemerides();
+		}
+		return this.outputEphemerides;
+	}
 	
+	/** Ephemeris lines already extracted from a batched response (null if not batched) */
+	private List<String> prefetchedLines;
+	public void setPrefetchedLines(List<String> prefetchedLines) {
+		this.prefetchedLines = prefetchedLines;
+	}
+
+	/** Reused for every line of the response */
+	private final MpcLineParser mpcLineParser = new MpcLineParser();
+	private final StringBuilder cfhtLine = new StringBuilder(64);
+
 	private String outputFileNameXML;
 	private String outputFileNameJSON;
 
@@ -64,65 +95,128 @@ public class MpcKnownRequester implements IRequester {
 		this.requestSuccessful = false;
 	}
 
+	/**
+	 * @param textArea One designation or several designations separated by new lines
+	 * @return The URI of the positions of the night window (from the start of the date if none)
+	 */
+	static URI buildURI(String textArea, CFHTEphemeridesConfiguration cec) {
+		NightWindow nightWindow = cec.getNightWindow();
+		return URI.create(String.format(FORMAT_MPC_KNOWN_URL, 
+				cec.getMpcBaseUrl(),
+				URLEncoder.encode(textArea, StandardCharsets.US_ASCII),
+				nightWindow == null ? cec.getDate()
+						: URLEncoder.encode(nightWindow.formatStart(START_FORMATTER), StandardCharsets.US_ASCII),
+				cec.getRequestPositionsCount(),
+				cec.getRequestIntervalMinutes(),
+				cec.getObservatory()));
+	}
+
 	@Override
 	public IRequester call() throws Exception {
+		return fetch(Runnable::run).join();
+	}
+
+	@Override
+	public CompletableFuture<IRequester> fetch(Executor executor) {
+		startParsing();
+		if ( (this.prefetchedLines != null) && !this.prefetchedLines.isEmpty() ) {
+			logger.debug("Using the batched MPC response for {}", this.smallBodyRequest.getDesignation());
+			this.prefetchedLines.forEach(this::parseLine);
+			endParsing();
+			return CompletableFuture.completedFuture(this);
+		}
 		logger.debug("Requesting {}", this.smallBodyRequest.getDesignation());
-		try {
-			String encodedDesignation = URLEncoder.encode(this.smallBodyRequest.getDesignation(), StandardCharsets.US_ASCII);
-			CFHTEphemeridesConfiguration cec = this.smallBodyRequest.getCFHTEphemeridesConfiguration();
-			HttpClient client = HttpClient.newHttpClient();
-			HttpRequest request = HttpRequest.newBuilder()
-					.uri(URI.create(String.format(FORMAT_MPC_KNOWN_URL, 
-							encodedDesignation,
-							cec.getDate(),
-							cec.getPositionsCount(),
-							cec.getIntervalMinutes(),
-							cec.getObservatory())))
-					.build();
-			logger.debug("Sending request for {}", this.smallBodyRequest.getDesignation());
-			HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
-			logger.debug("Got response for {}", this.smallBodyRequest.getDesignation());
-			String body = response.body();
-			Path mpcResponsePath = this.smallBodyRequest.getCFHTEphemeridesConfiguration()
-					.getOutputDirectory().resolve(String.format("%s-known-%s.mpc-response",
-							CFHTEphemeridesConfiguration.PREFIX_TROUBLE,
-							this.smallBodyRequest.getDesignation()));
-			logger.info("Saving MPC HTTP response to {}", mpcResponsePath);
-			UtilsFiles.saveWithBackup(mpcResponsePath, body);
-			this.requestSuccessful = true;
-			this.cfhtEphemeridesLine = new ArrayList<>();
-			this.ephemerides = new ArrayList<>();
-			for (String line : body.split("\n")) {
-				if (DATE_MATCH.matcher(line).matches()) {
-					Ephemeris ephemeris = Ephemeris.buildMPC(line);
-					this.cfhtEphemeridesLine.add(ephemeris.buildXMLEphemerisLine());
-					this.ephemerides.add(ephemeris);
+		ResponseCache responseCache = this.smallBodyRequest.getResponseCache();
+		CacheKey cacheKey = this.smallBodyRequest.getCacheKey(SUFFIX,
+				this.smallBodyRequest.getCFHTEphemeridesConfiguration().getNightWindow());
+		CompletableFuture<?> answered;
+		if (responseCache.isUsable(cacheKey)) {
+			answered = CompletableFuture.runAsync(() -> {
+				try (InputStream inputStream = responseCache.open(cacheKey)) {
+					LineSplitter.split(inputStream, this::parseLine);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
 				}
-			}
-			if (this.cfhtEphemeridesLine.isEmpty()) {
-				logger.info("MPC Known Ephemerides Service doesn't seem to know [{}] (this might be expected)", 
-						this.smallBodyRequest.getDesignation());
-				this.requestSuccessful = false;
-			}
-		} catch (Exception e) {
-			if (this.smallBodyRequest.getCFHTEphemeridesConfiguration().isDebug()) {
-				logger.error("Exception caught while executing MpcKnownRequester for object [{}]: {}", 
-						this.smallBodyRequest.getDesignation(), e.getMessage(), e);
+			}, executor);
+		} else {
+			answered = download(responseCache, cacheKey);
+		}
+		return answered.handle((result, throwable) -> {
+			if (throwable == null) {
+				endParsing();
 			} else {
-				logger.warn("Exception caught while executing MpcKnownRequester for object [{}] (this might be expected): {}",
-						this.smallBodyRequest.getDesignation(), e.getMessage());
-				logger.info("If you think that it is an issue, execute the same command line with '-d -useLogfile' "
-						+ "and send the generated log to someone who can help");
+				failed(IRequester.unwrap(throwable));
 			}
-			logger.info("Marking request to MPC mpeph2 as failed");
-			this.requestSuccessful = false;
+			return this;
+		});
+	}
+
+	private void failed(Throwable e) {
+		if (this.smallBodyRequest.getCFHTEphemeridesConfiguration().isDebug()) {
+			logger.error("Exception caught while executing MpcKnownRequester for object [{}]: {}", 
+					this.smallBodyRequest.getDesignation(), e.getMessage(), e);
+		} else {
+			logger.warn("Exception caught while executing MpcKnownRequester for object [{}] (this might be expected): {}",
+					this.smallBodyRequest.getDesignation(), e.getMessage());
+			logger.info("If you think that it is an issue, execute the same command line with '-d -useLogfile' "
+					+ "and send the generated log to someone who can help");
 		}
-		return this;
+		logger.info("Marking request to MPC mpeph2 as failed");
+		this.requestSuccessful = false;
 	}
 
-	@Override
-	public String getCfhtXML() {
-		return this.smallBodyRequest.getCFHTEphemeridesConfiguration().getCfhtXML(this.cfhtEphemeridesLine);
+	/**
+	 * Request the ephemerides, parsing the response while it is received
+	 */
+	private CompletableFuture<HttpResponse<Long>> download(ResponseCache responseCache, CacheKey cacheKey) {
+		CFHTEphemeridesConfiguration cec = this.smallBodyRequest.getCFHTEphemeridesConfiguration();
+		HttpService httpService = this.smallBodyRequest.getHttpService();
+		HttpRequest request = httpService.newRequestBuilder(
+				buildURI(this.smallBodyRequest.getDesignation(), cec))
+				.build();
+		Path mpcResponsePath = cec.getOutputDirectory().resolve(String.format("%s-known-%s.mpc-response",
+				CFHTEphemeridesConfiguration.PREFIX_TROUBLE,
+				this.smallBodyRequest.getDesignation()));
+		List<BodySink> sinks;
+		try {
+			sinks = IRequester.newSinks(mpcResponsePath, cec.getOutputManifest(), responseCache, cacheKey);
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		logger.info("Saving MPC HTTP response to {}", mpcResponsePath);
+		logger.debug("Sending request for {}", this.smallBodyRequest.getDesignation());
+		return httpService.sendLinesAsync(request, this::parseLine, sinks)
+				.thenApply(response -> {
+					logger.debug("Got response for {}: {} bytes", this.smallBodyRequest.getDesignation(),
+							response.body());
+					if ( (response.statusCode() >= 400) || this.ephemerides.isEmpty() ) {
+						responseCache.markNotFound(cacheKey);
+					}
+					return HttpService.requireSuccess(response);
+				});
+	}
+
+	private void startParsing() {
+		this.ephemerides = new EphemerisTable();
+		this.outputEphemerides = null;
+	}
+
+	private void parseLine(CharSequence line) {
+		if (DATE_MATCH.matcher(line).matches()) {
+			this.mpcLineParser.parse(line);
+			this.cfhtLine.setLength(0);
+			this.ephemerides.add(this.mpcLineParser.getMJD(), this.mpcLineParser.getRaDegrees(),
+					this.mpcLineParser.getDecDegrees(), this.mpcLineParser.appendCFHTLine(this.cfhtLine));
+		}
+	}
+
+	private void endParsing() {
+		this.requestSuccessful = true;
+		if (this.ephemerides.isEmpty()) {
+			logger.info("MPC Known Ephemerides Service doesn't seem to know [{}] (this might be expected)", 
+					this.smallBodyRequest.getDesignation());
+			this.requestSuccessful = false;
+		}
 	}
 
 	@Override
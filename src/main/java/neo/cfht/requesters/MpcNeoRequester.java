@@ -1,28 +1,35 @@
 package neo.cfht.requesters;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublisher;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import neo.cfht.app.CFHTEphemeridesConfiguration;
-import neo.cfht.models.Ephemeris;
+import neo.cfht.http.BodySink;
+import neo.cfht.http.HttpService;
+import neo.cfht.http.LineSplitter;
+import neo.cfht.http.ResponseCache;
+import neo.cfht.http.ResponseCache.CacheKey;
+import neo.cfht.models.EphemerisTable;
+import neo.cfht.models.MpcLineParser;
 import neo.cfht.models.SmallBodyRequest;
-import neo.utils.UtilsFiles;
 
 /**
  * Request NEO Candidate from JPL Scout 
@@ -37,8 +44,8 @@ public class MpcNeoRequester implements IRequester {
 		return MpcNeoRequester.logger;
 	}
 	
-	public static final String FORMAT_MPC_CONFIRMEPH2_URL = "https://cgi.minorplanetcenter.net/cgi-bin/confirmeph2.cgi";
-	private static final String SUFFIX = "neompc";
+	public static final String FORMAT_MPC_CONFIRMEPH2_URL = "%s/cgi-bin/confirmeph2.cgi";
+	public static final String SUFFIX = "neompc";
 	@Override
 	public String getSuffix() {
 		return MpcNeoRequester.SUFFIX;
@@ -50,15 +57,31 @@ public class MpcNeoRequester implements IRequester {
 		return this.smallBodyRequest;
 	}
 	
-	private List<String> cfhtEphemeridesLines;
-	private List<Ephemeris> ephemerides;
+	private EphemerisTable ephemerides;
 	@Override
-	public List<Ephemeris> getEphemerides() {
+	public EphemerisTable getEphemerides() {
 		return this.ephemerides;
 	}
+
+	/** Computed once per fetch */
+	private EphemerisTable outputEphemerides;
+	@Override
+	public synchronized EphemerisTable getOutputEphemerides() {
+		if (this.outputEphemerides == null) {
+			this.outputEphemerides = interpolateEphemerides();
+		}
+		return this.outputEphemerides;
+	}
 	
+	/** Beginning of the data lines (date of the ephemerides) */
+	private String datePattern;
+
 	private boolean requestSuccessful;
 
+	/** Reused for every line of the response */
+	private final MpcLineParser mpcLineParser = new MpcLineParser();
+	private final StringBuilder cfhtLine = new StringBuilder(64);
+
 	private String outputFileNameXML;
 	private String outputFileNameJSON;
 	
@@ -74,58 +97,108 @@ public class MpcNeoRequester implements IRequester {
 
 	@Override
 	public IRequester call() throws Exception {
+		return fetch(Runnable::run).join();
+	}
+
+	@Override
+	public CompletableFuture<IRequester> fetch(Executor executor) {
 		logger.debug("Requesting {}", this.smallBodyRequest.getDesignation());
-		try {
-			HttpClient client = HttpClient.newHttpClient();
-			HttpRequest request = HttpRequest.newBuilder()
-					.POST(buildFormData())
-					.uri(URI.create(FORMAT_MPC_CONFIRMEPH2_URL))
-					.header("Content-Type", "application/x-www-form-urlencoded")
-					.build();
-			logger.debug("Sending request for {}", this.smallBodyRequest.getDesignation());
-			HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
-			String body = response.body();
-			logger.debug("Got response for {}: {} bytes", this.smallBodyRequest.getDesignation(),
-					body.length());
-			this.requestSuccessful = true;
-			Path mpcResponsePath = this.smallBodyRequest.getCFHTEphemeridesConfiguration()
-					.getOutputDirectory().resolve(String.format("%s-%s.mpc-response",
-							CFHTEphemeridesConfiguration.PREFIX_TROUBLE,
-							this.smallBodyRequest.getDesignation()));
-			logger.info("Saving MPC HTTP response to {}", mpcResponsePath);
-			UtilsFiles.saveWithBackup(mpcResponsePath, body);
-			CFHTEphemeridesConfiguration cec = this.smallBodyRequest.getCFHTEphemeridesConfiguration();
-			String datePattern = cec.getDate().replaceAll("-", " ");
-			this.cfhtEphemeridesLines = new ArrayList<>();
-			this.ephemerides = new ArrayList<>();
-			for (String line : body.split("\n")) {
-				if (line.startsWith(datePattern)) {
-					logger.debug("Data line: [{}]", line);
-					Ephemeris ephemeris = Ephemeris.buildMPC(line);
-					this.cfhtEphemeridesLines.add(ephemeris.buildXMLEphemerisLine());
-					this.ephemerides.add(ephemeris);
+		this.datePattern = this.smallBodyRequest.getCFHTEphemeridesConfiguration().getDate().replaceAll("-", " ");
+		this.ephemerides = new EphemerisTable();
+		this.outputEphemerides = null;
+		ResponseCache responseCache = this.smallBodyRequest.getResponseCache();
+		CacheKey cacheKey = getCacheKey();
+		CompletableFuture<?> answered;
+		if (responseCache.isUsable(cacheKey)) {
+			answered = CompletableFuture.runAsync(() -> {
+				try (InputStream inputStream = responseCache.open(cacheKey)) {
+					LineSplitter.split(inputStream, this::parseLine);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
 				}
+			}, executor);
+		} else {
+			answered = download(responseCache, cacheKey);
+		}
+		return answered.handle((result, throwable) -> {
+			if (throwable != null) {
+				failed(IRequester.unwrap(throwable));
+				return this;
 			}
-			logger.debug("Got {} matches", this.cfhtEphemeridesLines.size());
+			this.requestSuccessful = true;
+			logger.debug("Got {} matches", this.ephemerides.size());
 			if (this.ephemerides.isEmpty()) {
 				logger.info("No observation found in MpcNeoRequester. Marking the request as failed");
 				this.requestSuccessful = false;
 			}
-		} catch (Exception e) {
-			if (this.smallBodyRequest.getCFHTEphemeridesConfiguration().isDebug()) {
-				logger.error("Exception caught while executing MpcNeoRequester for object [{}] (this might be expected): {}",
-						this.smallBodyRequest.getDesignation(),
-						e.getMessage(), e);
-			} else {
-				logger.warn("MPC NEOCP doesn't seem to know the NEO Candidate [{}] (this might be expected): {}",
-						this.smallBodyRequest.getDesignation(), e.getMessage());
-				logger.info("If you think that it is an issue, execute the same command line with '-d -useLogfile' "
-						+ "and send the generated log to someone who can help");
-			}
-			logger.info("Marking request to MPC confirmeph2 as failed");
-			this.requestSuccessful = false;
+			return this;
+		});
+	}
+
+	/**
+	 * @return The key of the cached response: confirmeph2 is requested with int=1 and no count
+	 */
+	CacheKey getCacheKey() {
+		return this.smallBodyRequest.getDailyCacheKey(SUFFIX);
+	}
+
+	private void failed(Throwable e) {
+		if (this.smallBodyRequest.getCFHTEphemeridesConfiguration().isDebug()) {
+			logger.error("Exception caught while executing MpcNeoRequester for object [{}] (this might be expected): {}",
+					this.smallBodyRequest.getDesignation(),
+					e.getMessage(), e);
+		} else {
+			logger.warn("MPC NEOCP doesn't seem to know the NEO Candidate [{}] (this might be expected): {}",
+					this.smallBodyRequest.getDesignation(), e.getMessage());
+			logger.info("If you think that it is an issue, execute the same command line with '-d -useLogfile' "
+					+ "and send the generated log to someone who can help");
+		}
+		logger.info("Marking request to MPC confirmeph2 as failed");
+		this.requestSuccessful = false;
+	}
+
+	/**
+	 * Request the ephemerides, parsing the response while it is received
+	 */
+	private CompletableFuture<HttpResponse<Long>> download(ResponseCache responseCache, CacheKey cacheKey) {
+		HttpService httpService = this.smallBodyRequest.getHttpService();
+		HttpRequest request = httpService.newRequestBuilder(URI.create(String.format(FORMAT_MPC_CONFIRMEPH2_URL,
+					this.smallBodyRequest.getCFHTEphemeridesConfiguration().getMpcCgiBaseUrl())))
+				.POST(buildFormData())
+				.header("Content-Type", "application/x-www-form-urlencoded")
+				.build();
+		Path mpcResponsePath = this.smallBodyRequest.getCFHTEphemeridesConfiguration()
+				.getOutputDirectory().resolve(String.format("%s-%s.mpc-response",
+						CFHTEphemeridesConfiguration.PREFIX_TROUBLE,
+						this.smallBodyRequest.getDesignation()));
+		List<BodySink> sinks;
+		try {
+			sinks = IRequester.newSinks(mpcResponsePath,
+					this.smallBodyRequest.getCFHTEphemeridesConfiguration().getOutputManifest(),
+					responseCache, cacheKey);
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		logger.info("Saving MPC HTTP response to {}", mpcResponsePath);
+		logger.debug("Sending request for {}", this.smallBodyRequest.getDesignation());
+		return httpService.sendLinesAsync(request, this::parseLine, sinks)
+				.thenApply(response -> {
+					logger.debug("Got response for {}: {} bytes", this.smallBodyRequest.getDesignation(),
+							response.body());
+					if ( (response.statusCode() >= 400) || this.ephemerides.isEmpty() ) {
+						responseCache.markNotFound(cacheKey);
+					}
+					return HttpService.requireSuccess(response);
+				});
+	}
+
+	private void parseLine(CharSequence line) {
+		if (LineSplitter.startsWith(line, this.datePattern)) {
+			this.mpcLineParser.parse(line);
+			this.cfhtLine.setLength(0);
+			this.ephemerides.add(this.mpcLineParser.getMJD(), this.mpcLineParser.getRaDegrees(),
+					this.mpcLineParser.getDecDegrees(), this.mpcLineParser.appendCFHTLine(this.cfhtLine));
 		}
-		return this;
 	}
 
 	/*
@@ -151,11 +224,6 @@ public class MpcNeoRequester implements IRequester {
 		return BodyPublishers.ofString(sParameters);
 	}
 
-	@Override
-	public String getCfhtXML() {
-		return this.smallBodyRequest.getCFHTEphemeridesConfiguration().getCfhtXML(this.cfhtEphemeridesLines);
-	}
-	
 	@Override
 	public String getOutputFileNameXML() {
 		return this.outputFileNameXML;
@@ -0,0 +1,101 @@
+package neo.cfht.requesters;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import neo.cfht.app.CFHTEphemeridesConfiguration;
+import neo.cfht.http.ConditionalRequest;
+import neo.cfht.http.HttpService;
+import neo.cfht.models.NeocpListing;
+
+/**
+ * Request the MPC and Scout listings of the NEOCP objects, conditionally
+ */
+public class NeocpListingRequester {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(NeocpListingRequester.class);
+
+	public static final String NEOCP_LISTING_PATH = "/iau/NEO/neocp.txt";
+	public static final String SCOUT_LISTING_PATH = "/scout.api";
+
+	private final HttpService httpService;
+	private final ConditionalRequest neocpRequest;
+	private final ConditionalRequest scoutRequest;
+	private String neocpText;
+	private String scoutJson;
+	private NeocpListing listing;
+	private Instant fetched;
+
+	public NeocpListingRequester(CFHTEphemeridesConfiguration cec) {
+		this(cec.getHttpService(), URI.create(cec.getMpcBaseUrl() + NEOCP_LISTING_PATH),
+				URI.create(cec.getJplBaseUrl() + SCOUT_LISTING_PATH));
+	}
+
+	public NeocpListingRequester(HttpService httpService, URI neocpUri, URI scoutUri) {
+		this.httpService = httpService;
+		this.neocpRequest = new ConditionalRequest(neocpUri);
+		this.scoutRequest = new ConditionalRequest(scoutUri);
+	}
+
+	/**
+	 * @return The last listing (null before the first {@link #fetch()})
+	 */
+	public synchronized NeocpListing getListing() {
+		return this.listing;
+	}
+
+	/**
+	 * Request both listings
+	 *
+	 * @return A future completed with the current listing (the last one if nothing changed)
+	 */
+	public CompletableFuture<NeocpListing> fetch() {
+		CompletableFuture<String> neocp = fetch(this.neocpRequest);
+		CompletableFuture<String> scout = fetch(this.scoutRequest);
+		return neocp.thenCombine(scout, this::update);
+	}
+
+	/**
+	 * Request both listings unless they were requested less than maxAge ago
+	 *
+	 * @return A future completed with the current listing
+	 */
+	public CompletableFuture<NeocpListing> fetch(Duration maxAge) {
+		synchronized (this) {
+			if ( (this.listing != null) && Instant.now().isBefore(this.fetched.plus(maxAge)) ) {
+				return CompletableFuture.completedFuture(this.listing);
+			}
+		}
+		return fetch();
+	}
+
+	private CompletableFuture<String> fetch(ConditionalRequest request) {
+		return request.fetchIfChanged(this.httpService).exceptionally(throwable -> {
+			logger.warn("Cannot request the listing {}: {}", request.getUri(),
+					IRequester.unwrap(throwable).toString());
+			return null;
+		});
+	}
+
+	private synchronized NeocpListing update(String changedNeocpText, String changedScoutJson) {
+		this.fetched = Instant.now();
+		if ( (this.listing != null) && (changedNeocpText == null) && (changedScoutJson == null) ) {
+			logger.debug("NEOCP listings unchanged");
+			return this.listing;
+		}
+		if (changedNeocpText != null) {
+			this.neocpText = changedNeocpText;
+		}
+		if (changedScoutJson != null) {
+			this.scoutJson = changedScoutJson;
+		}
+		this.listing = NeocpListing.parse(this.neocpText, this.scoutJson);
+		logger.info("{} objects on the NEOCP", this.listing.size());
+		return this.listing;
+	}
+}
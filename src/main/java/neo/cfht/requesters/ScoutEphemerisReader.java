@@ -0,0 +1,174 @@
+package neo.cfht.requesters;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import neo.cfht.models.CFHTFormatter;
+import neo.cfht.models.EphemerisTable;
+import neo.models.astronomy.Declination;
+import neo.models.astronomy.RightAscension;
+import neo.models.time.Epoch;
+
+/**
+ * Streaming extraction of the ephemerides of a JPL Scout response
+ */
+public class ScoutEphemerisReader {
+	/** Logging */
+	private final static Logger logger = LoggerFactory.getLogger(ScoutEphemerisReader.class);
+
+	private final JsonReader jsonReader;
+	private final EphemerisTable ephemerides;
+	private String error;
+	private boolean ephemeridesFound;
+
+	// Fields of the current point
+	private String time;
+	private double ra;
+	private double dec;
+	private double raRate;
+	private double decRate;
+	private double magnitude;
+	private double sigmaPos;
+
+	private ScoutEphemerisReader(Reader reader) {
+		this.jsonReader = new JsonReader(reader);
+		this.ephemerides = new EphemerisTable();
+	}
+
+	/**
+	 * @return The ephemerides of the response
+	 * @throws IOException if the response is not valid JSON or has no ephemerides (e.g. unknown object)
+	 */
+	public static EphemerisTable read(Reader reader) throws IOException {
+		ScoutEphemerisReader scoutEphemerisReader = new ScoutEphemerisReader(reader);
+		scoutEphemerisReader.readResponse();
+		if (!scoutEphemerisReader.ephemeridesFound) {
+			throw new IOException(scoutEphemerisReader.error == null ? "No ephemerides in the Scout response"
+					: "Scout error: " + scoutEphemerisReader.error);
+		}
+		return scoutEphemerisReader.ephemerides;
+	}
+
+	private void readResponse() throws IOException {
+		this.jsonReader.beginObject();
+		while (this.jsonReader.hasNext()) {
+			String name = this.jsonReader.nextName();
+			if ("eph".equals(name) && (this.jsonReader.peek() == JsonToken.BEGIN_ARRAY)) {
+				this.ephemeridesFound = true;
+				this.jsonReader.beginArray();
+				while (this.jsonReader.hasNext()) {
+					readPoint();
+				}
+				this.jsonReader.endArray();
+			} else if ("error".equals(name) && (this.jsonReader.peek() == JsonToken.STRING)) {
+				this.error = this.jsonReader.nextString();
+			} else {
+				this.jsonReader.skipValue();
+			}
+		}
+		this.jsonReader.endObject();
+	}
+
+	private void readPoint() throws IOException {
+		this.time = null;
+		this.ra = Double.NaN;
+		this.dec = Double.NaN;
+		this.raRate = Double.NaN;
+		this.decRate = Double.NaN;
+		this.magnitude = Double.NaN;
+		this.sigmaPos = Double.NaN;
+		this.jsonReader.beginObject();
+		while (this.jsonReader.hasNext()) {
+			switch (this.jsonReader.nextName()) {
+			case "time":
+				this.time = this.jsonReader.nextString();
+				break;
+			case "sigma-pos":
+				this.sigmaPos = nextDouble();
+				break;
+			case "median":
+				readMedian();
+				break;
+			default:
+				this.jsonReader.skipValue();
+			}
+		}
+		this.jsonReader.endObject();
+		if ( (this.time == null) || Double.isNaN(this.ra) || Double.isNaN(this.dec) ) {
+			throw new IOException("Incomplete Scout ephemeris point at " + this.jsonReader.getPath());
+		}
+		double raDegrees = RightAscension.fromDegrees(this.ra).degrees();
+		double decDegrees = Declination.fromDegrees(this.dec).degrees();
+		if (logger.isDebugEnabled()) {
+			logger.debug("{}:{}:{}", this.time, raDegrees, decDegrees);
+		}
+		int row = this.ephemerides.add(toMJD(this.time), raDegrees, decDegrees, String.format("%s|%s|%s|",
+				this.time, CFHTFormatter.raForCFHT(raDegrees), CFHTFormatter.deForCFHT(decDegrees)));
+		if (!Double.isNaN(this.raRate) && !Double.isNaN(this.decRate)) {
+			this.ephemerides.setRates(row, this.raRate, this.decRate);
+		}
+		if (!Double.isNaN(this.magnitude)) {
+			this.ephemerides.setMagnitude(row, this.magnitude);
+		}
+		if (!Double.isNaN(this.sigmaPos)) {
+			this.ephemerides.setPositionUncertainty(row, this.sigmaPos);
+		}
+	}
+
+	private void readMedian() throws IOException {
+		this.jsonReader.beginObject();
+		while (this.jsonReader.hasNext()) {
+			switch (this.jsonReader.nextName()) {
+			case "ra":
+				this.ra = nextDouble();
+				break;
+			case "dec":
+				this.dec = nextDouble();
+				break;
+			case "dra":
+				this.raRate = nextDouble();
+				break;
+			case "ddec":
+				this.decRate = nextDouble();
+				break;
+			case "vmag":
+				this.magnitude = nextDouble();
+				break;
+			default:
+				this.jsonReader.skipValue();
+			}
+		}
+		this.jsonReader.endObject();
+	}
+
+	/**
+	 * @return The number (Scout gives most numbers as strings), NaN if null
+	 */
+	private double nextDouble() throws IOException {
+		if (this.jsonReader.peek() == JsonToken.NULL) {
+			this.jsonReader.nextNull();
+			return Double.NaN;
+		}
+		return this.jsonReader.nextDouble();
+	}
+
+	/**
+	 * @param time A Scout time (e.g. '2019-08-14 06:00:00')
+	 */
+	static double toMJD(String time) {
+		int year = Integer.parseInt(time.substring(0, 4));
+		int month = Integer.parseInt(time.substring(5, 5+2));
+		int day = Integer.parseInt(time.substring(8, 8+2));
+		int hour = Integer.parseInt(time.substring(11, 11+2));
+		int minute = Integer.parseInt(time.substring(14, 14+2));
+		int second = Integer.parseInt(time.substring(17, 17+2));
+		double dday = (double) day + ((double) hour)/24. + ((double) minute)/1440. + ((double) second)/86400.;
+		return Epoch.createFromMPCUTDate(year, month, dday).getMJDUT();
+	}
+}
@@ -0,0 +1,26 @@
+package neo.cfht.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import picocli.CommandLine.TypeConversionException;
+
+public class DurationConverterUnitTest {
+
+	@Test
+	public void convert() {
+		DurationConverter converter = new DurationConverter();
+		assertEquals(Duration.ofSeconds(90), converter.convert("90s"));
+		assertEquals(Duration.ofSeconds(90), converter.convert("90"));
+		assertEquals(Duration.ofMinutes(5), converter.convert("5m"));
+		assertEquals(Duration.ofMillis(500), converter.convert("500ms"));
+		assertEquals(Duration.ofHours(1), converter.convert("1h"));
+		assertEquals(Duration.ofSeconds(90), converter.convert("PT1M30S"));
+		assertThrows(TypeConversionException.class, () -> converter.convert("soon"));
+		assertThrows(TypeConversionException.class, () -> converter.convert("-5s"));
+	}
+}
@@ -0,0 +1,171 @@
+package neo.cfht.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import neo.cfht.http.ExchangeRecorder;
+import neo.cfht.http.ReplayServer;
+import neo.resources.PsNeoResources;
+
+public class EphemeridesServerUnitTest {
+
+	private static final String MPC_BODY = String.join("\n",
+			"<html><body><p><b>2019 AA</b>",
+			"<pre>",
+			"2019 08 14 0000   22 43 06.2 -13 48 12  ",
+			"2019 08 14 0030   22 43 05.8 -13 48 20  ",
+			"</pre></body></html>");
+
+	@TempDir
+	Path temporaryDirectory;
+
+	private ReplayServer replayServer;
+	private EphemeridesServer ephemeridesServer;
+	private HttpClient client;
+
+	@BeforeEach
+	public void start() throws Exception {
+		Path recordings = Files.createDirectories(this.temporaryDirectory.resolve("recordings"));
+		String key = ExchangeRecorder.key("GET", "/cgi-bin/mpeph2.cgi?recorded", "");
+		JsonObject description = new JsonObject();
+		description.addProperty("method", "GET");
+		description.addProperty("host", "www.minorplanetcenter.net");
+		description.addProperty("pathAndQuery", "/cgi-bin/mpeph2.cgi?recorded");
+		description.addProperty("requestBody", "");
+		description.addProperty("status", 200);
+		description.addProperty("contentType", "text/html");
+		Files.writeString(recordings.resolve(key + ExchangeRecorder.SUFFIX_DESCRIPTION),
+				PsNeoResources.toJson(description, true));
+		Files.writeString(recordings.resolve(key + ExchangeRecorder.SUFFIX_BODY), MPC_BODY);
+		this.replayServer = ReplayServer.create(recordings, 0).withAnyDesignation(true).start();
+		CFHTEphemeridesConfiguration cec = CFHTEphemeridesConfiguration.parse("-serve", "-servePort", "0",
+				"-bypassVersionCheck", "-refresh", "-date", "2019-08-14",
+				"-p", this.temporaryDirectory.resolve("out").toString(),
+				"-mpcBaseUrl", this.replayServer.getBaseUrl());
+		this.ephemeridesServer = EphemeridesServer.create(new CFHTEphemerides(cec), 0).start();
+		this.client = HttpClient.newHttpClient();
+	}
+
+	@AfterEach
+	public void stop() {
+		this.ephemeridesServer.stop();
+		this.replayServer.stop();
+	}
+
+	@Test
+	public void testBatch() throws Exception {
+		HttpResponse<String> response = this.client.send(HttpRequest.newBuilder(
+				URI.create(this.ephemeridesServer.getBaseUrl() + EphemeridesServer.PATH_EPHEMERIDES + "?output=all"))
+				.POST(BodyPublishers.ofString("2019 AA\n")).build(), BodyHandlers.ofString());
+		assertEquals(200, response.statusCode());
+		JsonObject report = JsonParser.parseString(response.body()).getAsJsonObject();
+		assertEquals("2019-08-14", report.get("date").getAsString());
+		assertFalse(report.get("partial").getAsBoolean());
+		JsonObject result = report.getAsJsonArray("results").get(0).getAsJsonObject();
+		assertEquals("2019 AA", result.get("designation").getAsString());
+		assertEquals("WRITTEN", result.get("outcome").getAsString());
+		assertEquals(2, result.getAsJsonArray("files").size());
+		assertTrue(Files.exists(Path.of(result.getAsJsonArray("files").get(0).getAsString())));
+		assertTrue(result.get("xml").getAsString().contains("2019-08-14 00:30:00|22:43:05.80|-13:48:20.0|"), result.get("xml").getAsString());
+		assertTrue(result.get("json").getAsString().contains("\"moving_target\""));
+
+		// Same JVM, same configuration: a second batch
+		response = this.client.send(HttpRequest.newBuilder(
+				URI.create(this.ephemeridesServer.getBaseUrl() + EphemeridesServer.PATH_EPHEMERIDES
+						+ "?designation=2019%20AA")).build(), BodyHandlers.ofString());
+		assertEquals(200, response.statusCode());
+		result = JsonParser.parseString(response.body()).getAsJsonObject().getAsJsonArray("results").get(0)
+				.getAsJsonObject();
+		assertEquals("WRITTEN", result.get("outcome").getAsString());
+		assertFalse(result.has("xml"));
+	}
+
+	@Test
+	public void testBadRequests() throws Exception {
+		String url = this.ephemeridesServer.getBaseUrl() + EphemeridesServer.PATH_EPHEMERIDES;
+		assertEquals(400, this.client.send(HttpRequest.newBuilder(URI.create(url)).build(),
+				BodyHandlers.ofString()).statusCode());
+		assertEquals(400, this.client.send(HttpRequest.newBuilder(URI.create(url + "?designation=X&output=pdf")).build(),
+				BodyHandlers.ofString()).statusCode());
+		assertEquals(405, this.client.send(HttpRequest.newBuilder(URI.create(url)).DELETE().build(),
+				BodyHandlers.ofString()).statusCode());
+		assertEquals(200, this.client.send(HttpRequest.newBuilder(
+				URI.create(this.ephemeridesServer.getBaseUrl() + EphemeridesServer.PATH_HEALTH)).build(),
+				BodyHandlers.ofString()).statusCode());
+	}
+
+	@Test
+	public void testFirstPointingInlined() throws Exception {
+		Path c000 = Files.writeString(this.temporaryDirectory.resolve("2019AA-C000.neompc.xml"), "C000");
+		Path c001 = Files.writeString(this.temporaryDirectory.resolve("2019AA-C001.neompc.xml"), "C001");
+		RunReport runReport = new RunReport(Duration.ofMinutes(1));
+		runReport.add("2019 AA", "neompc", RunReport.Outcome.WRITTEN, List.of(c001.toString(), c000.toString()));
+		JsonObject result = EphemeridesServer.toJson(runReport, "2019-08-14", "xml").getAsJsonArray("results")
+				.get(0).getAsJsonObject();
+		assertEquals("C000", result.get("xml").getAsString());
+	}
+
+	@Test
+	public void testHealthDuringBatch() throws Exception {
+		this.replayServer.withLatency(2000, 0);
+		CompletableFuture<HttpResponse<String>> batch = this.client.sendAsync(HttpRequest.newBuilder(
+				URI.create(this.ephemeridesServer.getBaseUrl() + EphemeridesServer.PATH_EPHEMERIDES))
+				.POST(BodyPublishers.ofString("2019 AA\n")).build(), BodyHandlers.ofString());
+		Thread.sleep(500);
+		HttpResponse<String> health = this.client.send(HttpRequest.newBuilder(
+				URI.create(this.ephemeridesServer.getBaseUrl() + EphemeridesServer.PATH_HEALTH))
+				.timeout(Duration.ofSeconds(1)).build(), BodyHandlers.ofString());
+		assertEquals(200, health.statusCode());
+		assertFalse(batch.isDone());
+		assertEquals(200, batch.get().statusCode());
+	}
+
+	@Test
+	public void testOutdated() throws Exception {
+		Path cacheDirectory = Files.createDirectories(this.temporaryDirectory.resolve("cache"));
+		Files.writeString(cacheDirectory.resolve(VersionCheck.CACHE_FILE_NAME), "99.0");
+		CFHTEphemeridesConfiguration cec = CFHTEphemeridesConfiguration.parse("-serve", "-servePort", "0",
+				"-noPrewarm", "-refresh", "-date", "2019-08-14", "-cacheDirectory", cacheDirectory.toString(),
+				"-p", this.temporaryDirectory.resolve("outdated").toString(),
+				"-mpcBaseUrl", this.replayServer.getBaseUrl());
+		EphemeridesServer outdatedServer = EphemeridesServer.create(new CFHTEphemerides(cec), 0).start();
+		try {
+			HttpResponse<String> response = this.client.send(HttpRequest.newBuilder(
+					URI.create(outdatedServer.getBaseUrl() + EphemeridesServer.PATH_EPHEMERIDES))
+					.POST(BodyPublishers.ofString("2019 AA\n")).build(), BodyHandlers.ofString());
+			// Answered instead of exiting the JVM
+			assertEquals(503, response.statusCode());
+			assertEquals("99.0", JsonParser.parseString(response.body()).getAsJsonObject().get("latestVersion").getAsString());
+			try (Stream<Path> files = Files.list(this.temporaryDirectory.resolve("outdated"))) {
+				assertTrue(files.noneMatch(file -> file.toString().endsWith(".xml")));
+			}
+			assertEquals(503, this.client.send(HttpRequest.newBuilder(
+					URI.create(outdatedServer.getBaseUrl() + EphemeridesServer.PATH_HEALTH)).build(),
+					BodyHandlers.ofString()).statusCode());
+		} finally {
+			outdatedServer.stop();
+		}
+	}
+}
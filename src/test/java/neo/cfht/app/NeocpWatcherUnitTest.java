@@ -0,0 +1,54 @@
+package neo.cfht.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import neo.cfht.models.NeocpListing;
+
+public class NeocpWatcherUnitTest {
+
+	private static final String NEOCP =
+			"P21abcd 100 2019 08 13.4  23.0187 -14.5234 20.6 Updated Aug. 13.52 UT    6   0.05 22.8  0.062\n" +
+			"ZTF0Jrt  97 2019 08 12.3   3.2233 +21.2617 19.6 Updated Aug. 13.41 UT    5   0.07 21.1  1.110\n" +
+			"A10xyzw  88 2019 08 13.1  21.0000 -80.0000 21.0 Added Aug. 13.45 UT    3   0.02 23.0  0.020\n";
+
+	@TempDir
+	Path temporaryDirectory;
+
+	private static RunReport report(String designation, RunReport.Outcome outcome, RunReport runReport) {
+		runReport.add(designation, "neojpl", outcome, List.of());
+		return runReport;
+	}
+
+	@Test
+	public void testRetryNotWritten() throws Exception {
+		CFHTEphemeridesConfiguration cec = CFHTEphemeridesConfiguration.parse("-watch", "-bypassVersionCheck",
+				"-noPrewarm", "-date", "2019-08-14", "-p", this.temporaryDirectory.toString());
+		NeocpWatcher neocpWatcher = new NeocpWatcher(new CFHTEphemerides(cec));
+		NeocpListing listing = NeocpListing.parse(NEOCP, null);
+		List<String> batch = neocpWatcher.nextBatch(listing, "2019-08-14");
+		assertEquals(List.of("P21abcd", "ZTF0Jrt", "A10xyzw"), batch);
+		RunReport runReport = new RunReport(Duration.ofMinutes(5));
+		report("P21abcd", RunReport.Outcome.WRITTEN, runReport);
+		report("ZTF0Jrt", RunReport.Outcome.FAILED, runReport);
+		report("A10xyzw", RunReport.Outcome.NOT_OBSERVABLE, runReport);
+		neocpWatcher.retryLater(batch, runReport);
+		// Listing unchanged: only the object which failed
+		batch = neocpWatcher.nextBatch(listing, "2019-08-14");
+		assertEquals(List.of("ZTF0Jrt"), batch);
+		neocpWatcher.retryLater(batch, report("ZTF0Jrt", RunReport.Outcome.TIMED_OUT, new RunReport(Duration.ofMinutes(5))));
+		assertEquals(List.of("ZTF0Jrt"), neocpWatcher.nextBatch(listing, "2019-08-14"));
+		neocpWatcher.retryLater(batch, report("ZTF0Jrt", RunReport.Outcome.WRITTEN, new RunReport(Duration.ofMinutes(5))));
+		assertEquals(List.of(), neocpWatcher.nextBatch(listing, "2019-08-14"));
+		// Not written, then left the NEOCP: no longer requested
+		neocpWatcher.retryLater(List.of("ZTF0Jrt"), new RunReport(Duration.ofMinutes(5)));
+		NeocpListing next = NeocpListing.parse(NEOCP.split("\n")[0] + "\n" + NEOCP.split("\n")[2] + "\n", null);
+		assertEquals(List.of(), neocpWatcher.nextBatch(next, "2019-08-14"));
+	}
+}
@@ -0,0 +1,106 @@
+package neo.cfht.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+import neo.cfht.http.HttpService;
+
+public class VersionCheckUnitTest {
+
+	@TempDir
+	Path temporaryDirectory;
+
+	private static HttpService newHttpService() {
+		HttpService httpService = new HttpService(Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(5),
+				Map.of(), Duration.ofSeconds(20));
+		httpService.setRetries(0, Map.of(), Duration.ofMillis(10), Duration.ofMillis(10));
+		return httpService;
+	}
+
+	@Test
+	public void freshCacheAnsweredAtOnce() throws Exception {
+		Path cacheFile = this.temporaryDirectory.resolve(VersionCheck.CACHE_FILE_NAME);
+		Files.writeString(cacheFile, "1.2.3\n");
+		CompletableFuture<String> latestVersion = VersionCheck.latestVersion(newHttpService(),
+				URI.create("http://127.0.0.1:9/VERSION"), cacheFile, Duration.ofHours(1));
+		assertTrue(latestVersion.isDone());
+		assertEquals("1.2.3", latestVersion.get());
+	}
+
+	@Test
+	public void staleCacheRefreshed() throws Exception {
+		Path cacheFile = this.temporaryDirectory.resolve(VersionCheck.CACHE_FILE_NAME);
+		Files.writeString(cacheFile, "1.2.3");
+		Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(System.currentTimeMillis() - 7_200_000L));
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/VERSION", exchange -> {
+			byte[] body = "1.2.4\n".getBytes(StandardCharsets.US_ASCII);
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.start();
+		try {
+			URI versionUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/VERSION");
+			assertEquals("1.2.4", VersionCheck.latestVersion(newHttpService(), versionUri, cacheFile,
+					Duration.ofHours(1)).get(10, TimeUnit.SECONDS));
+			assertEquals("1.2.4", VersionCheck.readCache(cacheFile, Duration.ofHours(1)));
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void unreachableHost() throws Exception {
+		Path cacheFile = this.temporaryDirectory.resolve(VersionCheck.CACHE_FILE_NAME);
+		URI versionUri = URI.create("http://127.0.0.1:9/VERSION");
+		assertNull(VersionCheck.latestVersion(newHttpService(), versionUri, cacheFile, Duration.ofHours(1))
+				.get(10, TimeUnit.SECONDS));
+		// The last version found is used whatever its age
+		Files.writeString(cacheFile, "1.2.3");
+		Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(System.currentTimeMillis() - 7_200_000L));
+		assertEquals("1.2.3", VersionCheck.latestVersion(newHttpService(), versionUri, cacheFile,
+				Duration.ofHours(1)).get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void notRetried() throws Exception {
+		Path cacheFile = this.temporaryDirectory.resolve(VersionCheck.CACHE_FILE_NAME);
+		AtomicInteger requestCount = new AtomicInteger();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/VERSION", exchange -> {
+			requestCount.incrementAndGet();
+			exchange.sendResponseHeaders(503, -1);
+			exchange.close();
+		});
+		server.start();
+		try {
+			HttpService httpService = newHttpService();
+			httpService.setRetries(2, Map.of(), Duration.ofMillis(10), Duration.ofMillis(10));
+			URI versionUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/VERSION");
+			assertNull(VersionCheck.latestVersion(httpService, versionUri, cacheFile, Duration.ofHours(1))
+					.get(10, TimeUnit.SECONDS));
+			assertEquals(1, requestCount.get());
+		} finally {
+			server.stop(0);
+		}
+	}
+}
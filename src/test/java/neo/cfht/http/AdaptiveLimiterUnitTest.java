@@ -0,0 +1,41 @@
+package neo.cfht.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveLimiterUnitTest {
+
+	@Test
+	public void testPermits() {
+		// Starts with a limit of 2 out of 4
+		AdaptiveLimiter adaptiveLimiter = new AdaptiveLimiter("host", 4, 1000);
+		assertTrue(adaptiveLimiter.acquireAsync().isDone());
+		assertTrue(adaptiveLimiter.acquireAsync().isDone());
+		CompletableFuture<Void> third = adaptiveLimiter.acquireAsync();
+		CompletableFuture<Void> fourth = adaptiveLimiter.acquireAsync();
+		assertFalse(third.isDone());
+		assertEquals(2, adaptiveLimiter.getWaiting());
+		// A cancelled waiter doesn't get the slot
+		third.cancel(false);
+		adaptiveLimiter.release(200, 10);
+		assertTrue(fourth.isDone());
+		assertEquals(2, adaptiveLimiter.getInFlight());
+		assertEquals(0, adaptiveLimiter.getWaiting());
+	}
+
+	@Test
+	public void testDecrease() {
+		AdaptiveLimiter adaptiveLimiter = new AdaptiveLimiter("host", 8, 1000);
+		adaptiveLimiter.acquireAsync();
+		adaptiveLimiter.release(429, 10);
+		assertEquals(2, adaptiveLimiter.getLimit());
+		adaptiveLimiter.acquireAsync();
+		adaptiveLimiter.releaseOnFailure();
+		assertEquals(1, adaptiveLimiter.getLimit());
+	}
+}
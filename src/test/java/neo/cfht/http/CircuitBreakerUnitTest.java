@@ -0,0 +1,55 @@
+package neo.cfht.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerUnitTest {
+
+	@Test
+	public void opensThenProbes() {
+		AtomicLong nanos = new AtomicLong();
+		CircuitBreaker circuitBreaker = new CircuitBreaker("host", 3, 1000, nanos::get);
+		assertTrue(circuitBreaker.tryAcquire());
+		circuitBreaker.onFailure();
+		circuitBreaker.onFailure();
+		circuitBreaker.onSuccess();
+		circuitBreaker.onFailure();
+		circuitBreaker.onFailure();
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		circuitBreaker.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.tryAcquire());
+		assertEquals(1, circuitBreaker.getRejectedCount());
+
+		// One probe once the open duration elapsed
+		nanos.set(1_000_000_000L);
+		assertTrue(circuitBreaker.tryAcquire());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.tryAcquire());
+		circuitBreaker.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertEquals(2, circuitBreaker.getOpenedCount());
+
+		nanos.set(2_000_000_000L);
+		assertTrue(circuitBreaker.tryAcquire());
+		circuitBreaker.onSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertTrue(circuitBreaker.tryAcquire());
+	}
+
+	@Test
+	public void cancelledProbe() {
+		AtomicLong nanos = new AtomicLong();
+		CircuitBreaker circuitBreaker = new CircuitBreaker("host", 1, 1000, nanos::get);
+		circuitBreaker.onFailure();
+		nanos.set(1_000_000_000L);
+		assertTrue(circuitBreaker.tryAcquire());
+		circuitBreaker.onCancelled();
+		assertTrue(circuitBreaker.tryAcquire());
+	}
+}
@@ -0,0 +1,87 @@
+package neo.cfht.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class ConditionalRequestUnitTest {
+
+	private HttpServer server;
+	private AtomicReference<String> body;
+	private HttpService httpService;
+
+	@BeforeEach
+	public void start() throws Exception {
+		this.body = new AtomicReference<>("P21abcd\n");
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		// ETag = the body
+		this.server.createContext("/etag", exchange -> {
+			String etag = "\"" + this.body.get().hashCode() + "\"";
+			if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+			} else {
+				byte[] bytes = this.body.get().getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("ETag", etag);
+				exchange.sendResponseHeaders(200, bytes.length);
+				exchange.getResponseBody().write(bytes);
+			}
+			exchange.close();
+		});
+		// No validator at all
+		this.server.createContext("/plain", exchange -> {
+			byte[] bytes = this.body.get().getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, bytes.length);
+			exchange.getResponseBody().write(bytes);
+			exchange.close();
+		});
+		this.server.start();
+		this.httpService = new HttpService(Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(5),
+				Map.of(), Duration.ofSeconds(20));
+		this.httpService.setRetries(0, Map.of(), Duration.ofMillis(10), Duration.ofMillis(10));
+	}
+
+	@AfterEach
+	public void stop() {
+		this.server.stop(0);
+	}
+
+	private ConditionalRequest newRequest(String path) {
+		return new ConditionalRequest(URI.create("http://127.0.0.1:" + this.server.getAddress().getPort() + path));
+	}
+
+	@Test
+	public void testNotModified() throws Exception {
+		ConditionalRequest request = newRequest("/etag");
+		assertEquals("P21abcd\n", request.fetchIfChanged(this.httpService).get(10, TimeUnit.SECONDS));
+		assertNull(request.fetchIfChanged(this.httpService).get(10, TimeUnit.SECONDS));
+		assertEquals(1, request.getNotModifiedCount());
+		this.body.set("P21abcd\nP21abce\n");
+		assertEquals("P21abcd\nP21abce\n", request.fetchIfChanged(this.httpService).get(10, TimeUnit.SECONDS));
+		assertNull(request.fetchIfChanged(this.httpService).get(10, TimeUnit.SECONDS));
+		assertEquals(2, request.getNotModifiedCount());
+	}
+
+	@Test
+	public void testSameContent() throws Exception {
+		ConditionalRequest request = newRequest("/plain");
+		assertEquals("P21abcd\n", request.fetchIfChanged(this.httpService).get(10, TimeUnit.SECONDS));
+		assertNull(request.fetchIfChanged(this.httpService).get(10, TimeUnit.SECONDS));
+		assertEquals(1, request.getUnchangedBodyCount());
+		this.body.set("P21abce\n");
+		assertEquals("P21abce\n", request.fetchIfChanged(this.httpService).get(10, TimeUnit.SECONDS));
+		assertEquals(0, request.getNotModifiedCount());
+	}
+}
@@ -0,0 +1,197 @@
+package neo.cfht.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpServiceUnitTest {
+
+	private HttpServer server;
+	private CountDownLatch received;
+	private CountDownLatch released;
+	private HttpService httpService;
+
+	@BeforeEach
+	public void start() throws Exception {
+		this.received = new CountDownLatch(1);
+		this.released = new CountDownLatch(1);
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		// Never answers until released
+		this.server.createContext("/stalled", exchange -> {
+			this.received.countDown();
+			try {
+				this.released.await(30, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.close();
+		});
+		// 503 (with Retry-After) once, then 200
+		AtomicInteger flakyCount = new AtomicInteger();
+		this.server.createContext("/flaky", exchange -> {
+			byte[] body = (flakyCount.getAndIncrement() == 0 ? "busy" : "ok").getBytes(StandardCharsets.US_ASCII);
+			if (body.length == 4) {
+				exchange.getResponseHeaders().add(RetryPolicy.HEADER_RETRY_AFTER, "0");
+				exchange.sendResponseHeaders(503, body.length);
+			} else {
+				exchange.sendResponseHeaders(200, body.length);
+			}
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		this.server.createContext("/down", exchange -> {
+			exchange.sendResponseHeaders(503, -1);
+			exchange.close();
+		});
+		this.server.start();
+		this.httpService = new HttpService(Duration.ofSeconds(5), Duration.ofSeconds(60), Duration.ofSeconds(5),
+				Map.of(), Duration.ofSeconds(20));
+	}
+
+	@AfterEach
+	public void stop() {
+		this.released.countDown();
+		this.server.stop(0);
+	}
+
+	private URI stalled() {
+		return uri("/stalled");
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://127.0.0.1:" + this.server.getAddress().getPort() + path);
+	}
+
+	@Test
+	public void retryAfterServiceUnavailable() throws Exception {
+		this.httpService.setRetries(2, Map.of(), Duration.ofMillis(10), Duration.ofMillis(50));
+		HttpResponse<String> response = this.httpService.send(
+				this.httpService.newRequestBuilder(uri("/flaky")).build(), BodyHandlers.ofString());
+		assertEquals(200, response.statusCode());
+		assertEquals("ok", response.body());
+		EndpointCounters counters = this.httpService.getEndpointCounters("127.0.0.1");
+		assertEquals(2, counters.getAttempts());
+		assertEquals(1, counters.getRetries());
+		assertEquals(1, counters.getFailures());
+	}
+
+	@Test
+	public void circuitOpensOnUnhealthyHost() throws Exception {
+		this.httpService.setRetries(1, Map.of(), Duration.ofMillis(10), Duration.ofMillis(50));
+		this.httpService.setCircuitBreakers(3, Duration.ofSeconds(60));
+		HttpRequest request = this.httpService.newRequestBuilder(uri("/down")).build();
+		// Last attempt: completed with the HTTP error
+		assertEquals(503, this.httpService.send(request, BodyHandlers.ofString()).statusCode());
+		// Third failure opens the circuit
+		assertThrows(IOException.class, () -> this.httpService.send(request, BodyHandlers.ofString()));
+		assertThrows(CircuitOpenException.class, () -> this.httpService.send(request, BodyHandlers.ofString()));
+		EndpointCounters counters = this.httpService.getEndpointCounters("127.0.0.1");
+		assertEquals(3, counters.getAttempts());
+		assertEquals(1, counters.getCircuitOpened());
+		assertEquals(2, counters.getCircuitRejected());
+	}
+
+	@Test
+	public void timeoutCutToDeadline() throws Exception {
+		HttpRequest request = this.httpService.newRequestBuilder(stalled()).build();
+		assertEquals(Duration.ofSeconds(60), this.httpService.withinDeadline(request).timeout().get());
+		this.httpService.setDeadline(Instant.now().plusSeconds(10));
+		Duration timeout = this.httpService.withinDeadline(request).timeout().get();
+		assertTrue(timeout.compareTo(Duration.ofSeconds(10)) <= 0, timeout.toString());
+		assertTrue(timeout.compareTo(Duration.ofSeconds(5)) > 0, timeout.toString());
+	}
+
+	@Test
+	public void noRequestAfterDeadline() {
+		this.httpService.setDeadline(Instant.now().minusSeconds(1));
+		CompletableFuture<HttpResponse<String>> response = this.httpService.sendAsync(
+				this.httpService.newRequestBuilder(stalled()).build(), BodyHandlers.ofString());
+		ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof HttpTimeoutException, e.getCause().toString());
+		assertEquals(0, this.httpService.getLimiter("127.0.0.1").getInFlight());
+	}
+
+	@Test
+	public void probeReleasedAtDeadline() throws Exception {
+		this.httpService.setRetries(0, Map.of(), Duration.ofMillis(10), Duration.ofMillis(50));
+		this.httpService.setCircuitBreakers(1, Duration.ofMillis(50));
+		HttpRequest request = this.httpService.newRequestBuilder(uri("/down")).build();
+		assertEquals(503, this.httpService.send(request, BodyHandlers.ofString()).statusCode());
+		Thread.sleep(100);
+		// The half-open probe is never sent
+		this.httpService.setDeadline(Instant.now().minusSeconds(1));
+		CompletableFuture<HttpResponse<String>> response = this.httpService.sendAsync(request, BodyHandlers.ofString());
+		ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof HttpTimeoutException, e.getCause().toString());
+		// Another probe is allowed
+		this.httpService.setDeadline(null);
+		assertEquals(503, this.httpService.send(request, BodyHandlers.ofString()).statusCode());
+	}
+
+	@Test
+	public void cancelAllAbortsExchangesInFlight() throws Exception {
+		CompletableFuture<HttpResponse<String>> response = this.httpService.sendAsync(
+				this.httpService.newRequestBuilder(stalled()).build(), BodyHandlers.ofString());
+		assertTrue(this.received.await(10, TimeUnit.SECONDS));
+		assertEquals(1, this.httpService.cancelAll());
+		assertThrows(CancellationException.class, () -> response.get(5, TimeUnit.SECONDS));
+		AdaptiveLimiter limiter = this.httpService.getLimiter("127.0.0.1");
+		long giveUp = System.currentTimeMillis() + 5000;
+		while ( (limiter.getInFlight() > 0) && (System.currentTimeMillis() < giveUp) ) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(0, this.httpService.cancelAll());
+	}
+
+	@Test
+	public void noTemporaryFileLeftWhenConnectionRefused(@TempDir Path directory) throws Exception {
+		int port;
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			port = serverSocket.getLocalPort();
+		}
+		ResponseCache responseCache = new ResponseCache(directory.resolve(".cache"), Map.of(), Duration.ofHours(1),
+				Duration.ofMinutes(2), 1024*1024, ResponseCache.Mode.DEFAULT);
+		List<BodySink> sinks = List.of(FileBodySink.forTrouble(directory.resolve("trouble.response"), null),
+				responseCache.newEntry(new ResponseCache.CacheKey("neompc", "P21abcd", "2019-08-14", 30, "568", 30, 100)));
+		CompletableFuture<HttpResponse<Long>> response = this.httpService.sendLinesAsync(
+				this.httpService.newRequestBuilder(URI.create("http://127.0.0.1:" + port + "/refused")).build(),
+				line -> {}, sinks);
+		assertThrows(ExecutionException.class, () -> response.get(10, TimeUnit.SECONDS));
+		try (Stream<Path> paths = Files.walk(directory)) {
+			assertEquals(List.of(), paths.filter(path -> path.getFileName().toString().endsWith(".tmp"))
+					.collect(Collectors.toList()));
+		}
+	}
+}
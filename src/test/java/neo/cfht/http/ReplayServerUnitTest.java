@@ -0,0 +1,82 @@
+package neo.cfht.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonObject;
+
+import neo.cfht.app.CFHTEphemeridesConfiguration;
+import neo.cfht.models.SmallBodyRequest;
+import neo.cfht.requesters.MpcKnownRequester;
+import neo.resources.PsNeoResources;
+
+public class ReplayServerUnitTest {
+
+	private static final String MPC_BODY = String.join("\n",
+			"<html><body><p><b>2019 AA</b>",
+			"<pre>",
+			"2019 08 14 0000   22 43 06.2 -13 48 12  ",
+			"2019 08 14 0030   22 43 05.8 -13 48 20  ",
+			"2019 08 14 0100   22 43 05.4 -13 48 28  ",
+			"</pre></body></html>");
+
+	@TempDir
+	Path temporaryDirectory;
+
+	private ReplayServer replayServer;
+
+	@BeforeEach
+	public void record() throws Exception {
+		Path recordings = Files.createDirectories(this.temporaryDirectory.resolve("recordings"));
+		String key = ExchangeRecorder.key("GET", "/cgi-bin/mpeph2.cgi?recorded", "");
+		JsonObject description = new JsonObject();
+		description.addProperty("method", "GET");
+		description.addProperty("host", "www.minorplanetcenter.net");
+		description.addProperty("pathAndQuery", "/cgi-bin/mpeph2.cgi?recorded");
+		description.addProperty("requestBody", "");
+		description.addProperty("status", 200);
+		description.addProperty("contentType", "text/html");
+		Files.writeString(recordings.resolve(key + ExchangeRecorder.SUFFIX_DESCRIPTION),
+				PsNeoResources.toJson(description, true));
+		Files.writeString(recordings.resolve(key + ExchangeRecorder.SUFFIX_BODY), MPC_BODY);
+		this.replayServer = ReplayServer.create(recordings, 0).withAnyDesignation(true);
+	}
+
+	@AfterEach
+	public void stop() {
+		this.replayServer.stop();
+	}
+
+	private MpcKnownRequester request() throws Exception {
+		CFHTEphemeridesConfiguration cec = CFHTEphemeridesConfiguration.parse("2019 AA", "-bypassVersionCheck",
+				"-refresh", "-date", "2019-08-14",
+				"-p", this.temporaryDirectory.resolve("out").toString(),
+				"-mpcBaseUrl", this.replayServer.getBaseUrl());
+		MpcKnownRequester mpcKnownRequester = new MpcKnownRequester(new SmallBodyRequest("2019 AA", cec));
+		mpcKnownRequester.call();
+		return mpcKnownRequester;
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		this.replayServer.withLatency(10, 10).start();
+		MpcKnownRequester mpcKnownRequester = request();
+		assertTrue(mpcKnownRequester.isRequestSuccessful());
+		assertEquals(3, mpcKnownRequester.getEphemerides().size());
+	}
+
+	@Test
+	public void testTooManyRequests() throws Exception {
+		this.replayServer.withFaults(1., 0.).start();
+		assertFalse(request().isRequestSuccessful());
+	}
+}
@@ -0,0 +1,70 @@
+package neo.cfht.http;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ResponseCacheUnitTest {
+
+	@TempDir
+	Path temporaryDirectory;
+
+	private static ResponseCache.CacheKey key(String source, String designation) {
+		return new ResponseCache.CacheKey(source, designation, "2019-08-14", 30, "568", 30, 100);
+	}
+
+	private long size() throws Exception {
+		long size = 0;
+		try (Stream<Path> paths = Files.list(this.temporaryDirectory)) {
+			for (Path path : (Iterable<Path>) paths::iterator) {
+				size += Files.size(path);
+			}
+		}
+		return size;
+	}
+
+	@Test
+	public void testNotFound() throws Exception {
+		ResponseCache responseCache = new ResponseCache(this.temporaryDirectory,
+				Map.of("neompc", Duration.ofMinutes(10), "mpc", Duration.ofHours(6)), Duration.ofMinutes(10),
+				Duration.ofMinutes(2), 1024*1024, ResponseCache.Mode.DEFAULT);
+		ResponseCache.CacheKey known = key("mpc", "2019 AA");
+		responseCache.put(known, "No ephemeris");
+		responseCache.markNotFound(known);
+		// Still used for 2 minutes
+		assertTrue(responseCache.isUsable(known));
+		Path path = this.temporaryDirectory.resolve(known.getFileName());
+		Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() - 3*60*1000));
+		assertFalse(responseCache.isUsable(known));
+		// Not marked: the time-to-live of the source
+		ResponseCache.CacheKey found = key("mpc", "2019 AB");
+		responseCache.put(found, "Ephemerides");
+		path = this.temporaryDirectory.resolve(found.getFileName());
+		Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() - 3*60*1000));
+		assertTrue(responseCache.isUsable(found));
+		// Missing entry: nothing to mark
+		responseCache.markNotFound(key("mpc", "2019 AC"));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		ResponseCache responseCache = new ResponseCache(this.temporaryDirectory, Map.of(), Duration.ofHours(1),
+				Duration.ofMinutes(2), 1000, ResponseCache.Mode.DEFAULT);
+		String body = "x".repeat(300);
+		for (int i=0; i<10; i++) {
+			ResponseCache.CacheKey key = key("mpc", "2019 A" + (char) ('A' + i));
+			responseCache.put(key, body);
+			assertTrue(size() <= 1000, "Cache of " + size() + " bytes");
+			assertTrue(responseCache.isUsable(key));
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package neo.cfht.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class RetryPolicyUnitTest {
+
+	private static HttpHeaders retryAfter(String value) {
+		return HttpHeaders.of(Map.of(RetryPolicy.HEADER_RETRY_AFTER, List.of(value)), (name, headerValue) -> true);
+	}
+
+	@Test
+	public void jitteredBackoff() {
+		RetryPolicy retryPolicy = new RetryPolicy(3, Duration.ofMillis(100), Duration.ofMillis(1000));
+		for (int i=0; i<100; i++) {
+			long first = retryPolicy.getDelayMillis(0, null);
+			assertTrue( (first >= 50) && (first <= 100), Long.toString(first));
+			long third = retryPolicy.getDelayMillis(2, null);
+			assertTrue( (third >= 200) && (third <= 400), Long.toString(third));
+			long capped = retryPolicy.getDelayMillis(40, null);
+			assertTrue( (capped >= 500) && (capped <= 1000), Long.toString(capped));
+		}
+		assertTrue(retryPolicy.getDelayMillis(0, Duration.ofSeconds(5)) == 5000);
+	}
+
+	@Test
+	public void retryableStatus() {
+		assertTrue(RetryPolicy.isRetryable(503));
+		assertTrue(RetryPolicy.isRetryable(429));
+		assertFalse(RetryPolicy.isRetryable(404));
+		assertFalse(RetryPolicy.isRetryable(500));
+	}
+
+	@Test
+	public void retryAfterHeader() {
+		assertEquals(Duration.ofSeconds(7), RetryPolicy.getRetryAfter(retryAfter("7")));
+		Duration delay = RetryPolicy.getRetryAfter(retryAfter(DateTimeFormatter.RFC_1123_DATE_TIME.format(
+				ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30))));
+		assertTrue( (delay.getSeconds() >= 28) && (delay.getSeconds() <= 30), delay.toString());
+		assertNull(RetryPolicy.getRetryAfter(retryAfter("soon")));
+		assertNull(RetryPolicy.getRetryAfter(HttpHeaders.of(Map.of(), (name, value) -> true)));
+	}
+}
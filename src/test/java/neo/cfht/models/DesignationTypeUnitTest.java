@@ -0,0 +1,29 @@
+package neo.cfht.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class DesignationTypeUnitTest {
+
+	@Test
+	public void testClassify() {
+		assertEquals(DesignationType.NEOCP, DesignationType.classify("P109isj"));
+		assertEquals(DesignationType.NEOCP, DesignationType.classify("A10fwNJ"));
+		assertEquals(DesignationType.PACKED_PROVISIONAL, DesignationType.classify("K14A00A"));
+		assertEquals(DesignationType.PROVISIONAL, DesignationType.classify("2014 AA"));
+		assertEquals(DesignationType.PROVISIONAL, DesignationType.classify("2019 QZ12"));
+		assertEquals(DesignationType.NUMBERED, DesignationType.classify("(87890)"));
+		assertEquals(DesignationType.NUMBERED, DesignationType.classify("433"));
+		// Packed numbers: known objects, not NEOCP candidates
+		assertEquals(DesignationType.PACKED_NUMBERED, DesignationType.classify("A1234"));
+		assertEquals(DesignationType.PACKED_NUMBERED, DesignationType.classify("a0017"));
+		assertEquals(DesignationType.PACKED_NUMBERED, DesignationType.classify("~0000"));
+		assertTrue(DesignationType.classify("A1234").isKnownObject());
+		assertEquals(DesignationType.COMET, DesignationType.classify("P/2013 R3"));
+		assertEquals(DesignationType.COMET, DesignationType.classify("C/2020 F3"));
+		assertEquals(DesignationType.COMET, DesignationType.classify("29P"));
+		assertEquals(DesignationType.UNKNOWN, DesignationType.classify("Eros"));
+	}
+}
@@ -0,0 +1,81 @@
+package neo.cfht.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class EphemerisInterpolatorUnitTest {
+
+	/** 2019-08-14 04:00 UT */
+	private static final double START = 58709. + 4./24.;
+
+	/** A fast mover crossing RA 0 (degrees, t in days) */
+	private static double ra(double t) {
+		double ra = (359.8 + 2.*t + 0.3*t*t) % 360.;
+		return ra < 0 ? ra + 360. : ra;
+	}
+	private static double dec(double t) {
+		return -12. + 1.5*t - 0.4*t*t;
+	}
+
+	private static EphemerisTable nodes(int intervalMinutes, int count, double gapFrom, double gapTo) {
+		EphemerisTable nodes = new EphemerisTable();
+		for (int i=0; i<count; i++) {
+			double t = i*intervalMinutes/1440.;
+			if ( (t > gapFrom) && (t < gapTo) ) {
+				continue;
+			}
+			nodes.add(START + t, ra(t), dec(t), "node " + i);
+		}
+		return nodes;
+	}
+
+	@Test
+	public void testInterpolation() {
+		EphemerisTable nodes = nodes(30, 29, 1, 0);
+		EphemerisInterpolator ephemerisInterpolator = new EphemerisInterpolator(5);
+		EphemerisTable points = ephemerisInterpolator.interpolate(nodes);
+		assertEquals(28*6+1, points.size());
+		double maxError = 0;
+		for (int row=0; row<points.size(); row++) {
+			double t = points.getMjd(row) - START;
+			assertEquals(row*5/1440., t, 1e-9);
+			double raError = (points.getRa(row) - ra(t) + 540.) % 360. - 180.;
+			maxError = Math.max(maxError, Math.hypot(raError*Math.cos(Math.toRadians(dec(t))), points.getDec(row) - dec(t)));
+			assertTrue( (points.getRa(row) >= 0.) && (points.getRa(row) < 360.) );
+		}
+		// Nodes kept as they are
+		assertEquals("node 0", points.getCFHTLine(0).toString());
+		assertEquals("node 1", points.getCFHTLine(6).toString());
+		assertTrue(points.getCFHTLine(1).toString().startsWith("2019-08-14 04:05:00|"));
+		// The motion is a polynomial of degree 2: exact up to rounding
+		assertTrue(maxError*3600. < 1e-6, "Error: " + maxError*3600.);
+		assertTrue(ephemerisInterpolator.estimateErrorArcsec(nodes) < 1e-6);
+	}
+
+	@Test
+	public void testNoInterpolationAcrossGaps() {
+		// No node between 2h and 8h (e.g. below the horizon)
+		EphemerisTable nodes = nodes(60, 14, 2.5/24., 7.5/24.);
+		EphemerisTable points = new EphemerisInterpolator(20).interpolate(nodes);
+		// 0h..2h and 8h..13h every 20 minutes
+		assertEquals(7 + 16, points.size());
+		for (int row=0; row<points.size(); row++) {
+			double hours = (points.getMjd(row) - START)*24.;
+			assertTrue( (hours < 2.01) || (hours > 7.99), "Point at " + hours + "h");
+		}
+	}
+
+	@Test
+	public void testErrorEstimate() {
+		// Positions with a 5 arcsec glitch: the estimate sees it
+		EphemerisTable nodes = new EphemerisTable();
+		for (int i=0; i<10; i++) {
+			double t = i*30/1440.;
+			nodes.add(START + t, ra(t), dec(t) + (i == 5 ? 5./3600. : 0.), "node " + i);
+		}
+		double errorArcsec = new EphemerisInterpolator(5).estimateErrorArcsec(nodes);
+		assertTrue( (errorArcsec > 1.) && (errorArcsec < 10.), "Estimate: " + errorArcsec);
+	}
+}
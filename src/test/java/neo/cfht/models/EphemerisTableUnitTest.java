@@ -0,0 +1,45 @@
+package neo.cfht.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class EphemerisTableUnitTest {
+
+	@Test
+	public void testColumns() {
+		EphemerisTable ephemerisTable = new EphemerisTable(1);
+		for (int i=0; i<5; i++) {
+			ephemerisTable.add(58709.25 + i/24., 318.9 + i, -12.5 - i, "line-" + i);
+		}
+		assertEquals(5, ephemerisTable.size());
+		assertEquals(58709.25 + 2/24., ephemerisTable.getMjd(2));
+		assertEquals(321.9, ephemerisTable.getRa(3));
+		assertEquals(-16.5, ephemerisTable.getDec(4));
+		assertEquals("line-0\nline-1\nline-2\nline-3\nline-4", ephemerisTable.getCFHTLines().toString());
+		assertEquals("line-3", ephemerisTable.getCFHTLine(3).toString());
+		assertEquals("line-4", ephemerisTable.getCFHTLine(4).toString());
+		assertThrows(IndexOutOfBoundsException.class, () -> ephemerisTable.getRa(5));
+	}
+
+	@Test
+	public void testOptionalColumns() {
+		EphemerisTable ephemerisTable = new EphemerisTable(2);
+		ephemerisTable.add(58709.25, 318.9, -12.5, "a");
+		assertFalse(ephemerisTable.hasMagnitudes());
+		assertTrue(Double.isNaN(ephemerisTable.getMagnitude(0)));
+		ephemerisTable.add(58709.5, 319.0, -12.6, "b");
+		ephemerisTable.setMagnitude(1, 19.8);
+		ephemerisTable.setRates(1, 1.5, -0.5);
+		ephemerisTable.add(58709.75, 319.1, -12.7, "c");
+		assertTrue(ephemerisTable.hasMagnitudes());
+		assertTrue(Double.isNaN(ephemerisTable.getMagnitude(0)));
+		assertEquals(19.8, ephemerisTable.getMagnitude(1));
+		assertTrue(Double.isNaN(ephemerisTable.getMagnitude(2)));
+		assertEquals(-0.5, ephemerisTable.getDecRate(1));
+		assertTrue(Double.isNaN(ephemerisTable.getRaRate(2)));
+	}
+}
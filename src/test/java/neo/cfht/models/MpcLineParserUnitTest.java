@@ -0,0 +1,58 @@
+package neo.cfht.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.junit.jupiter.api.Test;
+
+import neo.models.astronomy.Declination;
+import neo.models.astronomy.RightAscension;
+
+public class MpcLineParserUnitTest {
+
+	private static final String[] LINES = {
+			"2019 08 14 0600   21 15 42.3 -12 34 56   1.234   0.987  150.2   28.5  19.8    0.52 ...",
+			"2020 01 02 2359   00 00 00.0 +00 00 00   0.102   1.000   91.0   60.1  21.3    1.10 ...",
+			"2021 12 31 1230   23 59 59.9 -00 59 59   2.450   1.620  120.3   10.7  18.1    0.07 ...",
+	};
+
+	@Test
+	public void testCFHTLine() {
+		MpcLineParser mpcLineParser = new MpcLineParser();
+		mpcLineParser.parse(LINES[0]);
+		assertEquals("2019-08-14 06:00:00|21:15:42.30|-12:34:56.0|",
+				mpcLineParser.appendCFHTLine(new StringBuilder()).toString());
+		assertEquals(2019, mpcLineParser.getYear());
+		assertEquals(8, mpcLineParser.getMonth());
+		assertEquals(14, mpcLineParser.getDay());
+		assertEquals(6, mpcLineParser.getHour());
+		assertEquals(0, mpcLineParser.getMinute());
+	}
+
+	@Test
+	public void testSameValuesAsSexagesimalParsing() {
+		MpcLineParser mpcLineParser = new MpcLineParser();
+		for (String line : LINES) {
+			mpcLineParser.parse(line);
+			double ra = RightAscension.fromRightAscensionHMS(line.substring(18, 24+4), " ").degrees();
+			double de = Declination.fromDeclinationDMS(line.substring(29, 36+2), " ").degrees();
+			assertEquals(scaled(ra), scaled(mpcLineParser.getRaDegrees()), line);
+			assertEquals(scaled(de), scaled(mpcLineParser.getDecDegrees()), line);
+		}
+	}
+
+	@Test
+	public void testMalformedLine() {
+		MpcLineParser mpcLineParser = new MpcLineParser();
+		assertThrows(NumberFormatException.class, () -> mpcLineParser.parse(
+				"2019 08 14 0600   2x 15 42.3 -12 34 56   1.234"));
+		assertThrows(IndexOutOfBoundsException.class, () -> mpcLineParser.parse("2019 08 14 0600"));
+	}
+
+	private static BigDecimal scaled(double degrees) {
+		return BigDecimal.valueOf(degrees).setScale(7, RoundingMode.HALF_UP);
+	}
+}
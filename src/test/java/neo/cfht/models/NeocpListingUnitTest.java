@@ -0,0 +1,60 @@
+package neo.cfht.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class NeocpListingUnitTest {
+
+	private static final String NEOCP =
+			"P21abcd 100 2019 08 13.4  23.0187 -14.5234 20.6 Updated Aug. 13.52 UT    6   0.05 22.8  0.062\n" +
+			"ZTF0Jrt  97 2019 08 12.3   3.2233 +21.2617 19.6 Updated Aug. 13.41 UT    5   0.07 21.1  1.110\n";
+	private static final String SCOUT = "{\"signature\":{\"version\":\"1.3\"},\"count\":\"2\",\"data\":["
+			+ "{\"objectName\":\"P21abcd\",\"lastRun\":\"2019-08-13 12:34\",\"nObs\":6},"
+			+ "{\"objectName\":\"A10xyz\",\"lastRun\":\"2019-08-13 11:00\",\"nObs\":4}]}";
+
+	@Test
+	public void testParse() {
+		NeocpListing listing = NeocpListing.parse(NEOCP, SCOUT);
+		assertEquals(3, listing.size());
+		NeocpListing.Entry entry = listing.get("P21abcd");
+		assertEquals(23.0187*15., entry.getRa(), 1e-9);
+		assertEquals(-14.5234, entry.getDec(), 1e-9);
+		assertEquals(20.6, entry.getMagnitude(), 1e-9);
+		assertTrue(Double.isNaN(listing.get("A10xyz").getRa()));
+	}
+
+	@Test
+	public void testChanges() {
+		NeocpListing first = NeocpListing.parse(NEOCP, SCOUT);
+		assertEquals(List.of("P21abcd", "ZTF0Jrt", "A10xyz"), first.getChanges(null));
+		// Only the days since last seen changed
+		NeocpListing same = NeocpListing.parse(NEOCP.replace("0.062", "0.104").replace("1.110", "1.152"), SCOUT);
+		assertTrue(same.getChanges(first).isEmpty());
+		// New observations of ZTF0Jrt, new run of Scout for A10xyz, P21abcd left the NEOCP
+		String neocp = NEOCP.split("\n")[1].replace("Aug. 13.41 UT    5   0.07", "Aug. 13.60 UT    7   0.15");
+		String scout = SCOUT.replace("{\"objectName\":\"P21abcd\",\"lastRun\":\"2019-08-13 12:34\",\"nObs\":6},", "")
+				.replace("11:00", "13:00");
+		NeocpListing next = NeocpListing.parse(neocp, scout);
+		assertEquals(List.of("ZTF0Jrt", "A10xyz"), next.getChanges(same));
+		assertEquals(List.of("P21abcd"), next.getRemovals(same));
+		assertFalse(next.contains("P21abcd"));
+	}
+
+	@Test
+	public void testChangesOfAddedObject() {
+		String added = "A10fwNJ  98 2019 08 14.3  22.7184 -13.8034 21.2 Added Aug. 14.39 UT      3   0.03 23.4  0.012\n";
+		NeocpListing first = NeocpListing.parse(added, null);
+		assertEquals("Added Aug. 14.39 UT 3 0.03 23.4", first.get("A10fwNJ").getSignature().split("#")[0]);
+		// New score and days since last seen only
+		NeocpListing same = NeocpListing.parse(added.replace(" 98 ", " 95 ").replace("0.012", "0.054"), null);
+		assertTrue(same.getChanges(first).isEmpty());
+		// New observations
+		NeocpListing next = NeocpListing.parse(added.replace("Added Aug. 14.39 UT      3", "Updated Aug. 14.48 UT      5"), null);
+		assertEquals(List.of("A10fwNJ"), next.getChanges(same));
+	}
+}
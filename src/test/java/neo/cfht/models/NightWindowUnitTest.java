@@ -0,0 +1,74 @@
+package neo.cfht.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.Test;
+
+public class NightWindowUnitTest {
+
+	private static final Observatory MAUNA_KEA = Observatory.forCode("568");
+
+	private static void assertBetween(String min, String max, Instant instant) {
+		assertTrue(!instant.isBefore(Instant.parse(min)) && !instant.isAfter(Instant.parse(max)),
+				instant + " not within " + min + " " + max);
+	}
+
+	@Test
+	public void testObservatory() {
+		assertEquals(19.7, MAUNA_KEA.getLatitude(), 0.05);
+		assertNull(Observatory.forCode("XXX"));
+		// 2019-08-14 00:00 UT: 14:00 HST, Sun high in the sky
+		assertTrue(MAUNA_KEA.getSunAltitude(58709.) > 60.);
+		// 2019-08-14 12:00 UT: 02:00 HST
+		assertTrue(MAUNA_KEA.getSunAltitude(58709.5) < -30.);
+	}
+
+	@Test
+	public void testNight() {
+		NightWindow night = NightWindow.of(MAUNA_KEA, LocalDate.of(2019, 8, 14), -12.);
+		assertNotNull(night);
+		// Nautical twilights around 19:50 and 05:20 HST
+		assertBetween("2019-08-14T05:35:00Z", "2019-08-14T06:05:00Z", night.getStart());
+		assertBetween("2019-08-14T15:05:00Z", "2019-08-14T15:35:00Z", night.getStop());
+		NightWindow astronomical = NightWindow.of(MAUNA_KEA, LocalDate.of(2019, 8, 14), -18.);
+		assertTrue(astronomical.getDuration().compareTo(night.getDuration()) < 0);
+	}
+
+	@Test
+	public void testRestrict() {
+		NightWindow night = NightWindow.of(MAUNA_KEA, LocalDate.of(2019, 8, 14), -12.);
+		double midnight = (night.getStartMjd() + night.getStopMjd())/2.;
+		// Transiting at midnight: observable a few hours around it
+		double ra = MAUNA_KEA.getSiderealTime(midnight);
+		NightWindow observable = night.restrict(MAUNA_KEA, ra, -25., 23.6, Duration.ofMinutes(30));
+		assertNotNull(observable);
+		assertTrue(observable.getStartMjd() > night.getStartMjd());
+		assertTrue(observable.getStopMjd() < night.getStopMjd());
+		assertTrue(observable.getStartMjd() < midnight && observable.getStopMjd() > midnight);
+		// Never above 23.6 degrees from a latitude of 19.7 degrees
+		assertNull(night.restrict(MAUNA_KEA, ra, -80., 23.6, Duration.ofMinutes(30)));
+	}
+
+	@Test
+	public void testAlign() {
+		// 2019-08-14 05:47:20 to 15:20:10 UT
+		NightWindow window = new NightWindow(58709. + (5*3600 + 47*60 + 20)/86400., 58709. + (15*3600 + 20*60 + 10)/86400.);
+		NightWindow aligned = window.align(30);
+		assertEquals(Instant.parse("2019-08-14T05:30:00Z"), aligned.getStart());
+		assertEquals(Instant.parse("2019-08-14T15:30:00Z"), aligned.getStop());
+		assertEquals(21, aligned.getPositionsCount(30));
+		assertEquals("2019 08 14 053000", aligned.formatStart(DateTimeFormatter.ofPattern("yyyy MM dd HHmmss")));
+		assertEquals("2019-08-14T05:30:00Z/2019-08-14T15:30:00Z", aligned.toString());
+		// Already aligned
+		assertEquals(aligned.getStart(), aligned.align(30).getStart());
+		assertEquals(aligned.getStop(), aligned.align(30).getStop());
+	}
+}
@@ -0,0 +1,52 @@
+package neo.cfht.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+public class PointingOffsetUnitTest {
+
+	private static EphemerisTable ephemerides() {
+		EphemerisTable ephemerides = new EphemerisTable();
+		ephemerides.add(58709.25, 359.995, 60., "2019-08-14 06:00:00|23:59:58.80|+60:00:00.0|");
+		ephemerides.add(58709.25 + 1./48., 10., -30., "2019-08-14 06:30:00|00:40:00.00|-30:00:00.0|");
+		return ephemerides;
+	}
+
+	@Test
+	public void testApply() {
+		EphemerisTable ephemerides = ephemerides();
+		assertSame(ephemerides, PointingOffset.NONE.apply(ephemerides));
+		EphemerisTable pointing = new PointingOffset(0.01, -0.02).apply(ephemerides);
+		assertEquals(2, pointing.size());
+		// RA + east/cos(DEC), wrapped
+		assertEquals(0.015, pointing.getRa(0), 1e-9);
+		assertEquals(59.98, pointing.getDec(0), 1e-9);
+		assertEquals(10. + 0.01/Math.cos(Math.toRadians(30.)), pointing.getRa(1), 1e-9);
+		assertEquals(-30.02, pointing.getDec(1), 1e-9);
+		assertEquals(ephemerides.getMjd(1), pointing.getMjd(1));
+		// Same time, new position
+		assertEquals("2019-08-14 06:00:00|" + CFHTFormatter.raForCFHT(0.015) + "|" + CFHTFormatter.deForCFHT(59.98) + "|",
+				pointing.getCFHTLine(0).toString());
+	}
+
+	@Test
+	public void testPole() {
+		EphemerisTable ephemerides = new EphemerisTable();
+		ephemerides.add(58709.25, 10., 89.5, "2019-08-14 06:00:00|00:40:00.00|+89:30:00.0|");
+		ephemerides.add(58709.25, 10., -89.9, "2019-08-14 06:00:00|00:40:00.00|-89:54:00.0|");
+		EphemerisTable pointing = new PointingOffset(0., 1.).apply(ephemerides);
+		assertEquals(90., pointing.getDec(0), 1e-9);
+		assertEquals(-88.9, pointing.getDec(1), 1e-9);
+		pointing = new PointingOffset(0.01, -1.).apply(ephemerides);
+		assertEquals(-90., pointing.getDec(1), 1e-9);
+	}
+
+	@Test
+	public void testPlus() {
+		PointingOffset offset = new PointingOffset(0.01, 0.02).plus(new PointingOffset(-0.01, 0.005));
+		assertEquals(0., offset.getEast(), 1e-12);
+		assertEquals(0.025, offset.getNorth(), 1e-12);
+	}
+}
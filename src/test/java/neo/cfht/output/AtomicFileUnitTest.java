@@ -0,0 +1,67 @@
+package neo.cfht.output;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class AtomicFileUnitTest {
+
+	private static long countFiles(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.list(directory)) {
+			return paths.count();
+		}
+	}
+
+	@Test
+	public void testCommitAndAbort() throws IOException {
+		Path directory = Files.createTempDirectory("atomic");
+		Path target = directory.resolve("P109isj-C000.neojpl.xml");
+		Files.writeString(target, "previous");
+		try (AtomicFile atomicFile = AtomicFile.open(target)) {
+			atomicFile.getChannel().write(ByteBuffer.wrap("partial".getBytes(StandardCharsets.US_ASCII)));
+			// Not committed (e.g. exception while writing)
+		}
+		assertEquals("previous", Files.readString(target));
+		assertEquals(1, countFiles(directory));
+		try (AtomicFile atomicFile = AtomicFile.open(target)) {
+			atomicFile.getChannel().write(ByteBuffer.wrap("complete".getBytes(StandardCharsets.US_ASCII)));
+			atomicFile.commit();
+		}
+		assertEquals("complete", Files.readString(target));
+		assertEquals(1, countFiles(directory));
+		Files.delete(target);
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testPermissions() throws IOException {
+		assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		Path directory = Files.createTempDirectory("atomic");
+		// Default permissions of the process (umask)
+		Path reference = Files.createFile(directory.resolve("reference"));
+		Path target = directory.resolve("P109isj-C000.neojpl.xml");
+		try (AtomicFile atomicFile = AtomicFile.open(target)) {
+			atomicFile.commit();
+		}
+		assertEquals(Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(target));
+		// Those of the replaced target
+		Files.setPosixFilePermissions(target, PosixFilePermissions.fromString("rw-r-----"));
+		try (AtomicFile atomicFile = AtomicFile.open(target)) {
+			atomicFile.commit();
+		}
+		assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(target)));
+		Files.delete(target);
+		Files.delete(reference);
+		Files.delete(directory);
+	}
+}
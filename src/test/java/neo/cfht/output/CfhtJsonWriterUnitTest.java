@@ -0,0 +1,46 @@
+package neo.cfht.output;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import neo.cfht.models.EphemerisTable;
+
+public class CfhtJsonWriterUnitTest {
+
+	/**
+	 * @return The document as it was built before the streaming writer
+	 */
+	private static String toJsonTree(EphemerisTable ephemerides) {
+		JsonArray ephemerisPointsJAB = new JsonArray();
+		for (int row=0; row<ephemerides.size(); row++) {
+			JsonObject jsonObject = new JsonObject();
+			jsonObject.addProperty("mjd", BigDecimal.valueOf(ephemerides.getMjd(row)).setScale(12, RoundingMode.HALF_UP));
+			jsonObject.addProperty("ra", BigDecimal.valueOf(ephemerides.getRa(row)).setScale(7, RoundingMode.HALF_UP));
+			jsonObject.addProperty("dec", BigDecimal.valueOf(ephemerides.getDec(row)).setScale(7, RoundingMode.HALF_UP));
+			ephemerisPointsJAB.add(jsonObject);
+		}
+		JsonObject ephemerisPoint = new JsonObject();
+		ephemerisPoint.add("ephemeris_point", ephemerisPointsJAB);
+		JsonObject jsonObject = new JsonObject();
+		jsonObject.add("moving_target", ephemerisPoint);
+		return new GsonBuilder().setPrettyPrinting().create().toJson(jsonObject);
+	}
+
+	@Test
+	public void testSameAsJsonTree() {
+		EphemerisTable ephemerides = new EphemerisTable();
+		assertEquals(toJsonTree(ephemerides), CfhtJsonWriter.toString(ephemerides));
+		ephemerides.add(58709.25, 318.92620001, -12.58224999, "");
+		ephemerides.add(58709.291666666664, 0., -0.00000004, "");
+		ephemerides.add(58709.333333333336, 359.99999996, 89.5, "");
+		assertEquals(toJsonTree(ephemerides), CfhtJsonWriter.toString(ephemerides));
+	}
+}
@@ -0,0 +1,40 @@
+package neo.cfht.output;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import neo.cfht.models.EphemerisTable;
+
+public class CfhtXmlTemplateUnitTest {
+
+	private static final String HEADER = "<DATA><CSV headlines=\"4\" colsep=\"|\">\n<![CDATA[\n";
+	private static final String FOOTER = "]]></CSV></DATA>\n</ASTRO>\n";
+
+	@Test
+	public void testSameAsFormat() throws IOException {
+		CfhtXmlTemplate cfhtXmlTemplate = new CfhtXmlTemplate(HEADER, FOOTER, StandardCharsets.US_ASCII);
+		EphemerisTable ephemerides = new EphemerisTable();
+		ephemerides.add(58709.25, 318.9, -12.5, "2019-08-14 06:00:00|21:15:42.30|-12:34:56.0|");
+		ephemerides.add(58709.29, 318.9, -12.5, "2019-08-14 07:00:00|21:15:44.10|-12:35:02.0|");
+		String expected = String.format(HEADER + "%s\n" + FOOTER,
+				String.join("\n", ephemerides.getCFHTLine(0), ephemerides.getCFHTLine(1)));
+		assertEquals(expected, cfhtXmlTemplate.render(ephemerides));
+
+		ByteBuffer[] buffers = cfhtXmlTemplate.toBuffers(ephemerides);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (ByteBuffer buffer : buffers) {
+			byte[] content = new byte[buffer.remaining()];
+			buffer.get(content);
+			bytes.write(content);
+		}
+		assertArrayEquals((expected + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII),
+				bytes.toByteArray());
+	}
+}
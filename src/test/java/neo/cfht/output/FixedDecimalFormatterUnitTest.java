@@ -0,0 +1,47 @@
+package neo.cfht.output;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class FixedDecimalFormatterUnitTest {
+
+	private static void check(double value, int scale) {
+		assertEquals(BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).toString(),
+				FixedDecimalFormatter.format(value, scale), "value " + value + " scale " + scale);
+	}
+
+	@Test
+	public void testEdgeCases() {
+		double[] values = { 0., -0., 1e-9, -1e-9, 5e-8, -5e-8, 4.9e-8, 1.5e-7, 1.2e-6, 0.00000123, 1., -1.,
+				0.5, 2.5e-12, 1.00000005, 359.99999995, -89.99999995, 58709.25, 58709.123456789012,
+				60000.000000000005, 1234567.1234567, 1e20, -3.0000000000000004, 0.1 + 0.2 };
+		for (double value : values) {
+			check(value, 7);
+			check(value, 12);
+		}
+	}
+
+	@Test
+	public void testRandomValues() {
+		Random random = new Random(20190814L);
+		for (int i=0; i<200000; i++) {
+			check(360. * random.nextDouble(), 7);
+			check(180. * random.nextDouble() - 90., 7);
+			check(58000. + 4000. * random.nextDouble(), 12);
+			// Values with few decimals, close to the rounding ties
+			check(Math.round(random.nextDouble() * 1e10) / 1e8 + 5e-8, 7);
+			check(random.nextInt(100000) / 1e6 + 5e-13, 12);
+		}
+	}
+
+	@Test
+	public void testNaN() {
+		assertThrows(NumberFormatException.class, () -> FixedDecimalFormatter.format(Double.NaN, 7));
+	}
+}
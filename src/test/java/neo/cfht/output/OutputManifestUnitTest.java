@@ -0,0 +1,105 @@
+package neo.cfht.output;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import neo.cfht.http.FileBodySink;
+
+public class OutputManifestUnitTest {
+
+	@TempDir
+	Path directory;
+
+	private static ByteBuffer buffer(String content) {
+		return ByteBuffer.wrap(content.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private long countFiles() throws IOException {
+		try (Stream<Path> paths = Files.list(this.directory)) {
+			return paths.count();
+		}
+	}
+
+	@Test
+	public void testUnchangedNotWritten() throws IOException {
+		Path target = this.directory.resolve("P21abcd-C000.neojpl.xml");
+		OutputManifest outputManifest = OutputManifest.load(this.directory);
+		assertTrue(outputManifest.write(target, buffer("<header>"), buffer("lines"), buffer("</footer>")));
+		assertEquals("<header>lines</footer>", Files.readString(target));
+		FileTime written = FileTime.fromMillis(1_000_000L);
+		Files.setLastModifiedTime(target, written);
+		outputManifest.save();
+		// Next run
+		outputManifest = OutputManifest.load(this.directory);
+		assertFalse(outputManifest.write(target, buffer("<header>lines"), buffer("</footer>")));
+		assertEquals(written, Files.getLastModifiedTime(target));
+		assertTrue(outputManifest.write(target, buffer("<header>other lines</footer>")));
+		assertEquals("<header>other lines</footer>", Files.readString(target));
+		assertEquals(1, outputManifest.getTouchedCount());
+		assertEquals(1, outputManifest.getUnchangedCount());
+		// Deleted (or truncated) by someone else: written again
+		Files.delete(target);
+		assertTrue(outputManifest.write(target, buffer("<header>other lines</footer>")));
+		assertTrue(Files.exists(target));
+	}
+
+	@Test
+	public void testStreamedUnchangedDropped() throws IOException {
+		Path target = this.directory.resolve("P21abcd-C000.neojpl.json");
+		OutputManifest outputManifest = OutputManifest.load(this.directory);
+		assertTrue(outputManifest.write(target, channel -> channel.write(buffer("{ \"ra\": 1.0 }"))));
+		assertEquals("{ \"ra\": 1.0 }", Files.readString(target));
+		FileTime written = FileTime.fromMillis(1_000_000L);
+		Files.setLastModifiedTime(target, written);
+		// Same content, written in two parts: temporary file dropped
+		assertFalse(outputManifest.write(target, channel -> {
+			channel.write(buffer("{ \"ra\""));
+			channel.write(buffer(": 1.0 }"));
+		}));
+		assertEquals(written, Files.getLastModifiedTime(target));
+		assertEquals(1, countFiles());
+		assertTrue(outputManifest.write(target, channel -> channel.write(buffer("{ \"ra\": 2.0 }"))));
+		assertEquals("{ \"ra\": 2.0 }", Files.readString(target));
+	}
+
+	@Test
+	public void testDelete() throws IOException {
+		Path target = this.directory.resolve("P21abcd-C001.neojpl.xml");
+		OutputManifest outputManifest = OutputManifest.load(this.directory);
+		assertTrue(outputManifest.write(target, buffer("<header>lines</footer>")));
+		outputManifest.save();
+		assertTrue(outputManifest.delete(target));
+		assertFalse(Files.exists(target));
+		assertFalse(outputManifest.delete(target));
+		outputManifest.save();
+		assertFalse(Files.readString(this.directory.resolve(OutputManifest.FILE_NAME)).contains("P21abcd-C001"));
+	}
+
+	@Test
+	public void testTroubleFileNotBackedUp() throws IOException {
+		Path target = this.directory.resolve("send-this-to-serge-in-case-of-trouble-P21abcd.jpl-response");
+		OutputManifest outputManifest = OutputManifest.load(this.directory);
+		for (String body : new String[] { "response", "response", "new response" }) {
+			FileBodySink fileBodySink = FileBodySink.forTrouble(target, outputManifest);
+			fileBodySink.write(buffer(body));
+			fileBodySink.commit();
+			assertEquals(body, Files.readString(target));
+		}
+		// The first response, backed up once, and the new one
+		assertEquals(2, countFiles());
+		assertEquals(2, outputManifest.getTouchedCount());
+		assertEquals(1, outputManifest.getUnchangedCount());
+	}
+}
@@ -0,0 +1,55 @@
+package neo.cfht.requesters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonObject;
+
+import neo.cfht.app.CFHTEphemeridesConfiguration;
+import neo.cfht.http.ExchangeRecorder;
+import neo.cfht.http.ReplayServer;
+import neo.cfht.models.SmallBodyRequest;
+import neo.resources.PsNeoResources;
+
+public class JplNeoRequesterUnitTest {
+
+	@TempDir
+	Path temporaryDirectory;
+
+	@Test
+	public void testNoEphemerides() throws Exception {
+		Path recordings = Files.createDirectories(this.temporaryDirectory.resolve("recordings"));
+		String key = ExchangeRecorder.key("GET", "/scout.api?recorded", "");
+		JsonObject description = new JsonObject();
+		description.addProperty("method", "GET");
+		description.addProperty("host", "ssd-api.jpl.nasa.gov");
+		description.addProperty("pathAndQuery", "/scout.api?recorded");
+		description.addProperty("requestBody", "");
+		description.addProperty("status", 200);
+		description.addProperty("contentType", "application/json");
+		Files.writeString(recordings.resolve(key + ExchangeRecorder.SUFFIX_DESCRIPTION),
+				PsNeoResources.toJson(description, true));
+		Files.writeString(recordings.resolve(key + ExchangeRecorder.SUFFIX_BODY),
+				"{\"signature\":{\"version\":\"1.3\"},\"eph\":[]}");
+		ReplayServer replayServer = ReplayServer.create(recordings, 0).withAnyDesignation(true).start();
+		try {
+			CFHTEphemeridesConfiguration cec = CFHTEphemeridesConfiguration.parse("-bypassVersionCheck",
+					"-noPrewarm", "-refresh", "-noNightWindow", "-date", "2019-08-14",
+					"-p", this.temporaryDirectory.resolve("out").toString(),
+					"-jplBaseUrl", replayServer.getBaseUrl(), "P21abcd");
+			JplNeoRequester jplNeoRequester = new JplNeoRequester(new SmallBodyRequest("P21abcd", cec));
+			jplNeoRequester.call();
+			assertEquals(0, jplNeoRequester.getEphemerides().size());
+			// Falls back to the MPC NEOCP instead of writing an empty file
+			assertFalse(jplNeoRequester.isRequestSuccessful());
+		} finally {
+			replayServer.stop();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package neo.cfht.requesters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class MpcKnownDemultiplexerUnitTest {
+
+	private static final String BODY = String.join("\n",
+			"<html><body><h2>Minor Planet Ephemeris Service: Query Results</h2>",
+			"<p><hr><p>",
+			"<p><b>(4330) Vivaldi</b>",
+			"<pre>",
+			"Date       UT      R.A. (J2000) Decl.",
+			"2019 08 14 0000   22 43 06.2 -13 48 12  ",
+			"2019 08 14 0030   22 43 05.8 -13 48 20  ",
+			"</pre>",
+			"<p><hr><p>",
+			"<p><b>2019 QZ12</b>",
+			"<pre>",
+			"Date       UT      R.A. (J2000) Decl.",
+			"2019 08 14 0000   01 02 03.4 +05 06 07  ",
+			"</pre>",
+			"<p><hr><p>",
+			"<p><b>P/2013 R3 (Catalina-PANSTARRS)</b>",
+			"<pre>",
+			"2019 08 14 0000   10 20 30.4 +40 50 07  ",
+			"</pre>",
+			"</body></html>");
+
+	@Test
+	public void testSplit() {
+		Map<String, List<String>> linesByDesignation = MpcKnownDemultiplexer.split(BODY,
+				List.of("(4330)", "K19Q12Z", "P/2013 R3", "433"));
+		assertEquals(2, linesByDesignation.get("(4330)").size());
+		assertEquals(1, linesByDesignation.get("K19Q12Z").size());
+		assertEquals(1, linesByDesignation.get("P/2013 R3").size());
+		// '433' is not '(4330)': must be requested on its own
+		assertFalse(linesByDesignation.containsKey("433"));
+	}
+
+	@Test
+	public void testUnpack() {
+		assertEquals("2014 AA", MpcKnownDemultiplexer.unpack("K14A00A"));
+		assertEquals("2019 QZ12", MpcKnownDemultiplexer.unpack("K19Q12Z"));
+		assertEquals("1998 SQ108", MpcKnownDemultiplexer.unpack("J98SA8Q"));
+		assertEquals("(87890)", MpcKnownDemultiplexer.unpack("(87890)"));
+		assertEquals("(101234)", MpcKnownDemultiplexer.unpack("A1234"));
+		assertEquals("(360017)", MpcKnownDemultiplexer.unpack("a0017"));
+		assertEquals("(620000)", MpcKnownDemultiplexer.unpack("~0000"));
+		assertEquals("(3140113)", MpcKnownDemultiplexer.unpack("~AZaz"));
+	}
+}
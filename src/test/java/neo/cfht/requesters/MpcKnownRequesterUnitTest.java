@@ -0,0 +1,88 @@
+package neo.cfht.requesters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonObject;
+
+import neo.cfht.app.CFHTEphemeridesConfiguration;
+import neo.cfht.http.ExchangeRecorder;
+import neo.cfht.http.ReplayServer;
+import neo.cfht.models.EphemerisTable;
+import neo.cfht.models.SmallBodyRequest;
+import neo.resources.PsNeoResources;
+
+public class MpcKnownRequesterUnitTest {
+
+	private static final String MPC_BODY = String.join("\n",
+			"<html><body><p><b>2019 AA</b>",
+			"<pre>",
+			"2019 08 14 0000   22 43 06.2 -13 48 12  ",
+			"2019 08 14 0100   22 43 05.4 -13 48 28  ",
+			"2019 08 14 0200   22 43 04.6 -13 48 44  ",
+			"2019 08 14 0300   22 43 03.8 -13 49 00  ",
+			"2019 08 14 0400   22 43 03.0 -13 49 16  ",
+			"</pre></body></html>");
+
+	@TempDir
+	Path temporaryDirectory;
+
+	@Test
+	public void testOutputEphemeridesComputedOnce() throws Exception {
+		Path recordings = Files.createDirectories(this.temporaryDirectory.resolve("recordings"));
+		String key = ExchangeRecorder.key("GET", "/cgi-bin/mpeph2.cgi?recorded", "");
+		JsonObject description = new JsonObject();
+		description.addProperty("method", "GET");
+		description.addProperty("host", "www.minorplanetcenter.net");
+		description.addProperty("pathAndQuery", "/cgi-bin/mpeph2.cgi?recorded");
+		description.addProperty("requestBody", "");
+		description.addProperty("status", 200);
+		description.addProperty("contentType", "text/html");
+		Files.writeString(recordings.resolve(key + ExchangeRecorder.SUFFIX_DESCRIPTION),
+				PsNeoResources.toJson(description, true));
+		Files.writeString(recordings.resolve(key + ExchangeRecorder.SUFFIX_BODY), MPC_BODY);
+		ReplayServer replayServer = ReplayServer.create(recordings, 0).withAnyDesignation(true).start();
+		try {
+			CFHTEphemeridesConfiguration cec = CFHTEphemeridesConfiguration.parse("-bypassVersionCheck",
+					"-noPrewarm", "-refresh", "-noNightWindow", "-date", "2019-08-14", "-count", "9",
+					"-interval", "30", "-coarseInterval", "60",
+					"-p", this.temporaryDirectory.resolve("out").toString(),
+					"-mpcBaseUrl", replayServer.getBaseUrl(), "2019 AA");
+			MpcKnownRequester mpcKnownRequester = new MpcKnownRequester(new SmallBodyRequest("2019 AA", cec));
+			// Pointings of an earlier run with -ditherGrid
+			Path output = Files.createDirectories(this.temporaryDirectory.resolve("out"));
+			for (String stale : List.of("2019_AA-C001.knompc.xml", "2019_AA-C001.knompc.json",
+					"2019_AA-C002.knompc.xml")) {
+				Files.writeString(output.resolve(stale), "stale");
+			}
+			mpcKnownRequester.call();
+			assertTrue(mpcKnownRequester.isRequestSuccessful());
+			EphemerisTable outputEphemerides = mpcKnownRequester.getOutputEphemerides();
+			assertEquals(9, outputEphemerides.size());
+			// The XML, the JSON and the files use the same interpolation
+			mpcKnownRequester.getCfhtXML();
+			mpcKnownRequester.getCfhtJSON();
+			assertEquals(2, mpcKnownRequester.write().size());
+			try (Stream<Path> files = Files.list(output)) {
+				assertTrue(files.noneMatch(file -> file.getFileName().toString().startsWith("2019_AA-C00")
+						&& !file.getFileName().toString().startsWith("2019_AA-C000")));
+			}
+			assertSame(outputEphemerides, mpcKnownRequester.getOutputEphemerides());
+			// Interpolated again from the ephemerides of a new fetch
+			mpcKnownRequester.call();
+			assertNotSame(outputEphemerides, mpcKnownRequester.getOutputEphemerides());
+		} finally {
+			replayServer.stop();
+		}
+	}
+}
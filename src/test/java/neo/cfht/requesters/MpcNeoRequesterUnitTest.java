@@ -1,6 +1,12 @@
 package neo.cfht.requesters;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.nio.file.Path;
+
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +17,9 @@ public class MpcNeoRequesterUnitTest {
 	/** Logging */
 	private final static Logger logger = LoggerFactory.getLogger(MpcNeoRequesterUnitTest.class);
 
+	@TempDir
+	Path temporaryDirectory;
+
 	// This doesn't test much beside giving an idea on how to use the command line
 	@Test
 	public void test20190814() throws Exception {
@@ -20,4 +29,21 @@ public class MpcNeoRequesterUnitTest {
 		mpcNeoRequester.call();
 		logger.trace("{}", mpcNeoRequester.getCfhtXML());
 	}
+
+	@Test
+	public void testCacheKey() throws Exception {
+		CFHTEphemeridesConfiguration cec = CFHTEphemeridesConfiguration.parse("A10fwNJ", "-bypassVersionCheck",
+				"-noPrewarm", "-noNightWindow", "-date", "2019-08-14", "-p", this.temporaryDirectory.toString());
+		CFHTEphemeridesConfiguration finer = CFHTEphemeridesConfiguration.parse("A10fwNJ", "-bypassVersionCheck",
+				"-noPrewarm", "-noNightWindow", "-date", "2019-08-14", "-interval", "10", "-count", "50", "-norbits", "500",
+				"-p", this.temporaryDirectory.toString());
+		CFHTEphemeridesConfiguration nextNight = CFHTEphemeridesConfiguration.parse("A10fwNJ", "-bypassVersionCheck",
+				"-noPrewarm", "-noNightWindow", "-date", "2019-08-15", "-p", this.temporaryDirectory.toString());
+		String key = new MpcNeoRequester(new SmallBodyRequest("A10fwNJ", cec)).getCacheKey().toString();
+		// Same confirmeph2 request: same cached response
+		assertEquals(key, new MpcNeoRequester(new SmallBodyRequest("A10fwNJ", finer)).getCacheKey().toString());
+		assertNotEquals(key, new MpcNeoRequester(new SmallBodyRequest("A10fwNJ", nextNight)).getCacheKey().toString());
+		assertNotEquals(new SmallBodyRequest("A10fwNJ", cec).getCacheKey(JplNeoRequester.SUFFIX, null).toString(),
+				new SmallBodyRequest("A10fwNJ", finer).getCacheKey(JplNeoRequester.SUFFIX, null).toString());
+	}
 }
@@ -0,0 +1,49 @@
+package neo.cfht.requesters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+import neo.cfht.models.EphemerisTable;
+
+public class ScoutEphemerisReaderUnitTest {
+
+	private static final String RESPONSE = String.join("\n",
+			"{\"signature\":{\"source\":\"NASA/JPL Scout API\",\"version\":\"1.3\"},",
+			" \"orbits\":{\"fields\":[\"idx\",\"epoch\"],\"data\":[[0,\"2458709.5\"],[1,\"2458709.5\"]]},",
+			" \"eph\":[",
+			"  {\"time\":\"2019-08-14 06:00:00\",\"sigma-pos\":\"12.5\",\"sun-flag\":null,",
+			"   \"median\":{\"ra\":\"318.9262\",\"dec\":\"-12.5822\",\"dra\":\"1.2\",\"ddec\":\"-0.4\",\"vmag\":\"21.3\"},",
+			"   \"sigma-limits\":{\"lower\":{\"ra\":\"318.9\"},\"upper\":{\"ra\":\"319.0\"}}},",
+			"  {\"time\":\"2019-08-14 07:00:00\",",
+			"   \"median\":{\"ra\":318.9411,\"dec\":-12.5901,\"vmag\":null}}",
+			" ],",
+			" \"tdes\":\"A10fwNJ\"}");
+
+	@Test
+	public void testRead() throws IOException {
+		EphemerisTable ephemerides = ScoutEphemerisReader.read(new StringReader(RESPONSE));
+		assertEquals(2, ephemerides.size());
+		assertEquals(318.9262, ephemerides.getRa(0));
+		assertEquals(-12.5901, ephemerides.getDec(1));
+		assertEquals(ScoutEphemerisReader.toMJD("2019-08-14 07:00:00"), ephemerides.getMjd(1));
+		assertEquals(12.5, ephemerides.getPositionUncertainty(0));
+		assertTrue(Double.isNaN(ephemerides.getPositionUncertainty(1)));
+		assertEquals(-0.4, ephemerides.getDecRate(0));
+		assertEquals(21.3, ephemerides.getMagnitude(0));
+		assertTrue(Double.isNaN(ephemerides.getMagnitude(1)));
+		assertTrue(ephemerides.getCFHTLine(0).toString().startsWith("2019-08-14 06:00:00|"));
+	}
+
+	@Test
+	public void testError() {
+		IOException e = assertThrows(IOException.class, () -> ScoutEphemerisReader.read(
+				new StringReader("{\"error\":\"specified object not found\",\"code\":\"404\"}")));
+		assertTrue(e.getMessage().contains("specified object not found"));
+	}
+}